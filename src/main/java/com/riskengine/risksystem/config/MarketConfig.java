@@ -1,9 +1,14 @@
 package com.riskengine.risksystem.config;
 
+import com.riskengine.risksystem.market.feed.PriceFeed;
+import com.riskengine.risksystem.market.engine.SnapshotService;
 import com.riskengine.risksystem.market.model.Asset;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.service.OrderBookService;
+import com.riskengine.risksystem.market.service.PortfolioRiskService;
 import com.riskengine.risksystem.market.simulation.MarketSimulator;
-import com.riskengine.risksystem.market.service.TradingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -22,13 +27,34 @@ public class MarketConfig {
     private MarketSimulator marketSimulator;
     
     @Autowired
-    private TradingService tradingService;
+    private OrderBookService orderBookService;
+    
+    @Autowired
+    private SnapshotService snapshotService;
+    
+    @Autowired
+    private PortfolioRiskService portfolioRiskService;
+    
+    @Autowired
+    private List<PriceFeed> priceFeeds;
+    
+    /** Name of the feed that moves the market: simulator or replay */
+    @Value("${market.feed:simulator}")
+    private String feedName;
+    
+    private PriceFeed priceFeed;
+    
+    /** Generated assets added to the predefined ones, for load testing */
+    @Value("${market.simulation.synthetic-assets:0}")
+    private int syntheticAssets;
     
     /**
      * Initialize market with predefined assets on startup
      */
     @PostConstruct
     public void initializeMarket() {
+        priceFeed = selectPriceFeed();
+        
         List<Asset> assets = new ArrayList<>();
         
         // Add cryptocurrencies
@@ -38,6 +64,7 @@ public class MarketConfig {
             .type(Asset.AssetType.CRYPTO)
             .currency("USD")
             .volatility(0.03) // 3% daily volatility
+            .lotSize(FixedPoint.of(0.0001)) // Fractional coins
             .build());
             
         assets.add(Asset.builder()
@@ -46,6 +73,7 @@ public class MarketConfig {
             .type(Asset.AssetType.CRYPTO)
             .currency("USD")
             .volatility(0.04) // 4% daily volatility
+            .lotSize(FixedPoint.of(0.0001)) // Fractional coins
             .build());
             
         // Add stocks
@@ -90,23 +118,81 @@ public class MarketConfig {
             .volatility(0.01) // 1% daily volatility
             .build());
             
+        // Add generated assets, cycling through the asset types
+        Asset.AssetType[] types = Asset.AssetType.values();
+        for (int i = 0; i < syntheticAssets; i++) {
+            assets.add(Asset.builder()
+                .symbol(String.format("SIM%06d", i))
+                .name("Simulated asset " + i)
+                .type(types[i % types.length])
+                .currency("USD")
+                .volatility(0.01 + (i % 5) * 0.005) // 1% to 3% daily volatility
+                .build());
+        }
+            
         // Initialize the market
         marketSimulator.initializeMarket(assets);
     }
     
     /**
-     * Update market prices every 1 second
+     * The configured price feed
+     *
+     * @throws IllegalStateException if no feed has the configured name or it is misconfigured
      */
-    @Scheduled(fixedRate = 1000)
+    private PriceFeed selectPriceFeed() {
+        for (PriceFeed feed : priceFeeds) {
+            if (feed.getName().equals(feedName)) {
+                feed.validate();
+                return feed;
+            }
+        }
+        throw new IllegalStateException("Unknown price feed '" + feedName + "'; expected one of "
+                + priceFeeds.stream().map(PriceFeed::getName).toList());
+    }
+    
+    /**
+     * Tick the price feed at the configured tick rate (every second by default).
+     * Prices, simulated or historical, are applied by the matching engine
+     * shard that owns their symbol, which matches its limit orders against
+     * them on the same thread.
+     */
+    @Scheduled(fixedRateString = "${market.simulation.tick-interval-ms:1000}")
     public void updateMarketPrices() {
-        marketSimulator.updateMarketPrices();
+        priceFeed.tick();
+    }
+    
+    /**
+     * Log how many prices per second the simulator reaches
+     */
+    @Scheduled(fixedDelayString = "${market.simulation.report-interval-ms:10000}",
+               initialDelayString = "${market.simulation.report-interval-ms:10000}")
+    public void reportSimulationThroughput() {
+        marketSimulator.reportThroughput();
+    }
+    
+    /**
+     * Move old terminal orders out of memory into the order archive
+     */
+    @Scheduled(fixedDelayString = "${market.orders.retention.interval-ms:10000}")
+    public void archiveTerminalOrders() {
+        orderBookService.archiveTerminalOrders();
+    }
+    
+    /**
+     * Snapshot the trading state so a restart only replays the journal tail
+     */
+    @Scheduled(fixedDelayString = "${market.snapshot.interval-ms:60000}",
+               initialDelayString = "${market.snapshot.interval-ms:60000}")
+    public void takeSnapshot() {
+        snapshotService.requestSnapshot();
     }
     
     /**
-     * Process limit orders every 1 second
+     * Re-assess the value at risk of every portfolio on the risk pool
      */
-    @Scheduled(fixedRate = 1000)
-    public void processLimitOrders() {
-        tradingService.processLimitOrders();
+    @Scheduled(fixedDelayString = "${market.risk.batch.interval-ms:300000}",
+               initialDelayString = "${market.risk.batch.interval-ms:300000}")
+    public void assessFirmRisk() {
+        portfolioRiskService.requestFirmAssessment();
     }
 }
\ No newline at end of file
@@ -1,15 +1,23 @@
 package com.riskengine.risksystem.controller;
 
+import com.riskengine.risksystem.dto.BatchOrderRequestDTO;
+import com.riskengine.risksystem.dto.EquityAlertRequestDTO;
 import com.riskengine.risksystem.dto.FundsRequestDTO;
 import com.riskengine.risksystem.dto.OrderRequestDTO;
 import com.riskengine.risksystem.market.model.*;
 import com.riskengine.risksystem.market.service.*;
 import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import com.riskengine.risksystem.market.simulation.PriceSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -19,8 +27,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * REST API controller for market data and trading operations.
@@ -39,6 +49,26 @@ public class MarketController {
     @Autowired
     private PortfolioService portfolioService;
     
+    @Autowired
+    private PortfolioRiskService portfolioRiskService;
+    
+    @Autowired
+    private MarketStreamService marketStreamService;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    /**
+     * Prefix of price ETags, unique to this process: snapshot sequences
+     * restart at zero on every start and differ between instances, so an
+     * ETag from another instance or an earlier run never matches
+     */
+    private final String etagEpoch = Long.toString(System.currentTimeMillis(), 36) + "-" +
+            Integer.toString(ThreadLocalRandom.current().nextInt() & Integer.MAX_VALUE, 36);
+    
     /**
      * Get all available assets in the market
      * 
@@ -101,8 +131,13 @@ public class MarketController {
     }
     
     /**
-     * Get all current market prices
+     * Get all current market prices.
+     * The body is rendered once per price snapshot and shared by every
+     * request for it; the ETag is the snapshot's sequence number behind a
+     * per-process epoch, so a client that already has the latest snapshot
+     * from this process gets 304 Not Modified.
      * 
+     * @param request Request carrying any If-None-Match header
      * @return Map of all asset symbols to their current price information
      */
     @Operation(
@@ -117,23 +152,104 @@ public class MarketController {
                 mediaType = MediaType.APPLICATION_JSON_VALUE,
                 schema = @Schema(implementation = Object.class)
             )
+        ),
+        @ApiResponse(
+            responseCode = "304",
+            description = "Prices have not changed since the snapshot named in If-None-Match",
+            content = @Content(schema = @Schema(hidden = true))
         )
     })
     @GetMapping("/prices")
-    public ResponseEntity<Map<String, AssetPrice>> getAllPrices() {
-        return ResponseEntity.ok(marketSimulator.getAllPrices());
+    public ResponseEntity<byte[]> getAllPrices(WebRequest request) throws JsonProcessingException {
+        PriceSnapshot snapshot = marketSimulator.getPriceSnapshot();
+        String etag = "\"" + etagEpoch + "-" + snapshot.getSequence() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .body(snapshot.toJson(objectMapper));
+    }
+    
+    /**
+     * Stream price and order changes as Server-Sent Events, in place of
+     * polling the prices and orders endpoints
+     * 
+     * @param symbols Symbols to receive prices of; all symbols if omitted
+     * @param userId User to receive order updates of; no order updates if omitted
+     * @return Event stream of prices events (symbol to price, current prices first)
+     *         and orders events (latest state of each changed order)
+     * @throws 404 Not Found if a symbol doesn't exist
+     * @throws 503 Service Unavailable if too many streams are open
+     */
+    @Operation(
+        summary = "Stream market changes",
+        description = "Opens a Server-Sent Events stream. 'prices' events map symbols to their latest price, " +
+                      "starting with the current prices; 'orders' events list the new state of the user's " +
+                      "orders that changed. Changes are batched at a fixed interval"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Stream opened",
+            content = @Content(
+                mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                schema = @Schema(type = "string")
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Asset not found",
+            content = @Content(schema = @Schema(hidden = true))
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Too many open streams",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMarket(
+            @Parameter(description = "Comma-separated asset symbols, e.g. BTC-USD,AAPL")
+            @RequestParam(required = false) List<String> symbols,
+            @Parameter(description = "User whose order updates to receive")
+            @RequestParam(required = false) String userId) {
+        int[] symbolIds = null;
+        if (symbols != null && !symbols.isEmpty()) {
+            symbolIds = new int[symbols.size()];
+            for (int i = 0; i < symbolIds.length; i++) {
+                symbolIds[i] = symbolRegistry.idOf(symbols.get(i));
+                if (symbolIds[i] == SymbolRegistry.UNREGISTERED || marketSimulator.getAsset(symbolIds[i]) == null) {
+                    return ResponseEntity.notFound().build();
+                }
+            }
+        }
+        
+        try {
+            return ResponseEntity.ok(marketStreamService.subscribe(symbolIds, userId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
     
     /**
-     * Get price history for a specific asset
+     * Get price history for a specific asset, as raw ticks or as OHLCV bars
      * 
      * @param symbol The unique identifier for the asset (e.g., "BTC-USD")
-     * @return List of historical prices with timestamps
+     * @param resolution Bar resolution (1s, 1m, 5m, 1h or 1d); raw ticks if omitted
+     * @param from Earliest bar open time, inclusive (bars only)
+     * @param to Latest bar open time, exclusive (bars only)
+     * @return Historical prices or bars with timestamps, oldest first
+     * @throws 400 Bad Request if the resolution is unknown
      * @throws 404 Not Found if the symbol doesn't exist
      */
     @Operation(
         summary = "Get price history",
-        description = "Returns historical price data for a specified asset"
+        description = "Returns historical price data for a specified asset, oldest first. Without a resolution, " +
+                      "returns the recent raw ticks (timestamp, price, low, high, volume); with one, returns " +
+                      "OHLCV bars (timestamp, open, high, low, close, volume) opening between from and to"
     )
     @ApiResponses({
         @ApiResponse(
@@ -141,7 +257,15 @@ public class MarketController {
             description = "Successfully retrieved price history",
             content = @Content(
                 mediaType = MediaType.APPLICATION_JSON_VALUE,
-                schema = @Schema(implementation = AssetPrice.class)
+                schema = @Schema(type = "array")
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Unknown resolution",
+            content = @Content(
+                mediaType = MediaType.TEXT_PLAIN_VALUE,
+                schema = @Schema(type = "string")
             )
         ),
         @ApiResponse(
@@ -151,11 +275,27 @@ public class MarketController {
         )
     })
     @GetMapping("/history/{symbol}")
-    public ResponseEntity<List<AssetPrice>> getPriceHistory(
+    public ResponseEntity<?> getPriceHistory(
             @Parameter(description = "Asset symbol, e.g. BTC-USD")
-            @PathVariable String symbol) {
+            @PathVariable String symbol,
+            @Parameter(description = "Bar resolution: 1s, 1m, 5m, 1h or 1d")
+            @RequestParam(required = false) String resolution,
+            @Parameter(description = "Earliest bar open time (ISO-8601 instant), inclusive")
+            @RequestParam(required = false) Instant from,
+            @Parameter(description = "Latest bar open time (ISO-8601 instant), exclusive")
+            @RequestParam(required = false) Instant to) {
+        BarResolution barResolution;
+        try {
+            barResolution = resolution != null ? BarResolution.fromCode(resolution) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        
         try {
-            return ResponseEntity.ok(marketSimulator.getPriceHistory(symbol));
+            if (barResolution == null) {
+                return ResponseEntity.ok(marketSimulator.getPriceHistory(symbol));
+            }
+            return ResponseEntity.ok(marketSimulator.getPriceBars(symbol, barResolution, from, to));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
@@ -165,7 +305,8 @@ public class MarketController {
      * Place a new order
      * 
      * @param request Order details including user ID, asset symbol, side (buy/sell),
-     *                quantity, price, and order type (market/limit)
+     *                quantity, price, stop price, and order type (market, limit, stop,
+     *                stop-limit, immediate-or-cancel, fill-or-kill)
      * @return OrderResult containing success status, order ID, and message
      * @throws 400 Bad Request if order parameters are invalid
      * @throws 403 Forbidden if the order is rejected due to high risk
@@ -198,18 +339,87 @@ public class MarketController {
     public ResponseEntity<TradingService.OrderResult> placeOrder(
             @Parameter(description = "Order details") 
             @RequestBody OrderRequestDTO request) {
+        long quantity, price, stopPrice;
+        try {
+            quantity = FixedPoint.of(request.getQuantity());
+            price = FixedPoint.of(request.getPrice());
+            stopPrice = FixedPoint.of(request.getStopPrice());
+        } catch (ArithmeticException e) {
+            return ResponseEntity.badRequest()
+                .body(new TradingService.OrderResult(null, false, "Invalid amount: " + e.getMessage()));
+        }
+        
         TradingService.OrderResult result = tradingService.placeOrder(
             request.getUserId(),
             request.getSymbol(),
             request.getSide(),
-            request.getQuantity(),
-            request.getPrice(),
+            quantity,
+            price,
+            stopPrice,
             request.getType()
         );
         
         return ResponseEntity.ok(result);
     }
     
+    /**
+     * Place and cancel several orders in one request
+     * 
+     * @param request User ID and an ordered list of place and cancel instructions
+     * @return One OrderResult per instruction, in request order
+     * @throws 400 Bad Request if the batch is empty or an amount is out of range
+     */
+    @Operation(
+        summary = "Place and cancel orders in a batch",
+        description = "Risk scores all new orders against the user's profile in one pass and applies " +
+                      "every instruction to the order books in one sequenced step"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Batch processed; see each result for its outcome",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = TradingService.OrderResult.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Empty batch or amount out of range",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @PostMapping("/orders/batch")
+    public ResponseEntity<List<TradingService.OrderResult>> placeBatch(
+            @Parameter(description = "Batch of order instructions")
+            @RequestBody BatchOrderRequestDTO request) {
+        if (request.getInstructions() == null || request.getInstructions().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<TradingService.BatchInstruction> instructions;
+        try {
+            instructions = request.getInstructions().stream()
+                .map(instruction -> new TradingService.BatchInstruction(
+                    instruction.getAction() == null
+                        ? Order.OrderAction.PLACE
+                        : instruction.getAction(),
+                    instruction.getOrderId(),
+                    instruction.getSymbol(),
+                    instruction.getSide(),
+                    FixedPoint.of(instruction.getQuantity()),
+                    FixedPoint.of(instruction.getPrice()),
+                    FixedPoint.of(instruction.getStopPrice()),
+                    instruction.getType()))
+                .toList();
+        } catch (ArithmeticException e) {
+            // An amount outside the fixed-point range
+            return ResponseEntity.badRequest().build();
+        }
+        
+        return ResponseEntity.ok(tradingService.placeBatch(request.getUserId(), instructions));
+    }
+    
     /**
      * Get open orders for a user
      * 
@@ -321,15 +531,154 @@ public class MarketController {
             description = "Successfully calculated portfolio value",
             content = @Content(
                 mediaType = MediaType.APPLICATION_JSON_VALUE,
-                schema = @Schema(type = "number", format = "double")
+                schema = @Schema(type = "number")
             )
         )
     })
     @GetMapping("/portfolio/{userId}/value")
-    public ResponseEntity<Double> getPortfolioValue(
+    public ResponseEntity<BigDecimal> getPortfolioValue(
             @Parameter(description = "User ID") 
             @PathVariable String userId) {
-        return ResponseEntity.ok(portfolioService.getPortfolioValue(userId));
+        return ResponseEntity.ok(FixedPoint.toBigDecimal(portfolioService.getPortfolioValue(userId)));
+    }
+    
+    /**
+     * Get Monte Carlo value at risk and expected shortfall of a portfolio
+     * 
+     * @param userId The unique identifier for the user
+     * @param latest Whether to return the result of the latest firm-wide run instead of a fresh one
+     * @return Portfolio risk
+     * @throws 404 Not Found if the user has no portfolio, or the latest firm-wide run did not cover it
+     */
+    @Operation(
+        summary = "Get portfolio risk",
+        description = "Simulates the portfolio's holdings over the risk horizon and returns the value at risk " +
+                      "and expected shortfall at the configured confidence level"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Successfully assessed portfolio risk",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = PortfolioRisk.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Unknown user, or no firm-wide result for the portfolio",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping("/portfolio/{userId}/risk")
+    public ResponseEntity<PortfolioRisk> getPortfolioRisk(
+            @Parameter(description = "User ID") 
+            @PathVariable String userId,
+            @Parameter(description = "Return the latest firm-wide result instead of simulating now") 
+            @RequestParam(defaultValue = "false") boolean latest) {
+        PortfolioRisk risk = latest ? portfolioRiskService.getLatestRisk(userId) : portfolioRiskService.assess(userId);
+        return risk != null ? ResponseEntity.ok(risk) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Get the summary of the latest firm-wide risk run
+     * 
+     * @return Firm risk report
+     * @throws 404 Not Found if no run has completed yet
+     */
+    @Operation(
+        summary = "Get firm-wide risk",
+        description = "Returns the summary of the latest periodic value-at-risk run over every portfolio"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Successfully retrieved firm-wide risk",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = FirmRiskReport.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "No firm-wide run has completed yet",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping("/risk")
+    public ResponseEntity<FirmRiskReport> getFirmRisk() {
+        FirmRiskReport report = portfolioRiskService.getLatestReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Get the market simulator's throughput over its latest reporting window
+     * 
+     * @return Simulation stats
+     * @throws 404 Not Found if no window has been reported yet
+     */
+    @Operation(
+        summary = "Get simulator throughput",
+        description = "Returns how many prices per second the market simulator generated in its latest reporting window"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Successfully retrieved simulator throughput",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = SimulationStats.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "No reporting window has ended yet",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping("/simulation/stats")
+    public ResponseEntity<SimulationStats> getSimulationStats() {
+        SimulationStats stats = marketSimulator.getSimulationStats();
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Set the equity alert threshold of a portfolio
+     * 
+     * @param userId The unique identifier for the user
+     * @param request Object containing the alert threshold
+     * @return 200 OK if the threshold was set
+     * @throws 400 Bad Request if the threshold is negative
+     */
+    @Operation(
+        summary = "Set equity alert",
+        description = "Raises an alert whenever the portfolio's total value falls below the threshold; " +
+                      "a threshold of zero removes the alert"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Alert threshold set"
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid threshold (negative or out of range)",
+            content = @Content(
+                mediaType = MediaType.TEXT_PLAIN_VALUE,
+                schema = @Schema(type = "string")
+            )
+        )
+    })
+    @PutMapping("/portfolio/{userId}/equity-alert")
+    public ResponseEntity<?> setEquityAlert(
+            @Parameter(description = "User ID") @PathVariable String userId, 
+            @Parameter(description = "Alert threshold") @RequestBody EquityAlertRequestDTO request) {
+        try {
+            portfolioService.setEquityAlert(userId, FixedPoint.of(request.getThreshold()));
+            return ResponseEntity.ok().build();
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
     /**
@@ -351,7 +700,7 @@ public class MarketController {
         ),
         @ApiResponse(
             responseCode = "400",
-            description = "Invalid amount (negative or zero)",
+            description = "Invalid amount (negative, zero or out of range)",
             content = @Content(
                 mediaType = MediaType.TEXT_PLAIN_VALUE,
                 schema = @Schema(type = "string")
@@ -363,9 +712,9 @@ public class MarketController {
             @Parameter(description = "User ID") @PathVariable String userId, 
             @Parameter(description = "Amount to deposit") @RequestBody FundsRequestDTO request) {
         try {
-            portfolioService.depositFunds(userId, request.getAmount());
+            portfolioService.depositFunds(userId, FixedPoint.of(request.getAmount()));
             return ResponseEntity.ok().build();
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | ArithmeticException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
@@ -389,7 +738,7 @@ public class MarketController {
         ),
         @ApiResponse(
             responseCode = "400",
-            description = "Invalid amount or insufficient funds",
+            description = "Invalid amount, out of range, or insufficient funds",
             content = @Content(
                 mediaType = MediaType.TEXT_PLAIN_VALUE,
                 schema = @Schema(type = "string")
@@ -401,13 +750,13 @@ public class MarketController {
             @Parameter(description = "User ID") @PathVariable String userId, 
             @Parameter(description = "Amount to withdraw") @RequestBody FundsRequestDTO request) {
         try {
-            boolean success = portfolioService.withdrawFunds(userId, request.getAmount());
+            boolean success = portfolioService.withdrawFunds(userId, FixedPoint.of(request.getAmount()));
             if (success) {
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.badRequest().body("Insufficient funds");
             }
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | ArithmeticException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
@@ -0,0 +1,154 @@
+package com.riskengine.risksystem.controller;
+
+import com.riskengine.risksystem.market.model.DepthSnapshot;
+import com.riskengine.risksystem.market.model.DepthUpdate;
+import com.riskengine.risksystem.market.service.OrderBookService;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import java.util.List;
+
+/**
+ * REST API controller for aggregated order book depth.
+ * Clients take a snapshot, then poll for incremental level changes
+ * using the snapshot's sequence number.
+ */
+@RestController
+@RequestMapping("/api/market/depth")
+@Tag(name = "Market Depth", description = "APIs for aggregated L2 order book depth")
+public class MarketDepthController {
+    /** Upper bound on levels per side in a snapshot */
+    private static final int MAX_LEVELS = 500;
+    
+    /** Upper bound on updates returned by one poll */
+    private static final int MAX_UPDATES = 1000;
+    
+    @Autowired
+    private OrderBookService orderBookService;
+    
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    /**
+     * Get aggregated depth for an asset
+     * 
+     * @param symbol The unique identifier for the asset (e.g., "BTC-USD")
+     * @param levels Number of price levels per side
+     * @return Top bid and ask levels with the sequence number they reflect
+     * @throws 404 Not Found if the symbol doesn't exist
+     */
+    @Operation(
+        summary = "Get order book depth",
+        description = "Returns total quantity and order count for the top price levels on each side"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Successfully retrieved depth snapshot",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = DepthSnapshot.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Asset not found",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping("/{symbol}")
+    public ResponseEntity<DepthSnapshot> getDepth(
+            @Parameter(description = "Asset symbol, e.g. BTC-USD") 
+            @PathVariable String symbol,
+            @Parameter(description = "Price levels per side") 
+            @RequestParam(defaultValue = "10") int levels) {
+        if (!isListed(symbol)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        int boundedLevels = Math.max(1, Math.min(levels, MAX_LEVELS));
+        return ResponseEntity.ok(orderBookService.getDepth(symbol, boundedLevels));
+    }
+    
+    /**
+     * Get depth changes since a sequence number
+     * 
+     * @param symbol The unique identifier for the asset (e.g., "BTC-USD")
+     * @param since Sequence of the last snapshot or update the client applied
+     * @return Level changes in sequence order; empty for a symbol with no orders yet
+     * @throws 400 Bad Request if the sequence is negative
+     * @throws 404 Not Found if the symbol doesn't exist
+     * @throws 410 Gone if the requested updates are no longer retained
+     */
+    @Operation(
+        summary = "Get incremental depth updates",
+        description = "Returns price level changes with a sequence number greater than the one given"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Successfully retrieved depth updates",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = DepthUpdate.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Negative sequence number",
+            content = @Content(schema = @Schema(hidden = true))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Asset not found",
+            content = @Content(schema = @Schema(hidden = true))
+        ),
+        @ApiResponse(
+            responseCode = "410",
+            description = "Updates no longer retained; take a new snapshot",
+            content = @Content(schema = @Schema(hidden = true))
+        )
+    })
+    @GetMapping("/{symbol}/updates")
+    public ResponseEntity<List<DepthUpdate>> getDepthUpdates(
+            @Parameter(description = "Asset symbol, e.g. BTC-USD") 
+            @PathVariable String symbol,
+            @Parameter(description = "Last applied sequence number") 
+            @RequestParam long since) {
+        if (since < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        if (!isListed(symbol)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        List<DepthUpdate> updates = orderBookService.getDepthUpdates(symbol, since, MAX_UPDATES);
+        if (updates == null) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok(updates);
+    }
+    
+    private boolean isListed(String symbol) {
+        try {
+            marketSimulator.getCurrentPrice(symbol);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.riskengine.risksystem.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Data transfer object for batch order requests.
+ * Groups the place and cancel instructions a single user submits together.
+ */
+@Data
+public class BatchOrderRequestDTO {
+    private String userId;
+    private List<OrderInstructionDTO> instructions;
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.riskengine.risksystem.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Data transfer object for setting a portfolio's equity alert.
+ * A threshold of zero removes the alert.
+ */
+@Data
+public class EquityAlertRequestDTO {
+    private BigDecimal threshold;
+}
\ No newline at end of file
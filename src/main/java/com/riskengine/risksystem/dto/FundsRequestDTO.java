@@ -2,11 +2,13 @@ package com.riskengine.risksystem.dto;
 
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 /**
  * Data transfer object for portfolio fund operations.
  * Used for deposit and withdrawal requests.
  */
 @Data
 public class FundsRequestDTO {
-    private double amount;
+    private BigDecimal amount;
 }
\ No newline at end of file
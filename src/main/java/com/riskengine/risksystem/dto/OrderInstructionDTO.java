@@ -0,0 +1,23 @@
+package com.riskengine.risksystem.dto;
+
+import com.riskengine.risksystem.market.model.Order;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Data transfer object for one instruction within a batch order request.
+ * PLACE instructions carry the same fields as a single order request;
+ * CANCEL instructions only need the order ID.
+ */
+@Data
+public class OrderInstructionDTO {
+    private Order.OrderAction action;
+    private String orderId;
+    private String symbol;
+    private Order.OrderSide side;
+    private BigDecimal quantity;
+    private BigDecimal price;
+    private BigDecimal stopPrice;
+    private Order.OrderType type;
+}
\ No newline at end of file
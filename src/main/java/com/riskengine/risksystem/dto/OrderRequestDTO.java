@@ -3,16 +3,19 @@ package com.riskengine.risksystem.dto;
 import com.riskengine.risksystem.market.model.Order;
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 /**
  * Data transfer object for order placement requests.
- * Contains all information needed to place a new market or limit order.
+ * Contains all information needed to place a new order of any supported type.
  */
 @Data
 public class OrderRequestDTO {
     private String userId;
     private String symbol;
     private Order.OrderSide side;
-    private double quantity;
-    private double price;
+    private BigDecimal quantity;
+    private BigDecimal price;
+    private BigDecimal stopPrice;
     private Order.OrderType type;
 }
\ No newline at end of file
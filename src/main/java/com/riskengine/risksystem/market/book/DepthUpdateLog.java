@@ -0,0 +1,103 @@
+package com.riskengine.risksystem.market.book;
+
+import com.riskengine.risksystem.market.model.DepthUpdate;
+import com.riskengine.risksystem.market.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded history of the most recent depth updates of one book, stored
+ * in primitive columns of a ring. Written by the book's owning thread
+ * only; readers on other threads detect entries overwritten while they
+ * were copying and report a gap instead.
+ */
+public class DepthUpdateLog {
+    private final String symbol;
+    private final int mask;
+    private final long[] sequences;
+    private final boolean[] buySide;
+    private final long[] prices;
+    private final long[] quantities;
+    private final int[] orderCounts;
+
+    /** Sequence of the most recent update written */
+    private volatile long lastSequence;
+
+    /**
+     * @param symbol Asset symbol stamped on the updates
+     * @param capacity Number of updates retained, must be a power of two
+     */
+    public DepthUpdateLog(String symbol, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.symbol = symbol;
+        this.mask = capacity - 1;
+        this.sequences = new long[capacity];
+        this.buySide = new boolean[capacity];
+        this.prices = new long[capacity];
+        this.quantities = new long[capacity];
+        this.orderCounts = new int[capacity];
+    }
+
+    /**
+     * Record the new state of a level
+     *
+     * @return Sequence number assigned to the update
+     */
+    public long append(Order.OrderSide side, long price, long quantity, int orderCount) {
+        long sequence = lastSequence + 1;
+        int index = (int) (sequence & mask);
+
+        sequences[index] = sequence;
+        buySide[index] = side == Order.OrderSide.BUY;
+        prices[index] = price;
+        quantities[index] = quantity;
+        orderCounts[index] = orderCount;
+
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Updates newer than the given sequence, oldest first
+     *
+     * @param since Last sequence the caller has applied
+     * @param limit Maximum number of updates to return
+     * @return Updates in order, or null if some of the requested updates
+     *         are no longer retained and the caller must take a new snapshot
+     * @throws IllegalArgumentException if since is negative
+     */
+    public List<DepthUpdate> readSince(long since, int limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("Sequence must not be negative: " + since);
+        }
+        
+        long last = lastSequence;
+        long from = since + 1;
+        long to = Math.min(last, since + limit);
+
+        if (from > last) {
+            return List.of();
+        }
+
+        List<DepthUpdate> updates = new ArrayList<>((int) (to - from + 1));
+        for (long sequence = from; sequence <= to; sequence++) {
+            int index = (int) (sequence & mask);
+            updates.add(new DepthUpdate(symbol, sequences[index],
+                    buySide[index] ? Order.OrderSide.BUY : Order.OrderSide.SELL,
+                    prices[index], quantities[index], orderCounts[index]));
+        }
+
+        // The writer may have lapped the oldest entries while they were copied
+        if (from <= lastSequence - sequences.length) {
+            return null;
+        }
+        return updates;
+    }
+}
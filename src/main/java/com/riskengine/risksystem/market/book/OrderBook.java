@@ -0,0 +1,387 @@
+package com.riskengine.risksystem.market.book;
+
+import com.riskengine.risksystem.market.model.DepthLevel;
+import com.riskengine.risksystem.market.model.Order;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Price-time priority order book for a single asset.
+ * Bids are sorted highest price first, asks lowest price first,
+ * and orders within a price level are kept in arrival order.
+ * Stop and stop-limit orders wait in a separate trigger index sorted by
+ * stop price, so a price change only visits the stops it activates.
+ * Prices and quantities are {@link com.riskengine.risksystem.market.model.FixedPoint}
+ * values, so price levels are keyed and compared exactly.
+ * <p>
+ * The book is mutated by a single owning thread. Level aggregates and the
+ * depth update log may be read concurrently for L2 depth views.
+ */
+public class OrderBook {
+    /** Depth updates retained per book for incremental readers */
+    private static final int DEPTH_LOG_CAPACITY = 4096;
+
+    /** Asset symbol this book belongs to */
+    @Getter
+    private final String symbol;
+
+    /** Buy side levels (price → level), best (highest) bid first */
+    private final NavigableMap<Long, PriceLevel> bids = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+
+    /** Sell side levels (price → level), best (lowest) ask first */
+    private final NavigableMap<Long, PriceLevel> asks = new ConcurrentSkipListMap<>();
+
+    /** Pending buy stops (stop price → orders), lowest stop first; triggered as the price rises */
+    private final NavigableMap<Long, Deque<Order>> buyStops = new TreeMap<>();
+
+    /** Pending sell stops (stop price → orders), highest stop first; triggered as the price falls */
+    private final NavigableMap<Long, Deque<Order>> sellStops = new TreeMap<>(Comparator.reverseOrder());
+
+    /** Recent level changes, each with a per-book sequence number */
+    @Getter
+    private final DepthUpdateLog depthLog;
+
+    /** Notified after every level change, or null */
+    private final DepthListener depthListener;
+
+    /** Number of resting orders across both sides */
+    private int orderCount;
+
+    /** Number of pending stop orders across both sides */
+    @Getter
+    private int stopCount;
+
+    /**
+     * Callback for each execution produced while crossing the book.
+     * Invoked with the maker already updated, so no event object is
+     * allocated by the book itself.
+     */
+    @FunctionalInterface
+    public interface FillListener {
+        void onFill(Order taker, Order maker, long price, long quantity);
+    }
+
+    /**
+     * Callback for each change to the aggregate state of a price level.
+     * A quantity of zero means the level has been removed.
+     */
+    @FunctionalInterface
+    public interface DepthListener {
+        void onLevelChange(OrderBook book, long sequence, Order.OrderSide side,
+                           long price, long quantity, int orderCount);
+    }
+
+    public OrderBook(String symbol, DepthListener depthListener) {
+        this.symbol = symbol;
+        this.depthListener = depthListener;
+        this.depthLog = new DepthUpdateLog(symbol, DEPTH_LOG_CAPACITY);
+    }
+
+    /**
+     * Rest an order at the back of its price level
+     *
+     * @param order Limit order to add
+     */
+    public void add(Order order) {
+        PriceLevel level = sideOf(order.getSide())
+            .computeIfAbsent(order.getPrice(), PriceLevel::new);
+        level.add(order);
+        orderCount++;
+        levelChanged(order.getSide(), level);
+    }
+
+    /**
+     * Park a stop or stop-limit order in the trigger index until the
+     * market reaches its stop price
+     *
+     * @param order Stop order to add
+     */
+    public void addStop(Order order) {
+        stopsOf(order.getSide())
+            .computeIfAbsent(order.getStopPrice(), price -> new ArrayDeque<>())
+            .addLast(order);
+        stopCount++;
+    }
+
+    /**
+     * Remove a resting order, or a pending stop order, from the book
+     *
+     * @param order Order to remove
+     * @return true if the order was resting or pending in this book
+     */
+    public boolean remove(Order order) {
+        NavigableMap<Long, PriceLevel> side = sideOf(order.getSide());
+        PriceLevel level = side.get(order.getPrice());
+
+        if (level == null || !level.remove(order)) {
+            return order.getType().isStop() && removeStop(order);
+        }
+
+        if (level.isEmpty()) {
+            side.remove(order.getPrice());
+        }
+        orderCount--;
+        levelChanged(order.getSide(), level);
+        return true;
+    }
+
+    /**
+     * Cross an incoming limit order against the opposite side of the book.
+     * Executions happen at the resting order's price, best level first and
+     * oldest order first within a level, until the incoming order is
+     * exhausted or the next level no longer crosses its limit. Any
+     * remainder is left to the caller to rest or discard.
+     *
+     * @param taker Incoming limit order, not yet in the book
+     * @param listener Receives one callback per execution
+     */
+    public void match(Order taker, FillListener listener) {
+        boolean buying = taker.getSide() == Order.OrderSide.BUY;
+        Order.OrderSide makerSide = buying ? Order.OrderSide.SELL : Order.OrderSide.BUY;
+        Iterator<PriceLevel> levels = (buying ? asks : bids).values().iterator();
+
+        while (taker.getRemainingQuantity() > 0 && levels.hasNext()) {
+            PriceLevel level = levels.next();
+            long levelPrice = level.getPrice();
+            if (buying ? levelPrice > taker.getPrice() : levelPrice < taker.getPrice()) {
+                break;
+            }
+
+            Order maker;
+            while (taker.getRemainingQuantity() > 0 && (maker = level.peek()) != null) {
+                long quantity = Math.min(taker.getRemainingQuantity(), maker.getRemainingQuantity());
+                taker.fill(quantity);
+                maker.fill(quantity);
+                level.reduce(quantity);
+
+                if (maker.getRemainingQuantity() <= 0) {
+                    level.poll();
+                    orderCount--;
+                }
+                listener.onFill(taker, maker, levelPrice, quantity);
+            }
+
+            if (level.isEmpty()) {
+                levels.remove();
+            }
+            levelChanged(makerSide, level);
+        }
+    }
+
+    /**
+     * Take every resting order whose limit is reached by the market price.
+     * Only levels that cross the price are visited; the scan stops at the
+     * first level on each side that does not.
+     *
+     * @param marketPrice Current market price
+     * @return Crossed orders in price-time priority, already removed from the book
+     */
+    public List<Order> takeCrossed(long marketPrice) {
+        List<Order> crossed = new ArrayList<>();
+
+        // Buy limits at or above the market price
+        drainWhile(bids, Order.OrderSide.BUY, level -> level.getPrice() >= marketPrice, crossed);
+
+        // Sell limits at or below the market price
+        drainWhile(asks, Order.OrderSide.SELL, level -> level.getPrice() <= marketPrice, crossed);
+
+        return crossed;
+    }
+
+    /**
+     * Take every pending stop order whose stop price the market has reached.
+     * Only the triggered part of each stop index is visited.
+     *
+     * @param marketPrice Current market price
+     * @return Triggered stops, nearest stop price first, already removed from the index
+     */
+    public List<Order> takeTriggeredStops(long marketPrice) {
+        if (stopCount == 0) {
+            return List.of();
+        }
+
+        List<Order> triggered = new ArrayList<>();
+
+        // Buy stops at or below the market price
+        drainStopsWhile(buyStops, stop -> stop <= marketPrice, triggered);
+
+        // Sell stops at or above the market price
+        drainStopsWhile(sellStops, stop -> stop >= marketPrice, triggered);
+
+        return triggered;
+    }
+
+    /**
+     * Resting quantity on the opposite side that an incoming order could
+     * execute against within its limit. Stops counting once the wanted
+     * amount is reached.
+     *
+     * @param taker Incoming limit order
+     * @param wanted Quantity the caller needs
+     * @return Available quantity, capped near the wanted amount
+     */
+    public long availableQuantity(Order taker, long wanted) {
+        boolean buying = taker.getSide() == Order.OrderSide.BUY;
+        long available = 0;
+
+        for (PriceLevel level : (buying ? asks : bids).values()) {
+            if (available >= wanted ||
+                (buying ? level.getPrice() > taker.getPrice() : level.getPrice() < taker.getPrice())) {
+                break;
+            }
+            available += level.getTotalQuantity();
+        }
+
+        return available;
+    }
+
+    private boolean removeStop(Order order) {
+        NavigableMap<Long, Deque<Order>> stops = stopsOf(order.getSide());
+        Deque<Order> queue = stops.get(order.getStopPrice());
+
+        if (queue == null || !queue.remove(order)) {
+            return false;
+        }
+
+        if (queue.isEmpty()) {
+            stops.remove(order.getStopPrice());
+        }
+        stopCount--;
+        return true;
+    }
+
+    private void drainStopsWhile(NavigableMap<Long, Deque<Order>> stops,
+                                 LongPredicate reached,
+                                 List<Order> out) {
+        Iterator<Map.Entry<Long, Deque<Order>>> entries = stops.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            Map.Entry<Long, Deque<Order>> entry = entries.next();
+            if (!reached.test(entry.getKey())) {
+                break;
+            }
+
+            out.addAll(entry.getValue());
+            stopCount -= entry.getValue().size();
+            entries.remove();
+        }
+    }
+
+    private void drainWhile(NavigableMap<Long, PriceLevel> side,
+                            Order.OrderSide orderSide,
+                            Predicate<PriceLevel> crosses,
+                            List<Order> out) {
+        Iterator<PriceLevel> levels = side.values().iterator();
+
+        while (levels.hasNext()) {
+            PriceLevel level = levels.next();
+            if (!crosses.test(level)) {
+                break;
+            }
+
+            Order order;
+            while ((order = level.poll()) != null) {
+                out.add(order);
+                orderCount--;
+            }
+            levels.remove();
+            levelChanged(orderSide, level);
+        }
+    }
+
+    /**
+     * All resting orders, bids first then asks, each in price-time priority.
+     * Must be called on the owning thread.
+     *
+     * @return Snapshot list of resting orders
+     */
+    public List<Order> getOrders() {
+        List<Order> orders = new ArrayList<>(orderCount);
+        bids.values().forEach(level -> orders.addAll(level.getOrders()));
+        asks.values().forEach(level -> orders.addAll(level.getOrders()));
+        return orders;
+    }
+
+    /**
+     * All pending stop orders, buy stops then sell stops, each nearest
+     * trigger first. Must be called on the owning thread.
+     *
+     * @return Snapshot list of pending stops
+     */
+    public List<Order> getStops() {
+        List<Order> stops = new ArrayList<>(stopCount);
+        buyStops.values().forEach(stops::addAll);
+        sellStops.values().forEach(stops::addAll);
+        return stops;
+    }
+
+    /**
+     * Aggregated top levels of one side; safe to call from any thread
+     *
+     * @param side Book side
+     * @param maxLevels Maximum number of levels to return
+     * @return Levels best price first
+     */
+    public List<DepthLevel> getDepth(Order.OrderSide side, int maxLevels) {
+        List<DepthLevel> depth = new ArrayList<>(Math.min(maxLevels, 64));
+
+        for (PriceLevel level : sideOf(side).values()) {
+            if (depth.size() >= maxLevels) {
+                break;
+            }
+            int count = level.getOrderCount();
+            if (count > 0) {
+                depth.add(new DepthLevel(level.getPrice(), level.getTotalQuantity(), count));
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * Best (highest) bid level, or null if there are no bids
+     */
+    public PriceLevel getBestBid() {
+        return bids.isEmpty() ? null : bids.firstEntry().getValue();
+    }
+
+    /**
+     * Best (lowest) ask level, or null if there are no asks
+     */
+    public PriceLevel getBestAsk() {
+        return asks.isEmpty() ? null : asks.firstEntry().getValue();
+    }
+
+    public int size() {
+        return orderCount;
+    }
+
+    private void levelChanged(Order.OrderSide side, PriceLevel level) {
+        long quantity = level.isEmpty() ? 0 : level.getTotalQuantity();
+        long sequence = depthLog.append(side, level.getPrice(), quantity, level.getOrderCount());
+
+        if (depthListener != null) {
+            depthListener.onLevelChange(this, sequence, side, level.getPrice(), quantity, level.getOrderCount());
+        }
+    }
+
+    private NavigableMap<Long, PriceLevel> sideOf(Order.OrderSide side) {
+        return side == Order.OrderSide.BUY ? bids : asks;
+    }
+
+    private NavigableMap<Long, Deque<Order>> stopsOf(Order.OrderSide side) {
+        return side == Order.OrderSide.BUY ? buyStops : sellStops;
+    }
+}
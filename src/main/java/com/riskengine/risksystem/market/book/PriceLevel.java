@@ -0,0 +1,108 @@
+package com.riskengine.risksystem.market.book;
+
+import com.riskengine.risksystem.market.model.Order;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+
+/**
+ * All resting orders at a single price, kept in arrival (FIFO) order.
+ * The level's total remaining quantity and order count are maintained
+ * incrementally by the book's owning thread and may be read from any
+ * thread for depth views.
+ */
+public class PriceLevel {
+    /** Limit price shared by every order in this level */
+    @Getter
+    private final long price;
+
+    /** Orders queued at this price, oldest first */
+    private final Deque<Order> orders = new ArrayDeque<>();
+
+    /** Sum of the remaining quantity of every queued order */
+    @Getter
+    private volatile long totalQuantity;
+
+    /** Number of queued orders */
+    @Getter
+    private volatile int orderCount;
+
+    public PriceLevel(long price) {
+        this.price = price;
+    }
+
+    /**
+     * Queue an order at the back of this level
+     *
+     * @param order Order to add
+     */
+    public void add(Order order) {
+        orders.addLast(order);
+        totalQuantity += order.getRemainingQuantity();
+        orderCount++;
+    }
+
+    /**
+     * Remove a specific order from this level
+     *
+     * @param order Order to remove
+     * @return true if the order was queued here
+     */
+    public boolean remove(Order order) {
+        if (!orders.remove(order)) {
+            return false;
+        }
+        onRemoved(order);
+        return true;
+    }
+
+    /**
+     * Remove and return the oldest order in this level
+     *
+     * @return Oldest order, or null if the level is empty
+     */
+    public Order poll() {
+        Order order = orders.pollFirst();
+        if (order != null) {
+            onRemoved(order);
+        }
+        return order;
+    }
+
+    /**
+     * Oldest order in this level without removing it
+     *
+     * @return Oldest order, or null if the level is empty
+     */
+    public Order peek() {
+        return orders.peekFirst();
+    }
+
+    /**
+     * Account for a partial execution of a queued order
+     *
+     * @param quantity Amount executed
+     */
+    public void reduce(long quantity) {
+        totalQuantity -= quantity;
+    }
+
+    public boolean isEmpty() {
+        return orders.isEmpty();
+    }
+
+    /**
+     * Read-only view of the queued orders in time priority
+     */
+    public Collection<Order> getOrders() {
+        return Collections.unmodifiableCollection(orders);
+    }
+
+    private void onRemoved(Order order) {
+        orderCount--;
+        totalQuantity -= order.getRemainingQuantity();
+    }
+}
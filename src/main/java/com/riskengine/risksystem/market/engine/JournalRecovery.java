@@ -0,0 +1,214 @@
+package com.riskengine.risksystem.market.engine;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Fill;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.Portfolio;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.persistence.SnapshotStore;
+import com.riskengine.risksystem.market.service.OrderBookService;
+import com.riskengine.risksystem.market.service.PortfolioService;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds order books, portfolios and market prices from the latest
+ * snapshot, then replays the journal from the snapshot's sequence.
+ * <p>
+ * Each symbol and portfolio in the snapshot was captured at its own
+ * journal sequence, so a tail record is only applied if it is newer than
+ * the capture of the symbol or portfolio it belongs to.
+ * <p>
+ * Place, cancel and tick records are applied to the order books exactly as
+ * the matching engine applied them, so every order's state is re-derived
+ * rather than read back. Portfolios are rebuilt from the fill records
+ * instead, which also cover market orders that never reached a book.
+ * Recovery runs from {@link MatchingEngine#start()} before any fill
+ * listener is registered, so re-derived executions are not applied to
+ * portfolios, recorded as new transactions or journaled a second time.
+ */
+@Component
+@Slf4j
+public class JournalRecovery implements Journal.Handler {
+    @Autowired
+    private Journal journal;
+    
+    @Autowired
+    private SnapshotStore snapshotStore;
+    
+    @Autowired
+    private OrderBookService orderBookService;
+    
+    @Autowired
+    private PortfolioService portfolioService;
+    
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    /** Whether to rebuild state from the journal at startup */
+    @Value("${market.journal.replay:true}")
+    private boolean replayOnStartup;
+    
+    /** Fill records applied to portfolios during the current replay */
+    private long fills;
+    
+    /** Journal sequence each restored symbol was captured at */
+    private final Map<String, Long> symbolSequences = new HashMap<>();
+    
+    /** Journal sequence each restored portfolio was captured at */
+    private final Map<String, Long> portfolioSequences = new HashMap<>();
+    
+    /**
+     * Load the latest snapshot and replay the journal after it into the
+     * in-memory services
+     *
+     * @return Number of journal records replayed
+     */
+    public long recover() throws IOException {
+        if (!replayOnStartup) {
+            return 0;
+        }
+        
+        long start = System.nanoTime();
+        long from = 0;
+        
+        SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest();
+        if (snapshot != null) {
+            restore(snapshot);
+            from = snapshot.sequence();
+            log.info("Restored snapshot at sequence {} taken {}: {} symbols, {} portfolios in {} ms",
+                    from, snapshot.createdAt(), snapshot.symbols().size(), snapshot.portfolios().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        
+        fills = 0;
+        long replayed = journal.replay(from, this);
+        symbolSequences.clear();
+        portfolioSequences.clear();
+        
+        log.info("Replayed {} journal records ({} fills) in {} ms", replayed, fills,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return replayed;
+    }
+    
+    private void restore(SnapshotStore.Snapshot snapshot) {
+        for (SnapshotStore.SymbolState symbol : snapshot.symbols()) {
+            symbolSequences.put(symbol.symbol(), symbol.sequence());
+            if (symbol.price() != null) {
+                marketSimulator.restorePrice(symbol.price());
+            }
+            symbol.orders().forEach(order -> orderBookService.restoreOrder(order, false));
+            symbol.stops().forEach(order -> orderBookService.restoreOrder(order, true));
+        }
+        
+        // After the books, so an order captured live and terminal at once stays live
+        snapshot.terminalOrders().forEach(orderBookService::restoreTerminalOrder);
+        
+        for (SnapshotStore.PortfolioState portfolio : snapshot.portfolios()) {
+            portfolioSequences.put(portfolio.userId(), portfolio.sequence());
+            portfolioService.restorePortfolio(portfolio.userId(), portfolio.cashBalance(), portfolio.holdings());
+        }
+    }
+    
+    /**
+     * Whether a record is already reflected in the snapshot state of its key
+     */
+    private static boolean captured(Map<String, Long> sequences, String key, long sequence) {
+        Long captured = sequences.get(key);
+        return captured != null && sequence < captured;
+    }
+    
+    @Override
+    public void onPlace(long sequence, Order order, long marketPrice) {
+        if (captured(symbolSequences, order.getSymbol(), sequence)) {
+            return;
+        }
+        
+        try {
+            // Only the price is used when placing an order
+            orderBookService.addOrder(order, new AssetPrice(order.getSymbol(), SymbolRegistry.UNREGISTERED,
+                    marketPrice, marketPrice, marketPrice, marketPrice, 0, order.getCreatedAt()));
+        } catch (Exception e) {
+            log.warn("Journal record {}: order {} could not be replayed", sequence, order.getId(), e);
+        }
+    }
+    
+    @Override
+    public void onCancel(long sequence, String orderId) {
+        // A cancellation already in the snapshot left no live order behind, so it is a no-op
+        orderBookService.cancelOrder(orderId);
+    }
+    
+    @Override
+    public void onTick(long sequence, AssetPrice price) {
+        if (captured(symbolSequences, price.getSymbol(), sequence)) {
+            return;
+        }
+        
+        orderBookService.processTick(marketSimulator.restorePrice(price));
+    }
+    
+    @Override
+    public void onFill(long sequence, Fill fill) {
+        int symbolId = symbolRegistry.idOf(fill.getSymbol());
+        if (symbolId == SymbolRegistry.UNREGISTERED) {
+            log.warn("Journal record {}: fill of order {} names unknown symbol {}",
+                    sequence, fill.getTakerOrderId(), fill.getSymbol());
+            return;
+        }
+        
+        restoreTrade(sequence, fill.getTakerUserId(), symbolId, fill.getTakerSide(), fill);
+        
+        // Market fills have no maker; the simulated market is the counterparty
+        if (fill.getMakerUserId() != null) {
+            Order.OrderSide makerSide = fill.getTakerSide() == Order.OrderSide.BUY
+                ? Order.OrderSide.SELL
+                : Order.OrderSide.BUY;
+            restoreTrade(sequence, fill.getMakerUserId(), symbolId, makerSide, fill);
+        }
+        fills++;
+    }
+    
+    /**
+     * Apply one side of a journaled fill unless the portfolio snapshot already holds it
+     */
+    private void restoreTrade(long sequence, String userId, int symbolId, Order.OrderSide side, Fill fill) {
+        if (captured(portfolioSequences, userId, sequence)) {
+            return;
+        }
+        
+        if (!portfolioService.executeTrade(userId, symbolId, side, fill.getQuantity(), fill.getPrice())) {
+            log.warn("Journal record {}: {} of {} by {} could not be applied to the recovered portfolio",
+                    sequence, side, FixedPoint.toBigDecimal(fill.getQuantity()), userId);
+        }
+    }
+    
+    @Override
+    public void onCash(long sequence, String userId, long amount) {
+        if (captured(portfolioSequences, userId, sequence)) {
+            return;
+        }
+        
+        Portfolio portfolio = portfolioService.getPortfolio(userId);
+        
+        if (amount >= 0) {
+            portfolio.depositCash(amount);
+        } else if (!portfolio.withdrawCash(-amount)) {
+            log.warn("Journal record {}: withdrawal of {} by {} exceeds recovered balance",
+                    sequence, FixedPoint.toBigDecimal(-amount), userId);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.riskengine.risksystem.market.engine;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.service.OrderBookService;
+import com.riskengine.risksystem.market.service.PortfolioService;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single entry point for every order book mutation.
+ * <p>
+ * Symbols are partitioned into shards by symbol id. Each shard has its own
+ * {@link OrderSequencer} and dedicated thread, which alone mutates the
+ * books of its symbols and generates their prices. Place, cancel and tick
+ * commands from HTTP and scheduler threads are routed to the owning shard,
+ * so matching and price updates scale with the number of shards.
+ * <p>
+ * Every place, cancel and tick is written to the {@link Journal} on the
+ * shard thread just before it is applied, so replaying the journal in
+ * sequence order reproduces each book exactly. Executions are settled
+ * against both users' portfolios, out of what their orders reserved, and
+ * journaled by the {@link PortfolioService} as the books report them.
+ */
+@Service
+@Slf4j
+public class MatchingEngine {
+    @Autowired
+    private OrderBookService orderBookService;
+    
+    @Autowired
+    private PortfolioService portfolioService;
+    
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    @Autowired
+    private Journal journal;
+    
+    @Autowired
+    private JournalRecovery journalRecovery;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    /** Ring buffer capacity per shard (power of two) */
+    @Value("${market.engine.buffer-size:65536}")
+    private int bufferSize;
+    
+    /** Number of shards; 0 means one per available processor */
+    @Value("${market.engine.shards:0}")
+    private int shardCount;
+    
+    private OrderSequencer[] shards;
+    
+    /** Price generation state of each shard, used only on the shard's thread */
+    private MarketSimulator.Partition[] partitions;
+    
+    /** Ids of the symbols owned by each shard, rebuilt when the asset list changes */
+    private volatile int[][] shardSymbols = new int[0][];
+    
+    /**
+     * Rebuild state from the journal, then start the shard threads.
+     * Recovery runs before any shard thread exists, so the threads see
+     * every recovered book when they start.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        journalRecovery.recover();
+        // Recovery rebuilds books and portfolios without reservations
+        portfolioService.reserveOpenOrders(orderBookService.getAllOpenOrders());
+        // Settle and journal every execution from here on, and release what
+        // cancelled orders reserved; replayed fills were already applied to
+        // the recovered portfolios
+        orderBookService.addFillListener(portfolioService::applyFill);
+        orderBookService.addOrderListener(portfolioService::onOrderUpdate);
+        
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        shards = new OrderSequencer[count];
+        partitions = new MarketSimulator.Partition[count];
+        
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            partitions[i] = marketSimulator.newPartition();
+            shards[i] = new OrderSequencer("matching-engine-" + i, bufferSize, 
+                    command -> handle(shard, command));
+            shards[i].start();
+        }
+        log.info("Matching engine started with {} shards", count);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        for (OrderSequencer shard : shards) {
+            shard.stop();
+        }
+    }
+    
+    /**
+     * Queue an order that executes through the book (any type but MARKET)
+     * 
+     * @param order Order to place
+     * @return Future completed with the order once it has been applied
+     * @throws IllegalArgumentException if the order's symbol is not a registered asset
+     */
+    public CompletableFuture<Order> place(Order order) {
+        return shardOf(order).submit(OrderCommand.Type.PLACE, order, null);
+    }
+    
+    /**
+     * Queue cancellation of a resting order
+     * 
+     * @param order Order to cancel
+     * @return Future completed with the order once it has been applied
+     */
+    public CompletableFuture<Order> cancel(Order order) {
+        return shardOf(order).submit(OrderCommand.Type.CANCEL, order, null);
+    }
+    
+    /**
+     * Apply a batch of place and cancel instructions.
+     * Instructions are grouped by owning shard; each shard applies its group
+     * as a single sequenced command, in the order given.
+     * 
+     * @param batch Instructions to apply
+     * @return Future completed once every shard has applied its group
+     * @throws IllegalArgumentException if an order's symbol is not a registered asset
+     */
+    public CompletableFuture<Void> applyBatch(List<OrderCommand.BatchItem> batch) {
+        Map<Integer, List<OrderCommand.BatchItem>> byShard = new LinkedHashMap<>();
+        for (OrderCommand.BatchItem item : batch) {
+            byShard.computeIfAbsent(shardIndex(symbolRegistry.require(item.order())), i -> new ArrayList<>())
+                   .add(item);
+        }
+        
+        CompletableFuture<?>[] results = new CompletableFuture<?>[byShard.size()];
+        int i = 0;
+        for (Map.Entry<Integer, List<OrderCommand.BatchItem>> group : byShard.entrySet()) {
+            results[i++] = shards[group.getKey()].submitBatch(group.getValue());
+        }
+        
+        return CompletableFuture.allOf(results);
+    }
+    
+    /**
+     * Run a task on the thread that owns a symbol's book, between two of
+     * its commands, so the task sees the book in a consistent state
+     * 
+     * @param symbol Asset symbol
+     * @param task Work to run
+     * @return Future completed once the task has run
+     */
+    public CompletableFuture<Order> runOnOwner(String symbol, Runnable task) {
+        return shards[shardIndex(symbolRegistry.require(symbol))].submitTask(task);
+    }
+    
+    /**
+     * Resting orders of a symbol, read on the thread that owns its book.
+     * The book's price levels are plain queues mutated by that thread, so
+     * other threads must not iterate them directly.
+     * 
+     * @param symbol Asset symbol
+     * @return Future completed with a copy of the resting orders
+     */
+    public CompletableFuture<List<Order>> getOpenOrders(String symbol) {
+        OrderSequencer shard = shards[shardIndex(symbolRegistry.require(symbol))];
+        if (shard.isConsumerThread()) {
+            return CompletableFuture.completedFuture(orderBookService.getOpenOrders(symbol));
+        }
+        
+        List<List<Order>> orders = new ArrayList<>(1);
+        return shard.submitTask(() -> orders.add(orderBookService.getOpenOrders(symbol)))
+                    .thenApply(ignored -> orders.get(0));
+    }
+    
+    /**
+     * Match a symbol's resting orders against a new price.
+     * Ticks produced by the owning shard itself are matched inline.
+     * 
+     * @param price New market price, stamped with its symbol id
+     */
+    public void tick(AssetPrice price) {
+        OrderSequencer shard = shards[shardIndex(price.getSymbolId())];
+        
+        if (shard.isConsumerThread()) {
+            matchTick(price);
+        } else {
+            shard.send(OrderCommand.Type.TICK, null, price);
+        }
+    }
+    
+    /**
+     * Apply a batch of recorded prices in place of generated ones.
+     * Prices are grouped by owning shard, and each shard stores and
+     * publishes its group as one batch, on its own thread.
+     * 
+     * @param prices Prices stamped with the ids of available assets
+     * @param epochNanos Time of the batch
+     * @return Future completed once every shard has applied its group
+     */
+    public CompletableFuture<Void> applyPrices(List<AssetPrice> prices, long epochNanos) {
+        Map<Integer, List<AssetPrice>> byShard = new LinkedHashMap<>();
+        for (AssetPrice price : prices) {
+            byShard.computeIfAbsent(shardIndex(price.getSymbolId()), i -> new ArrayList<>()).add(price);
+        }
+        
+        CompletableFuture<?>[] results = new CompletableFuture<?>[byShard.size()];
+        int i = 0;
+        for (Map.Entry<Integer, List<AssetPrice>> group : byShard.entrySet()) {
+            int shard = group.getKey();
+            results[i++] = shards[shard].submitTask(
+                    () -> marketSimulator.applyPrices(group.getValue(), epochNanos, partitions[shard]));
+        }
+        
+        return CompletableFuture.allOf(results);
+    }
+    
+    /**
+     * Ask every shard to generate new prices for the symbols it owns.
+     * A shard still busy with its previous update skips this one.
+     */
+    public void updateMarketPrices() {
+        int[][] assignment = symbolsByShard();
+        
+        for (int i = 0; i < shards.length; i++) {
+            if (assignment[i].length > 0 && marketSimulator.requestUpdate(partitions[i])) {
+                shards[i].send(OrderCommand.Type.UPDATE_PRICES, null, null);
+            }
+        }
+    }
+    
+    /**
+     * Apply one command; runs only on the owning shard's thread
+     */
+    private Order handle(int shard, OrderCommand command) {
+        return switch (command.getType()) {
+            case PLACE -> addToBook(command.getOrder());
+            case CANCEL -> cancelInBook(command.getOrder());
+            case TICK -> {
+                matchTick(command.getPrice());
+                yield null;
+            }
+            case UPDATE_PRICES -> {
+                marketSimulator.updateMarketPrices(shardSymbols[shard], partitions[shard]);
+                yield null;
+            }
+            case BATCH -> {
+                applyBatchItems(command.getBatch());
+                yield null;
+            }
+            case RUN -> {
+                command.getTask().run();
+                yield null;
+            }
+        };
+    }
+    
+    private Order addToBook(Order order) {
+        AssetPrice marketPrice = marketSimulator.getCurrentPrice(symbolRegistry.require(order));
+        journal.appendPlace(order, marketPrice.getPrice());
+        return orderBookService.addOrder(order, marketPrice);
+    }
+    
+    private Order cancelInBook(Order order) {
+        journal.appendCancel(order);
+        return orderBookService.cancelOrder(order.getId());
+    }
+    
+    /**
+     * Apply each instruction of a batch; a failing instruction rejects only its own order
+     */
+    private void applyBatchItems(List<OrderCommand.BatchItem> batch) {
+        for (OrderCommand.BatchItem item : batch) {
+            try {
+                if (item.type() == OrderCommand.Type.CANCEL) {
+                    cancelInBook(item.order());
+                } else {
+                    addToBook(item.order());
+                }
+            } catch (Exception e) {
+                log.error("Batch {} failed for order {}", item.type(), item.order().getId(), e);
+                if (item.type() == OrderCommand.Type.PLACE) {
+                    item.order().setStatus(Order.OrderStatus.REJECTED);
+                    item.order().setStatusReason(e.getMessage());
+                    portfolioService.release(item.order().getId());
+                }
+            }
+        }
+    }
+    
+    private void matchTick(AssetPrice price) {
+        journal.appendTick(price);
+        List<Order> filledOrders = orderBookService.processTick(price);
+        
+        if (!filledOrders.isEmpty()) {
+            log.info("Price tick {} at {} filled {} orders", 
+                    price.getSymbol(), FixedPoint.toBigDecimal(price.getPrice()), filledOrders.size());
+        }
+    }
+    
+    private OrderSequencer shardOf(Order order) {
+        return shards[shardIndex(symbolRegistry.require(order))];
+    }
+
+    
+    private int shardIndex(int symbolId) {
+        return symbolId % shards.length;
+    }
+    
+    /**
+     * Current symbol-to-shard assignment, recomputed only when assets are added
+     */
+    private int[][] symbolsByShard() {
+        int[][] assignment = shardSymbols;
+        int assetCount = marketSimulator.getAssetCount();
+        
+        if (Arrays.stream(assignment).mapToInt(ids -> ids.length).sum() != assetCount) {
+            int[] assetIds = marketSimulator.getAssetIds();
+            int[] counts = new int[shards.length];
+            for (int symbolId : assetIds) {
+                counts[shardIndex(symbolId)]++;
+            }
+            
+            assignment = new int[shards.length][];
+            for (int i = 0; i < shards.length; i++) {
+                assignment[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+            for (int symbolId : assetIds) {
+                int shard = shardIndex(symbolId);
+                assignment[shard][counts[shard]++] = symbolId;
+            }
+            shardSymbols = assignment;
+        }
+        
+        return assignment;
+    }
+}
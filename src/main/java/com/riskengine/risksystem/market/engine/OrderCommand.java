@@ -0,0 +1,78 @@
+package com.riskengine.risksystem.market.engine;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Order;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pre-allocated, reusable slot in the {@link OrderSequencer} ring buffer.
+ * Producers fill a slot in place instead of allocating a new command.
+ */
+@Getter
+public class OrderCommand {
+    /** What the business-logic thread should do with this command */
+    private Type type;
+    
+    /** Order to place or cancel */
+    private Order order;
+    
+    /** New market price for tick commands */
+    private AssetPrice price;
+    
+    /** Instructions applied together by a batch command */
+    private List<BatchItem> batch;
+    
+    /** Work to run on the consumer thread for run commands */
+    private Runnable task;
+    
+    /** Completed with the resulting order, or null for fire-and-forget commands */
+    private CompletableFuture<Order> result;
+    
+    /**
+     * Kinds of commands accepted by the sequencer
+     */
+    public enum Type {
+        /** Cross and rest a new limit order */
+        PLACE,
+        
+        /** Remove a resting order */
+        CANCEL,
+        
+        /** Match resting orders against a new market price */
+        TICK,
+        
+        /** Generate new prices for every symbol owned by the shard */
+        UPDATE_PRICES,
+        
+        /** Apply a list of place and cancel instructions in one step */
+        BATCH,
+        
+        /** Run a task on the consumer thread between two commands */
+        RUN
+    }
+    
+    /**
+     * One place or cancel instruction within a batch command
+     */
+    public record BatchItem(Type type, Order order) {}
+    
+    void set(Type type, Order order, AssetPrice price, List<BatchItem> batch,
+             Runnable task, CompletableFuture<Order> result) {
+        this.type = type;
+        this.order = order;
+        this.price = price;
+        this.batch = batch;
+        this.task = task;
+        this.result = result;
+    }
+    
+    /**
+     * Drop references so a consumed slot does not keep objects reachable
+     */
+    void clear() {
+        set(null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,238 @@
+package com.riskengine.risksystem.market.engine;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Order;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer, single-consumer ring buffer of order commands.
+ * <p>
+ * Any number of threads may publish commands; they claim a sequence with a
+ * single CAS and write into a pre-allocated slot. One dedicated thread
+ * applies the commands strictly in sequence order, so the state it owns
+ * needs no locking. When the ring is full, producers wait for the consumer
+ * to free a slot.
+ */
+@Slf4j
+public class OrderSequencer {
+    /** Applies one command on the business-logic thread */
+    @FunctionalInterface
+    public interface CommandHandler {
+        Order handle(OrderCommand command);
+    }
+    
+    /** Consumer spins this many times before yielding when idle */
+    private static final int SPIN_TRIES = 1000;
+    
+    /** Consumer yields this many times before parking when idle */
+    private static final int YIELD_TRIES = 100;
+    
+    /** Park time once the consumer has been idle for a while */
+    private static final long IDLE_PARK_NANOS = 50_000;
+    
+    private final String name;
+    private final CommandHandler handler;
+    
+    /** Pre-allocated command slots */
+    private final OrderCommand[] entries;
+    private final int mask;
+    
+    /** Sequence most recently published into each slot */
+    private final AtomicLongArray published;
+    
+    /** Highest sequence claimed by any producer */
+    private final AtomicLong claimed = new AtomicLong(-1);
+    
+    /** Highest sequence fully processed by the consumer */
+    private volatile long consumed = -1;
+    
+    private volatile boolean running;
+    private Thread consumerThread;
+    
+    /**
+     * @param name Name of the consumer thread
+     * @param bufferSize Ring capacity, must be a power of two
+     * @param handler Applies each command on the consumer thread
+     */
+    public OrderSequencer(String name, int bufferSize, CommandHandler handler) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferSize);
+        }
+        
+        this.name = name;
+        this.handler = handler;
+        this.entries = new OrderCommand[bufferSize];
+        this.mask = bufferSize - 1;
+        this.published = new AtomicLongArray(bufferSize);
+        
+        for (int i = 0; i < bufferSize; i++) {
+            entries[i] = new OrderCommand();
+            published.set(i, -1);
+        }
+    }
+    
+    /**
+     * Start the consumer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consumerThread = new Thread(this::consume, name);
+        consumerThread.start();
+        log.info("Order sequencer {} started with {} slots", name, entries.length);
+    }
+    
+    /**
+     * Stop the consumer thread after it has applied every published command
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumerThread);
+        
+        try {
+            consumerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Order sequencer {} stopped at sequence {}", name, consumed);
+    }
+    
+    /**
+     * Publish a command whose result the caller wants back
+     * 
+     * @return Future completed on the consumer thread with the handler's result
+     */
+    public CompletableFuture<Order> submit(OrderCommand.Type type, Order order, AssetPrice price) {
+        CompletableFuture<Order> result = new CompletableFuture<>();
+        publish(type, order, price, null, null, result);
+        return result;
+    }
+    
+    /**
+     * Publish a batch of instructions to be applied as one command
+     * 
+     * @return Future completed on the consumer thread once the whole batch has been applied
+     */
+    public CompletableFuture<Order> submitBatch(List<OrderCommand.BatchItem> batch) {
+        CompletableFuture<Order> result = new CompletableFuture<>();
+        publish(OrderCommand.Type.BATCH, null, null, batch, null, result);
+        return result;
+    }
+    
+    /**
+     * Publish a task to run on the consumer thread, ordered with every other command
+     * 
+     * @return Future completed on the consumer thread once the task has run
+     */
+    public CompletableFuture<Order> submitTask(Runnable task) {
+        CompletableFuture<Order> result = new CompletableFuture<>();
+        publish(OrderCommand.Type.RUN, null, null, null, task, result);
+        return result;
+    }
+    
+    /**
+     * Publish a fire-and-forget command
+     */
+    public void send(OrderCommand.Type type, Order order, AssetPrice price) {
+        publish(type, order, price, null, null, null);
+    }
+    
+    /**
+     * Whether the calling thread is this sequencer's consumer thread.
+     * Code already running on the consumer must not publish and wait on
+     * the same ring, since a full ring would then never drain.
+     */
+    public boolean isConsumerThread() {
+        return Thread.currentThread() == consumerThread;
+    }
+    
+    /**
+     * Number of commands published but not yet applied
+     */
+    public long getBacklog() {
+        return claimed.get() - consumed;
+    }
+    
+    private void publish(OrderCommand.Type type, Order order, AssetPrice price, 
+                         List<OrderCommand.BatchItem> batch, Runnable task,
+                         CompletableFuture<Order> result) {
+        if (!running) {
+            throw new IllegalStateException("Order sequencer " + name + " is not running");
+        }
+        
+        long sequence = claimed.incrementAndGet();
+        
+        // Wait for the consumer to free the slot one lap behind us
+        long wrapPoint = sequence - entries.length;
+        while (wrapPoint > consumed) {
+            LockSupport.parkNanos(1);
+        }
+        
+        int index = (int) (sequence & mask);
+        entries[index].set(type, order, price, batch, task, result);
+        published.lazySet(index, sequence);
+    }
+    
+    private void consume() {
+        long next = consumed + 1;
+        int idle = 0;
+        
+        while (true) {
+            int index = (int) (next & mask);
+            
+            if (published.get(index) != next) {
+                if (!running) {
+                    break; // Drained everything published before stop()
+                }
+                idle = backOff(idle);
+                continue;
+            }
+            
+            OrderCommand command = entries[index];
+            apply(command);
+            command.clear();
+            
+            consumed = next++;
+            idle = 0;
+        }
+    }
+    
+    private void apply(OrderCommand command) {
+        CompletableFuture<Order> result = command.getResult();
+        
+        try {
+            Order order = handler.handle(command);
+            if (result != null) {
+                result.complete(order);
+            }
+        } catch (Exception e) {
+            log.error("Order sequencer {} failed to apply {} command", name, command.getType(), e);
+            if (result != null) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+    
+    private int backOff(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            return idle;
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,203 @@
+package com.riskengine.risksystem.market.feed;
+
+import com.riskengine.risksystem.market.engine.MatchingEngine;
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.simulation.MarketClock;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prices replayed from a historical tick file, for backtesting strategies
+ * against the real order books.
+ * <p>
+ * The file, either a recording of a simulated run or a CSV export of
+ * market data (see {@link MappedTickReader}), is read through memory
+ * mappings on a dedicated thread, started by the first tick. Its batches
+ * are applied by the shards that own their symbols exactly as simulated
+ * batches are, so resting limit orders match against the historical
+ * prices and listeners downstream see the historical run. Ticks of
+ * symbols that are not traded are skipped.
+ * <p>
+ * At speed 0 batches are applied as fast as the shards take them;
+ * otherwise they are paced so that historical time passes the given
+ * number of times faster than wall time. Each batch waits for the
+ * previous one to be applied, so a slow shard holds the replay back
+ * rather than letting it queue up.
+ */
+@Component
+@Slf4j
+public class HistoricalPriceFeed implements PriceFeed {
+    @Autowired
+    private MatchingEngine matchingEngine;
+    
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    @Autowired
+    private MarketClock marketClock;
+    
+    /** Tick file to replay: CSV if it ends in .csv, otherwise a tick recording */
+    @Value("${market.feed.replay.path:}")
+    private String replayPath;
+    
+    /** Historical time per unit of wall time, e.g. 10 for ten times faster; 0 replays at full speed */
+    @Value("${market.feed.replay.speed:0}")
+    private double speed;
+    
+    private final AtomicBoolean started = new AtomicBoolean();
+    
+    private volatile boolean running;
+    
+    private Thread thread;
+    
+    @Override
+    public String getName() {
+        return "replay";
+    }
+    
+    /**
+     * @throws IllegalStateException if no readable tick file is configured
+     */
+    @Override
+    public void validate() {
+        if (replayPath.isEmpty()) {
+            throw new IllegalStateException("Price feed 'replay' selected but market.feed.replay.path is not set");
+        }
+        if (!Files.isReadable(Path.of(replayPath))) {
+            throw new IllegalStateException("Tick file " + replayPath + " for price feed 'replay' is not readable");
+        }
+    }
+    
+    /**
+     * Start replaying on a dedicated thread; only the first tick has any effect
+     */
+    @Override
+    public void tick() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        
+        running = true;
+        thread = new Thread(this::run, "tick-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void run() {
+        Path path = Path.of(replayPath);
+        Replay replay = new Replay();
+        
+        try (MappedTickReader reader = new MappedTickReader(path, this::tradedSymbolId)) {
+            log.info("Replaying {} ticks from {} at {}", reader.getFormat(), path,
+                    speed > 0 ? speed + "x" : "full speed");
+            try {
+                reader.read(replay);
+                replay.previous.join();
+            } finally {
+                replay.skipped = reader.getSkipped();
+                replay.outOfOrder = reader.getOutOfOrder();
+            }
+        } catch (CancellationException e) {
+            log.info("Tick replay stopped");
+            return;
+        } catch (Exception e) {
+            log.error("Tick replay of {} failed after {} batches", path, replay.batches, e);
+            return;
+        }
+        
+        long elapsedNanos = Math.max(1, System.nanoTime() - replay.wallStart);
+        log.info("Replayed {} batches, {} ticks in {} ms ({} ticks/s); {} ticks of unknown symbols skipped",
+                replay.batches, replay.ticks, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                replay.ticks * 1_000_000_000L / elapsedNanos, replay.skipped);
+        if (replay.outOfOrder > 0) {
+            log.warn("{} ticks of {} skipped because their timestamp went backwards", replay.outOfOrder, path);
+        }
+    }
+    
+    /**
+     * Id of a symbol with a traded asset, or {@link SymbolRegistry#UNREGISTERED}
+     */
+    private int tradedSymbolId(String symbol) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        return symbolId != SymbolRegistry.UNREGISTERED && marketSimulator.getAsset(symbolId) != null
+            ? symbolId
+            : SymbolRegistry.UNREGISTERED;
+    }
+    
+    /**
+     * Paces and applies the batches of one replay
+     */
+    private final class Replay implements MappedTickReader.BatchHandler {
+        private final long wallStart = System.nanoTime();
+        
+        /** Time of the first batch, epoch nanoseconds */
+        private long firstBatchNanos = Long.MIN_VALUE;
+        
+        private CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+        
+        private long batches;
+        
+        private long ticks;
+        
+        private long skipped;
+        
+        private long outOfOrder;
+        
+        @Override
+        public void onBatch(long epochNanos, List<AssetPrice> prices) {
+            if (firstBatchNanos == Long.MIN_VALUE) {
+                firstBatchNanos = epochNanos;
+            }
+            if (speed > 0) {
+                long due = wallStart + (long) ((epochNanos - firstBatchNanos) / speed);
+                for (long wait = due - System.nanoTime(); wait > 0 && running; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            if (!running) {
+                throw new CancellationException();
+            }
+            
+            previous.join();
+            if (prices.isEmpty()) {
+                return;
+            }
+            marketClock.set(Instant.ofEpochSecond(0, epochNanos));
+            // The reader reuses the list; the engine copies it into per-shard batches
+            previous = matchingEngine.applyPrices(prices, epochNanos);
+            batches++;
+            ticks += prices.size();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,498 @@
+package com.riskengine.risksystem.market.feed;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.TickRecorder;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import com.riskengine.risksystem.market.simulation.PriceHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reads a historical tick file through memory-mapped windows, so files of
+ * any size stream through a bounded amount of heap.
+ * <p>
+ * Two formats are understood. Binary files are {@link TickRecorder}
+ * recordings, one frame per batch. CSV files hold one tick per line as
+ * {@code timestamp,symbol,price[,volume]}, with the timestamp in epoch
+ * milliseconds and prices as plain positive decimals; lines that do not start
+ * with a digit, such as a header, are skipped, and consecutive ticks with
+ * the same timestamp form one batch. Timestamps must not go backwards; a
+ * tick older than the batch before it is skipped and counted.
+ * <p>
+ * Fields are decoded straight from the mapping: numbers are parsed from
+ * the bytes into fixed-point longs, and symbols are looked up by their
+ * bytes in a table filled once per distinct symbol, so no strings or
+ * intermediate buffers are created per tick. The one allocation per tick
+ * is the {@link AssetPrice} handed on, which the engine keeps as the
+ * symbol's current price, so it cannot be reused.
+ */
+@Slf4j
+public class MappedTickReader implements Closeable {
+    /** Most bytes mapped at once; a mapping cannot exceed 2 GiB */
+    private static final long WINDOW_SIZE = 1L << 30;
+    
+    /** Longest CSV line accepted */
+    private static final int MAX_LINE = 4096;
+    
+    /** Most CSV ticks handed on in one batch */
+    private static final int MAX_BATCH = 4096;
+    
+    /**
+     * Layout of a tick file
+     */
+    public enum Format {
+        BINARY, CSV;
+        
+        /**
+         * Format of a file by its extension: CSV for .csv, otherwise binary
+         */
+        public static Format of(Path path) {
+            return path.getFileName().toString().toLowerCase().endsWith(".csv") ? CSV : BINARY;
+        }
+    }
+    
+    /**
+     * Receives the batches of a file in order
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        /**
+         * @param epochNanos Time of the batch
+         * @param prices Prices of the batch, stamped with symbol ids; only valid during the call
+         */
+        void onBatch(long epochNanos, List<AssetPrice> prices);
+    }
+    
+    private final Path path;
+    
+    private final Format format;
+    
+    private final FileChannel channel;
+    
+    private final long size;
+    
+    private final SymbolTable symbols;
+    
+    private MappedByteBuffer window;
+    
+    /** File positions covered by the current window */
+    private long windowStart;
+    
+    private long windowEnd;
+    
+    /** Index in the window just after the last field parsed */
+    private int cursor;
+    
+    /** Ticks dropped because their symbol is not traded */
+    private long skipped;
+    
+    /** CSV ticks dropped because their timestamp is earlier than the batch before them */
+    private long outOfOrder;
+    
+    /** Running low and high of each CSV symbol, by symbol id; valid where seen */
+    private long[] lows = new long[0];
+    
+    private long[] highs = new long[0];
+    
+    private boolean[] seen = new boolean[0];
+    
+    /**
+     * @param path Tick file
+     * @param symbolIds Id of a symbol, or {@link SymbolRegistry#UNREGISTERED} to skip its ticks;
+     *                  called once per distinct symbol
+     */
+    public MappedTickReader(Path path, ToIntFunction<String> symbolIds) throws IOException {
+        this.path = path;
+        this.format = Format.of(path);
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.symbols = new SymbolTable(symbolIds);
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    /**
+     * Ticks skipped so far because their symbol is not traded
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+    
+    /**
+     * CSV ticks skipped so far because their timestamp went backwards
+     */
+    public long getOutOfOrder() {
+        return outOfOrder;
+    }
+    
+    /**
+     * Pass every complete batch of the file, in order, to a handler.
+     * A binary frame cut short by a crash ends the file.
+     *
+     * @param handler Receives the decoded batches
+     * @return Number of batches read
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public long read(BatchHandler handler) throws IOException {
+        return format == Format.CSV ? readCsv(handler) : readBinary(handler);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+    
+    private long readBinary(BatchHandler handler) throws IOException {
+        if (size < TickRecorder.HEADER_SIZE) {
+            throw new IOException(path + " is not a tick recording");
+        }
+        int offset = map(0, TickRecorder.HEADER_SIZE);
+        if (window.getInt(offset) != TickRecorder.MAGIC) {
+            throw new IOException(path + " is not a tick recording");
+        }
+        int version = window.getInt(offset + 4);
+        if (version != TickRecorder.VERSION) {
+            throw new IOException("Unsupported tick recording version " + version + " in " + path);
+        }
+        
+        List<AssetPrice> prices = new ArrayList<>();
+        long position = TickRecorder.HEADER_SIZE;
+        long batches = 0;
+        
+        while (position < size) {
+            if (size - position < TickRecorder.FRAME_HEADER_SIZE) {
+                break;
+            }
+            offset = map(position, TickRecorder.FRAME_HEADER_SIZE);
+            long epochNanos = window.getLong(offset);
+            int count = window.getInt(offset + 8);
+            position += TickRecorder.FRAME_HEADER_SIZE;
+            
+            LocalDateTime timestamp = PriceHistory.toLocalDateTime(epochNanos);
+            prices.clear();
+            int decoded = 0;
+            for (; decoded < count && position < size; decoded++) {
+                offset = map(position, (int) Math.min(TickRecorder.MAX_PRICE_SIZE, size - position));
+                int length = window.get(offset) & 0xFF;
+                int priceSize = 1 + length + 5 * Long.BYTES;
+                if (size - position < priceSize) {
+                    break;
+                }
+                
+                int slot = symbols.find(window, offset + 1, length);
+                int fields = offset + 1 + length;
+                if (symbols.ids[slot] == SymbolRegistry.UNREGISTERED) {
+                    skipped++;
+                } else {
+                    prices.add(new AssetPrice(symbols.names[slot], symbols.ids[slot],
+                            window.getLong(fields), window.getLong(fields + 8), window.getLong(fields + 16),
+                            window.getLong(fields + 24), window.getLong(fields + 32), timestamp));
+                }
+                position += priceSize;
+            }
+            if (decoded < count) {
+                break;
+            }
+            
+            handler.onBatch(epochNanos, prices);
+            batches++;
+        }
+        
+        if (position < size) {
+            log.warn("Tick recording {} ends in an incomplete batch after {} batches", path, batches);
+        }
+        return batches;
+    }
+    
+    private long readCsv(BatchHandler handler) throws IOException {
+        List<AssetPrice> prices = new ArrayList<>();
+        long batchMillis = 0;
+        LocalDateTime timestamp = null;
+        long position = 0;
+        long batches = 0;
+        
+        while (position < size) {
+            int available = (int) Math.min(MAX_LINE, size - position);
+            int start = map(position, available);
+            int end = start;
+            while (end < start + available && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == start + available && position + available < size) {
+                throw new IOException("Line longer than " + MAX_LINE + " bytes at offset " + position + " of " + path);
+            }
+            long lineStart = position;
+            position += end - start + 1;
+            
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start || !isDigit(window.get(start))) {
+                continue; // Blank, header or comment line
+            }
+            
+            // timestamp,symbol,price[,volume]
+            cursor = start;
+            long millis = parseLong(end, lineStart);
+            int symbolStart = expectComma(end, lineStart);
+            while (cursor < end && window.get(cursor) != ',') {
+                cursor++;
+            }
+            int symbolLength = cursor - symbolStart;
+            expectComma(end, lineStart);
+            long price = parseDecimal(end, lineStart);
+            long volume = 0;
+            if (cursor < end) {
+                expectComma(end, lineStart);
+                volume = parseDecimal(end, lineStart);
+            }
+            if (cursor != end || symbolLength == 0 || price <= 0) {
+                throw new IOException("Malformed tick at offset " + lineStart + " of " + path);
+            }
+            
+            if (timestamp != null && millis < batchMillis) {
+                outOfOrder++;
+                continue;
+            }
+            
+            if (!prices.isEmpty() && (millis != batchMillis || prices.size() == MAX_BATCH)) {
+                handler.onBatch(batchMillis * 1_000_000, prices);
+                prices.clear();
+                batches++;
+            }
+            if (timestamp == null || millis != batchMillis) {
+                batchMillis = millis;
+                timestamp = PriceHistory.toLocalDateTime(millis * 1_000_000);
+            }
+            
+            int slot = symbols.find(window, symbolStart, symbolLength);
+            int symbolId = symbols.ids[slot];
+            if (symbolId == SymbolRegistry.UNREGISTERED) {
+                skipped++;
+                continue;
+            }
+            
+            if (symbolId >= lows.length) {
+                int length = Math.max(symbolId + 1, lows.length * 2);
+                lows = Arrays.copyOf(lows, length);
+                highs = Arrays.copyOf(highs, length);
+                seen = Arrays.copyOf(seen, length);
+            }
+            if (seen[symbolId]) {
+                lows[symbolId] = Math.min(lows[symbolId], price);
+                highs[symbolId] = Math.max(highs[symbolId], price);
+            } else {
+                lows[symbolId] = price;
+                highs[symbolId] = price;
+                seen[symbolId] = true;
+            }
+            
+            prices.add(new AssetPrice(symbols.names[slot], symbolId, price, MarketSimulator.netPrice(price),
+                    lows[symbolId], highs[symbolId], volume, timestamp));
+        }
+        
+        if (!prices.isEmpty()) {
+            handler.onBatch(batchMillis * 1_000_000, prices);
+            batches++;
+        }
+        return batches;
+    }
+    
+    /**
+     * Index in the window of a file position, first mapping a new window
+     * if the given number of bytes from it is not mapped
+     */
+    private int map(long position, int length) throws IOException {
+        if (position < windowStart || position + length > windowEnd || window == null) {
+            windowStart = position;
+            windowEnd = Math.min(size, position + WINDOW_SIZE);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+        }
+        return (int) (position - windowStart);
+    }
+    
+    /**
+     * Skip the comma at the cursor
+     *
+     * @return Index after the comma
+     */
+    private int expectComma(int end, long lineStart) throws IOException {
+        if (cursor >= end || window.get(cursor) != ',') {
+            throw new IOException("Malformed tick at offset " + lineStart + " of " + path);
+        }
+        return ++cursor;
+    }
+    
+    /**
+     * Parse the digits at the cursor as a non-negative integer
+     *
+     * @throws IOException if there are no digits or the value does not fit a long
+     */
+    private long parseLong(int end, long lineStart) throws IOException {
+        int digitsStart = cursor;
+        long value = parseDigits(end, lineStart);
+        if (cursor == digitsStart) {
+            throw new IOException("Malformed tick at offset " + lineStart + " of " + path);
+        }
+        return value;
+    }
+    
+    /**
+     * Parse whatever digits are at the cursor, none giving 0
+     *
+     * @throws IOException if the value does not fit a long
+     */
+    private long parseDigits(int end, long lineStart) throws IOException {
+        long value = 0;
+        while (cursor < end && isDigit(window.get(cursor))) {
+            int digit = window.get(cursor++) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new IOException("Malformed tick at offset " + lineStart + " of " + path + ": number out of range");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    /**
+     * Parse a plain non-negative decimal at the cursor as a fixed-point
+     * value; digits beyond the fixed-point precision are dropped
+     *
+     * @throws IOException if there are no digits or the value is outside the fixed-point range
+     */
+    private long parseDecimal(int end, long lineStart) throws IOException {
+        int digitsStart = cursor;
+        long whole = parseDigits(end, lineStart);
+        int digits = cursor - digitsStart;
+        long fraction = 0;
+        if (cursor < end && window.get(cursor) == '.') {
+            cursor++;
+            long unit = FixedPoint.SCALE;
+            while (cursor < end && isDigit(window.get(cursor))) {
+                unit /= 10;
+                fraction += (window.get(cursor++) - '0') * unit;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            throw new IOException("Malformed tick at offset " + lineStart + " of " + path);
+        }
+        if (whole > (Long.MAX_VALUE - fraction) / FixedPoint.SCALE) {
+            throw new IOException("Malformed tick at offset " + lineStart + " of " + path + ": number out of range");
+        }
+        return whole * FixedPoint.SCALE + fraction;
+    }
+    
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+    
+    /**
+     * Symbols by their bytes in an open-addressing table, so a symbol read
+     * from the mapping is resolved without creating a string
+     */
+    private static final class SymbolTable {
+        private final ToIntFunction<String> symbolIds;
+        
+        private byte[][] keys = new byte[64][];
+        
+        private String[] names = new String[64];
+        
+        private int[] ids = new int[64];
+        
+        private int size;
+        
+        SymbolTable(ToIntFunction<String> symbolIds) {
+            this.symbolIds = symbolIds;
+        }
+        
+        /**
+         * Slot of the symbol held in a buffer range, added on first sight
+         */
+        int find(ByteBuffer buffer, int offset, int length) {
+            int hash = 0x811C9DC5;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ buffer.get(offset + i)) * 0x01000193;
+            }
+            
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buffer, offset, length)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            
+            byte[] key = new byte[length];
+            buffer.get(offset, key);
+            String name = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            names[slot] = name;
+            ids[slot] = symbolIds.applyAsInt(name);
+            
+            if (++size * 2 > keys.length) {
+                resize();
+                return find(buffer, offset, length);
+            }
+            return slot;
+        }
+        
+        private static boolean matches(byte[] key, ByteBuffer buffer, int offset, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void resize() {
+            byte[][] oldKeys = keys;
+            String[] oldNames = names;
+            int[] oldIds = ids;
+            keys = new byte[oldKeys.length * 2][];
+            names = new String[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) {
+                    continue;
+                }
+                int hash = 0x811C9DC5;
+                for (byte b : oldKeys[i]) {
+                    hash = (hash ^ b) * 0x01000193;
+                }
+                int slot = hash & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                names[slot] = oldNames[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
\ No newline at end of file
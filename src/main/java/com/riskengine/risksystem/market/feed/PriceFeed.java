@@ -0,0 +1,30 @@
+package com.riskengine.risksystem.market.feed;
+
+/**
+ * A source of market prices.
+ * <p>
+ * Exactly one feed, chosen by {@code market.feed}, moves the market. It is
+ * ticked at the configured tick rate and hands its prices to the matching
+ * engine, so whichever feed produced a price, it is stored and published
+ * by the shard that owns its symbol.
+ */
+public interface PriceFeed {
+    /**
+     * Name the feed is selected by
+     */
+    String getName();
+    
+    /**
+     * Check the feed's configuration once it is selected, so a feed that
+     * cannot run stops the application at startup
+     *
+     * @throws IllegalStateException if the feed is misconfigured
+     */
+    default void validate() {
+    }
+    
+    /**
+     * Called at every scheduled market tick
+     */
+    void tick();
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.riskengine.risksystem.market.feed;
+
+import com.riskengine.risksystem.market.engine.MatchingEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prices generated by the market simulator: at every tick each matching
+ * engine shard moves the prices of its own symbols
+ */
+@Component
+public class SimulatedPriceFeed implements PriceFeed {
+    @Autowired
+    private MatchingEngine matchingEngine;
+    
+    @Override
+    public String getName() {
+        return "simulator";
+    }
+    
+    @Override
+    public void tick() {
+        matchingEngine.updateMarketPrices();
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.riskengine.risksystem.market.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Builder;
@@ -26,6 +27,16 @@ public class Asset {
     /** Typical volatility value (0-1 scale) */
     private final double volatility;
     
+    /** Smallest price increment, in fixed-point units */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    @Builder.Default
+    private final long tickSize = FixedPoint.of(0.01);
+    
+    /** Smallest tradable quantity increment, in fixed-point units */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    @Builder.Default
+    private final long lotSize = FixedPoint.of(0.01);
+    
     /**
      * Types of financial assets supported by the system
      */
@@ -1,30 +1,44 @@
 package com.riskengine.risksystem.market.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Value;
+import lombok.With;
 import java.time.LocalDateTime;
 
 /**
- * Immutable snapshot of an asset's price at a specific moment in time
+ * Immutable snapshot of an asset's price at a specific moment in time.
+ * Prices and volume are {@link FixedPoint} values.
  */
 @Value
 public class AssetPrice {
     /** Asset symbol */
     String symbol;
     
+    /** Dense id of the symbol in the {@link SymbolRegistry}, or -1 if not yet resolved */
+    @JsonIgnore
+    @With
+    int symbolId;
+    
     /** Current price in base currency */
-    double price;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long price;
     
     /** Price after all fees (used for order execution) */
-    double netPrice;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long netPrice;
     
     /** Lowest price within the current time window */
-    double low;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long low;
     
     /** Highest price within the current time window */
-    double high;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long high;
     
     /** Trading volume within the current time window */
-    double volume;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long volume;
     
     /** When this price was recorded */
     LocalDateTime timestamp;
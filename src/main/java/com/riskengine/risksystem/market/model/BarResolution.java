@@ -0,0 +1,43 @@
+package com.riskengine.risksystem.market.model;
+
+import lombok.Getter;
+import java.time.Duration;
+
+/**
+ * Time resolutions at which OHLCV price bars are aggregated
+ */
+@Getter
+public enum BarResolution {
+    ONE_SECOND("1s", Duration.ofSeconds(1)),
+    ONE_MINUTE("1m", Duration.ofMinutes(1)),
+    FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+    ONE_HOUR("1h", Duration.ofHours(1)),
+    ONE_DAY("1d", Duration.ofDays(1));
+    
+    /** Short name used in requests, e.g. "5m" */
+    private final String code;
+    
+    /** Length of one bar */
+    private final Duration duration;
+    
+    BarResolution(String code, Duration duration) {
+        this.code = code;
+        this.duration = duration;
+    }
+    
+    /**
+     * Resolution with the given short name
+     *
+     * @param code Short name, e.g. "1m"
+     * @return Resolution
+     * @throws IllegalArgumentException if no resolution has this name
+     */
+    public static BarResolution fromCode(String code) {
+        for (BarResolution resolution : values()) {
+            if (resolution.code.equals(code)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown resolution: " + code);
+    }
+}
\ No newline at end of file
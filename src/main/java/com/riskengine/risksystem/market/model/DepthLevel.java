@@ -0,0 +1,21 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+
+/**
+ * Aggregated view of one price level in an order book
+ */
+@Value
+public class DepthLevel {
+    /** Level price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long price;
+    
+    /** Total remaining quantity resting at this price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long quantity;
+    
+    /** Number of orders resting at this price */
+    int orderCount;
+}
@@ -0,0 +1,28 @@
+package com.riskengine.risksystem.market.model;
+
+import lombok.Value;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Top-of-book L2 depth for one asset.
+ * Applying every {@link DepthUpdate} with a higher sequence number on top
+ * of this snapshot reproduces the live book.
+ */
+@Value
+public class DepthSnapshot {
+    /** Asset symbol */
+    String symbol;
+    
+    /** Last depth update reflected in this snapshot */
+    long sequence;
+    
+    /** Buy levels, best (highest) price first */
+    List<DepthLevel> bids;
+    
+    /** Sell levels, best (lowest) price first */
+    List<DepthLevel> asks;
+    
+    /** When the snapshot was taken */
+    LocalDateTime timestamp;
+}
@@ -0,0 +1,32 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+
+/**
+ * New state of a single price level after a book change.
+ * Updates carry absolute values rather than differences, so applying one
+ * twice is harmless; a quantity of zero means the level was removed.
+ */
+@Value
+public class DepthUpdate {
+    /** Asset symbol */
+    String symbol;
+    
+    /** Per-symbol sequence number, increasing by one per update */
+    long sequence;
+    
+    /** Book side of the level */
+    Order.OrderSide side;
+    
+    /** Level price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long price;
+    
+    /** Total remaining quantity now resting at this price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long quantity;
+    
+    /** Number of orders now resting at this price */
+    int orderCount;
+}
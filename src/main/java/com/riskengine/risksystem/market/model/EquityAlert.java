@@ -0,0 +1,25 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * Raised when a portfolio's total value falls below its alert threshold
+ */
+@Value
+public class EquityAlert {
+    /** Portfolio owner */
+    String userId;
+    
+    /** Configured alert threshold */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long threshold;
+    
+    /** Total portfolio value that crossed the threshold */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long totalValue;
+    
+    /** When the crossing was detected */
+    LocalDateTime timestamp;
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable record of a single execution.
+ * When the counterparty is the simulated market rather than another
+ * resting order, the maker fields are null.
+ */
+@Value
+public class Fill {
+    /** Asset symbol */
+    String symbol;
+    
+    /** Order whose arrival (or price crossing) caused the execution */
+    String takerOrderId;
+    
+    /** Owner of the taker order */
+    String takerUserId;
+    
+    /** Direction of the taker order */
+    Order.OrderSide takerSide;
+    
+    /** Resting order on the other side, or null for a market fill */
+    String makerOrderId;
+    
+    /** Owner of the maker order, or null for a market fill */
+    String makerUserId;
+    
+    /** Execution price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long price;
+    
+    /** Executed amount */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long quantity;
+    
+    /** When the execution happened */
+    LocalDateTime timestamp;
+}
@@ -0,0 +1,40 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * Summary of a firm-wide Monte Carlo risk run over every portfolio
+ */
+@Value
+public class FirmRiskReport {
+    /** Portfolios that existed when the run started */
+    int portfolios;
+    
+    /** Portfolios assessed before the time budget ran out */
+    int assessed;
+    
+    /** Portfolios not reached before the time budget ran out */
+    int skipped;
+    
+    /** Sum of the value at risk of every assessed portfolio (no diversification) */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long totalValueAtRisk;
+    
+    /** Sum of the expected shortfall of every assessed portfolio */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long totalExpectedShortfall;
+    
+    /** Confidence level, e.g. 0.99 */
+    double confidence;
+    
+    /** Number of scenarios shared by every portfolio */
+    int paths;
+    
+    /** Wall-clock duration of the run */
+    long elapsedMillis;
+    
+    /** When the run started */
+    LocalDateTime computedAt;
+}
\ No newline at end of file
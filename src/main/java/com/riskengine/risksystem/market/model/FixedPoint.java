@@ -0,0 +1,157 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Scaled-integer representation of cash, quantities and prices.
+ * <p>
+ * Every amount in the trading path is a {@code long} holding the value
+ * multiplied by {@link #SCALE}, so all amounts share one scale and can be
+ * added and compared directly. Per-asset granularity is expressed as a
+ * tick size and lot size in the same units (see {@link Asset}). Values are
+ * converted to {@link BigDecimal} only where they leave the engine: JSON
+ * responses and the transaction records persisted through JPA.
+ */
+public final class FixedPoint {
+    /** Number of decimal places kept */
+    public static final int DECIMALS = 8;
+    
+    /** Fixed-point representation of 1 */
+    public static final long SCALE = 100_000_000L;
+    
+    private static final long LOW_32_BITS = 0xFFFFFFFFL;
+    
+    private FixedPoint() {
+    }
+    
+    /**
+     * Convert a decimal value, rounding half-up to the nearest unit
+     *
+     * @param value Decimal value, or null for zero
+     * @return Fixed-point value
+     * @throws ArithmeticException if the value is out of range
+     */
+    public static long of(BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        return value.setScale(DECIMALS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    /**
+     * Convert a binary floating-point value, rounding to the nearest unit
+     *
+     * @param value Floating-point value
+     * @return Fixed-point value
+     * @throws ArithmeticException if the value is out of range or not a number
+     */
+    public static long of(double value) {
+        double scaled = Math.rint(value * SCALE);
+        if (Double.isNaN(scaled) || Math.abs(scaled) >= 0x1p63) {
+            throw new ArithmeticException("Out of fixed-point range: " + value);
+        }
+        return (long) scaled;
+    }
+    
+    /**
+     * Convert to a decimal for JSON output or persistence
+     */
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, DECIMALS).stripTrailingZeros();
+    }
+    
+    /**
+     * Convert to a floating-point value for statistics and simulation only
+     */
+    public static double toDouble(long value) {
+        return (double) value / SCALE;
+    }
+    
+    /**
+     * Product of two fixed-point values, such as quantity × price, truncated
+     * toward zero. The intermediate product is kept in 128 bits, so the
+     * result is exact whenever it fits in a long and nothing is allocated.
+     *
+     * @throws ArithmeticException if the result is out of range
+     */
+    public static long multiply(long a, long b) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        
+        // The product fits in a long: sign bits of high match the sign of low
+        if (high == (low >> 63)) {
+            return low / SCALE;
+        }
+        
+        boolean negative = high < 0;
+        if (negative) {
+            low = -low;
+            high = ~high + (low == 0 ? 1 : 0);
+        }
+        
+        // Long division of the 128-bit magnitude by SCALE in 32-bit digits;
+        // SCALE is below 2^32, so each partial dividend fits in a long
+        long digit3 = (high >>> 32) / SCALE;
+        long remainder = (high >>> 32) % SCALE;
+        long dividend = (remainder << 32) | (high & LOW_32_BITS);
+        long digit2 = dividend / SCALE;
+        remainder = dividend % SCALE;
+        dividend = (remainder << 32) | (low >>> 32);
+        long digit1 = dividend / SCALE;
+        remainder = dividend % SCALE;
+        dividend = (remainder << 32) | (low & LOW_32_BITS);
+        long digit0 = dividend / SCALE;
+        
+        if (digit3 != 0 || digit2 != 0 || digit1 > Integer.MAX_VALUE) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        
+        long magnitude = (digit1 << 32) | digit0;
+        return negative ? -magnitude : magnitude;
+    }
+    
+    /**
+     * Round a value to the nearest multiple of an increment such as a tick size
+     *
+     * @param value Fixed-point value
+     * @param increment Positive fixed-point increment
+     * @return Nearest multiple, halves rounded away from zero
+     */
+    public static long round(long value, long increment) {
+        long remainder = value % increment;
+        long down = value - remainder;
+        if (Math.abs(remainder) * 2 >= increment) {
+            return down + (value < 0 ? -increment : increment);
+        }
+        return down;
+    }
+    
+    /**
+     * Whether a value is a whole multiple of an increment
+     */
+    public static boolean isMultiple(long value, long increment) {
+        return increment <= 0 || value % increment == 0;
+    }
+    
+    /**
+     * Writes fixed-point values to JSON as plain decimal numbers
+     */
+    public static class Serializer extends StdSerializer<Long> {
+        private static final long serialVersionUID = 1L;
+        
+        public Serializer() {
+            super(Long.class);
+        }
+        
+        @Override
+        public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(toBigDecimal(value).toPlainString());
+        }
+    }
+}
\ No newline at end of file
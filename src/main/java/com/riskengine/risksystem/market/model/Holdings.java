@@ -0,0 +1,174 @@
+package com.riskengine.risksystem.market.model;
+
+import java.util.Arrays;
+
+/**
+ * Quantity and mark price of every symbol a portfolio holds, keyed by
+ * symbol id in an open-addressing table of primitive columns, so lookups
+ * neither hash strings nor box values.
+ * <p>
+ * Not thread-safe; guarded by the owning portfolio's lock.
+ */
+public class Holdings {
+    private static final int EMPTY = -1;
+    
+    /** Golden-ratio multiplier spreading consecutive ids across the table */
+    private static final int SPREAD = 0x9E3779B9;
+    
+    private int[] symbolIds;
+    
+    private long[] quantities;
+    
+    private long[] marks;
+    
+    /** Right shift that maps a spread id onto a table index */
+    private int shift;
+    
+    private int size;
+    
+    /**
+     * Receives each holding in table order
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(int symbolId, long quantity, long mark);
+    }
+    
+    public Holdings() {
+        allocate(8);
+    }
+    
+    /**
+     * Whether a symbol is held
+     */
+    public boolean contains(int symbolId) {
+        return slotOf(symbolId) >= 0;
+    }
+    
+    /**
+     * Quantity held of a symbol, or 0 if it is not held
+     */
+    public long getQuantity(int symbolId) {
+        int slot = slotOf(symbolId);
+        return slot >= 0 ? quantities[slot] : 0;
+    }
+    
+    /**
+     * Price a symbol was last marked at, or 0 if it is not held
+     */
+    public long getMark(int symbolId) {
+        int slot = slotOf(symbolId);
+        return slot >= 0 ? marks[slot] : 0;
+    }
+    
+    /**
+     * Insert or replace a holding
+     *
+     * @param symbolId Symbol id
+     * @param quantity Quantity held
+     * @param mark Price the holding is valued at
+     */
+    public void put(int symbolId, long quantity, long mark) {
+        int slot = slotOf(symbolId);
+        if (slot < 0) {
+            if ((size + 1) * 2 > symbolIds.length) {
+                resize();
+                slot = slotOf(symbolId);
+            }
+            slot = -1 - slot;
+            symbolIds[slot] = symbolId;
+            size++;
+        }
+        quantities[slot] = quantity;
+        marks[slot] = mark;
+    }
+    
+    /**
+     * Remove a holding if present
+     */
+    public void remove(int symbolId) {
+        int slot = slotOf(symbolId);
+        if (slot < 0) {
+            return;
+        }
+        
+        // Shift later entries of the probe run back so lookups never stop early
+        int mask = symbolIds.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (symbolIds[next] == EMPTY) {
+                break;
+            }
+            int home = home(symbolIds[next]);
+            boolean stays = slot <= next
+                ? slot < home && home <= next
+                : slot < home || home <= next;
+            if (!stays) {
+                symbolIds[slot] = symbolIds[next];
+                quantities[slot] = quantities[next];
+                marks[slot] = marks[next];
+                slot = next;
+            }
+        }
+        
+        symbolIds[slot] = EMPTY;
+        size--;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Visit every holding
+     */
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < symbolIds.length; slot++) {
+            if (symbolIds[slot] != EMPTY) {
+                visitor.accept(symbolIds[slot], quantities[slot], marks[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Slot holding a symbol, or -1 - (slot it would be inserted at) if absent
+     */
+    private int slotOf(int symbolId) {
+        int mask = symbolIds.length - 1;
+        int slot = home(symbolId);
+        while (symbolIds[slot] != EMPTY) {
+            if (symbolIds[slot] == symbolId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+    
+    private int home(int symbolId) {
+        return (symbolId * SPREAD) >>> shift;
+    }
+    
+    private void allocate(int capacity) {
+        symbolIds = new int[capacity];
+        quantities = new long[capacity];
+        marks = new long[capacity];
+        Arrays.fill(symbolIds, EMPTY);
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+    
+    private void resize() {
+        int[] oldIds = symbolIds;
+        long[] oldQuantities = quantities;
+        long[] oldMarks = marks;
+        
+        allocate(oldIds.length * 2);
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            if (oldIds[slot] != EMPTY) {
+                put(oldIds[slot], oldQuantities[slot], oldMarks[slot]);
+            }
+        }
+    }
+}
\ No newline at end of file
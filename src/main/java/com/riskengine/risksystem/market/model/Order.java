@@ -1,12 +1,15 @@
 package com.riskengine.risksystem.market.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Builder;
 import lombok.Data;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 /**
- * Represents a trading order in the system
+ * Represents a trading order in the system.
+ * Quantities and prices are {@link FixedPoint} values.
  */
 @Data
 @Builder
@@ -20,17 +23,32 @@ public class Order {
     /** Asset being traded */
     private final String symbol;
     
-    /** Market or limit order */
+    /** Dense id of the symbol in the {@link SymbolRegistry}, or -1 until resolved */
+    @JsonIgnore
+    @Builder.Default
+    private int symbolId = SymbolRegistry.UNREGISTERED;
+    
+    /** How and when the order executes */
     private final OrderType type;
     
     /** Buy or sell direction */
     private final OrderSide side;
     
     /** Amount of the asset to trade */
-    private final double quantity;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private final long quantity;
     
     /** Target price for limit orders */
-    private final double price;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private final long price;
+    
+    /** Market price that activates stop and stop-limit orders */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private final long stopPrice;
+    
+    /** Amount still waiting to be executed */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private long remainingQuantity;
     
     /** Current status of the order */
     private OrderStatus status;
@@ -52,7 +70,37 @@ public class Order {
         MARKET,
         
         /** Execute only at specified price or better */
-        LIMIT
+        LIMIT,
+        
+        /** Become a market order once the market reaches the stop price */
+        STOP,
+        
+        /** Become a limit order once the market reaches the stop price */
+        STOP_LIMIT,
+        
+        /** Execute what is possible at the limit price or better right away, cancel the rest */
+        IMMEDIATE_OR_CANCEL,
+        
+        /** Execute the full quantity at the limit price or better right away, or not at all */
+        FILL_OR_KILL;
+        
+        /**
+         * Whether orders of this type wait for a stop price before executing
+         */
+        public boolean isStop() {
+            return this == STOP || this == STOP_LIMIT;
+        }
+    }
+    
+    /**
+     * What an instruction in a batch request does
+     */
+    public enum OrderAction {
+        /** Place a new order */
+        PLACE,
+        
+        /** Cancel an existing order */
+        CANCEL
     }
     
     /**
@@ -74,11 +122,47 @@ public class Order {
         REJECTED    // Rejected by system
     }
     
+    /**
+     * Amount executed so far
+     */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    public long getFilledQuantity() {
+        return quantity - remainingQuantity;
+    }
+    
+    /**
+     * Record an execution against this order and advance its status
+     * 
+     * @param fillQuantity Amount executed, at most the remaining quantity
+     */
+    public void fill(long fillQuantity) {
+        remainingQuantity -= fillQuantity;
+        status = remainingQuantity <= 0 ? OrderStatus.FILLED : OrderStatus.PARTIALLY_FILLED;
+    }
+    
     /**
      * Factory method to create a new order with default values
      */
     public static Order create(String userId, String symbol, OrderType type, 
-                              OrderSide side, double quantity, double price) {
+                              OrderSide side, long quantity, long price) {
+        return create(userId, symbol, type, side, quantity, price, 0);
+    }
+    
+    /**
+     * Factory method to create a new order with a stop price
+     */
+    public static Order create(String userId, String symbol, OrderType type, 
+                              OrderSide side, long quantity, long price,
+                              long stopPrice) {
+        return create(userId, symbol, type, side, quantity, price, stopPrice, LocalDateTime.now());
+    }
+    
+    /**
+     * Factory method to create a new order with a stop price, placed at a given time
+     */
+    public static Order create(String userId, String symbol, OrderType type, 
+                              OrderSide side, long quantity, long price,
+                              long stopPrice, LocalDateTime createdAt) {
         return Order.builder()
             .id(UUID.randomUUID().toString())
             .userId(userId)
@@ -86,10 +170,12 @@ public class Order {
             .type(type)
             .side(side)
             .quantity(quantity)
+            .remainingQuantity(quantity)
             .price(price)
+            .stopPrice(stopPrice)
             .status(OrderStatus.PENDING)
-            .createdAt(LocalDateTime.now())
-            .updatedAt(LocalDateTime.now())
+            .createdAt(createdAt)
+            .updatedAt(createdAt)
             .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * State of an order after a change to its status or filled quantity.
+ * Updates carry the full state rather than what changed, so a client
+ * that only keeps the latest update of each order is never out of date.
+ */
+@Value
+public class OrderUpdate {
+    /** Order identifier */
+    String orderId;
+    
+    /** Owner of the order */
+    String userId;
+    
+    /** Asset symbol */
+    String symbol;
+    
+    /** How and when the order executes */
+    Order.OrderType type;
+    
+    /** Buy or sell direction */
+    Order.OrderSide side;
+    
+    /** Status after the change */
+    Order.OrderStatus status;
+    
+    /** Amount ordered */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long quantity;
+    
+    /** Amount still waiting to be executed */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long remainingQuantity;
+    
+    /** Limit price */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long price;
+    
+    /** Reason for cancellation or rejection, if any */
+    String statusReason;
+    
+    /** When the change happened */
+    LocalDateTime updatedAt;
+}
\ No newline at end of file
@@ -1,73 +1,195 @@
 package com.riskengine.risksystem.market.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Represents a user's portfolio of assets
+ * Represents a user's portfolio of assets.
+ * Every mutation is synchronized on the portfolio itself, so each user's
+ * portfolio is its own lock: updates to one user are serialized, while
+ * updates to different users never contend. Reads of the balance and
+ * total value never block. Cash and quantities are {@link FixedPoint} values,
+ * and holdings are keyed by {@link SymbolRegistry} id.
+ * <p>
+ * The market value of the holdings is kept current incrementally: each
+ * holding remembers the price it was last marked at, and a new price for
+ * a symbol adjusts the value by quantity × price change, so reading the
+ * total value never walks the holdings.
+ * <p>
+ * Cash and quantities committed to open orders are reserved: they stay in
+ * the balance and holdings, but withdrawals and sales can only use what
+ * is not reserved, so a resting order can always be settled.
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Portfolio {
-    /** User ID */
+    /** User ID; the only field in equality, since the rest changes while the portfolio is indexed */
+    @EqualsAndHashCode.Include
     private final String userId;
     
     /** Current cash balance */
-    private double cashBalance;
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private volatile long cashBalance;
     
-    /** Holdings (symbol → quantity) */
-    private final Map<String, Double> holdings = new HashMap<>();
+    /** Registry translating symbol ids back to names for the holdings view */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private final SymbolRegistry symbols;
+    
+    /** Quantity and mark price of each holding by symbol id; guarded by this */
+    @Getter(AccessLevel.NONE)
+    private final Holdings positions = new Holdings();
+    
+    /** Cash committed to open buy orders */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    @Setter(AccessLevel.NONE)
+    private volatile long reservedCash;
+    
+    /** Quantity committed to open sell orders by symbol id; guarded by this */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Long> reservedQuantities = new HashMap<>();
+    
+    /** Value of all holdings at their mark prices */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    @Setter(AccessLevel.NONE)
+    private volatile long marketValue;
+    
+    /** Total value below which an alert is raised, or 0 for no alert */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    private volatile long equityAlertThreshold;
+    
+    /** Whether the total value was below the alert threshold when last checked */
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private boolean belowAlertThreshold;
+    
+    /**
+     * Total portfolio value: cash plus holdings at their latest marks
+     */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    public long getTotalValue() {
+        return cashBalance + marketValue;
+    }
+    
+    /**
+     * Holdings by symbol name, for responses and snapshots
+     * 
+     * @return Copy of the holdings (symbol → quantity)
+     */
+    @JsonSerialize(contentUsing = FixedPoint.Serializer.class)
+    public synchronized Map<String, Long> getHoldings() {
+        Map<String, Long> holdings = new LinkedHashMap<>(positions.size() * 2);
+        positions.forEach((symbolId, quantity, mark) -> holdings.put(symbols.symbolOf(symbolId), quantity));
+        return holdings;
+    }
+    
+    /**
+     * Visit every holding while holding the portfolio's lock
+     * 
+     * @param visitor Receives the symbol id, quantity and mark price of each holding
+     */
+    public synchronized void forEachHolding(Holdings.Visitor visitor) {
+        positions.forEach(visitor);
+    }
+    
+    /**
+     * Quantity held of a symbol
+     * 
+     * @param symbolId Symbol id
+     * @return Quantity, or 0 if the symbol is not held
+     */
+    public synchronized long getQuantity(int symbolId) {
+        return positions.getQuantity(symbolId);
+    }
+    
+    /**
+     * Quantity of a symbol that open sell orders have not reserved
+     * 
+     * @param symbolId Symbol id
+     * @return Quantity free to sell
+     */
+    public synchronized long getAvailableQuantity(int symbolId) {
+        return positions.getQuantity(symbolId) - reservedQuantities.getOrDefault(symbolId, 0L);
+    }
+    
+    /**
+     * Cash that open buy orders have not reserved
+     */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    public long getAvailableCash() {
+        return cashBalance - reservedCash;
+    }
+    
+    /**
+     * Whether the portfolio holds a symbol
+     */
+    public synchronized boolean holds(int symbolId) {
+        return positions.contains(symbolId);
+    }
     
     /**
-     * Calculate total portfolio value based on current prices
+     * Re-value one holding at a new market price
      * 
-     * @param prices Current market prices
-     * @return Total portfolio value including cash
-     */
-    public double calculateTotalValue(Map<String, AssetPrice> prices) {
-        double assetValue = holdings.entrySet().stream()
-            .mapToDouble(entry -> {
-                String symbol = entry.getKey();
-                Double quantity = entry.getValue();
-                AssetPrice price = prices.get(symbol);
-                
-                return price != null ? price.getPrice() * quantity : 0.0;
-            })
-            .sum();
+     * @param symbolId Symbol id
+     * @param price New market price
+     */
+    public synchronized void mark(int symbolId, long price) {
+        if (!positions.contains(symbolId)) {
+            return;
+        }
         
-        return cashBalance + assetValue;
+        long quantity = positions.getQuantity(symbolId);
+        long previous = positions.getMark(symbolId);
+        marketValue += FixedPoint.multiply(quantity, price) - FixedPoint.multiply(quantity, previous);
+        positions.put(symbolId, quantity, price);
     }
     
     /**
      * Add an asset to the portfolio
      * 
-     * @param symbol Asset symbol
+     * @param symbolId Symbol id
      * @param quantity Amount to add
+     * @param price Current market price, used to mark a new holding
      */
-    public void addHolding(String symbol, double quantity) {
-        holdings.put(symbol, holdings.getOrDefault(symbol, 0.0) + quantity);
+    public synchronized void addHolding(int symbolId, long quantity, long price) {
+        long current = positions.getQuantity(symbolId);
+        long mark = positions.contains(symbolId) ? positions.getMark(symbolId) : price;
+        
+        positions.put(symbolId, current + quantity, mark);
+        marketValue += FixedPoint.multiply(current + quantity, mark) - FixedPoint.multiply(current, mark);
     }
     
     /**
      * Remove an asset from the portfolio
      * 
-     * @param symbol Asset symbol
+     * @param symbolId Symbol id
      * @param quantity Amount to remove
-     * @return true if successful, false if insufficient balance
+     * @return true if successful, false if insufficient unreserved balance
      */
-    public boolean removeHolding(String symbol, double quantity) {
-        double currentQuantity = holdings.getOrDefault(symbol, 0.0);
+    public synchronized boolean removeHolding(int symbolId, long quantity) {
+        long currentQuantity = positions.getQuantity(symbolId);
         
-        if (currentQuantity < quantity) {
+        if (getAvailableQuantity(symbolId) < quantity) {
             return false; // Insufficient balance
         }
         
-        double newQuantity = currentQuantity - quantity;
+        long newQuantity = currentQuantity - quantity;
+        long mark = positions.getMark(symbolId);
+        marketValue -= FixedPoint.multiply(currentQuantity, mark) - FixedPoint.multiply(newQuantity, mark);
         
         if (newQuantity <= 0) {
-            holdings.remove(symbol);
+            positions.remove(symbolId);
         } else {
-            holdings.put(symbol, newQuantity);
+            positions.put(symbolId, newQuantity, mark);
         }
         
         return true;
@@ -78,7 +200,7 @@ public class Portfolio {
      * 
      * @param amount Amount to add
      */
-    public void depositCash(double amount) {
+    public synchronized void depositCash(long amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
@@ -89,18 +211,90 @@ public class Portfolio {
      * Remove cash from the portfolio
      * 
      * @param amount Amount to remove
-     * @return true if successful, false if insufficient balance
+     * @return true if successful, false if insufficient unreserved balance
      */
-    public boolean withdrawCash(double amount) {
+    public synchronized boolean withdrawCash(long amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
         
-        if (cashBalance < amount) {
+        if (getAvailableCash() < amount) {
             return false; // Insufficient balance
         }
         
         cashBalance -= amount;
         return true;
     }
+    
+    /**
+     * Reserve cash for an open buy order
+     * 
+     * @param amount Amount to reserve
+     * @return true if successful, false if insufficient unreserved balance
+     */
+    public synchronized boolean reserveCash(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Reserved amount must not be negative");
+        }
+        
+        if (getAvailableCash() < amount) {
+            return false;
+        }
+        
+        reservedCash += amount;
+        return true;
+    }
+    
+    /**
+     * Return reserved cash to the available balance
+     * 
+     * @param amount Amount to release, at most the reserved amount
+     */
+    public synchronized void releaseCash(long amount) {
+        reservedCash -= Math.min(amount, reservedCash);
+    }
+    
+    /**
+     * Reserve a quantity of a holding for an open sell order
+     * 
+     * @param symbolId Symbol id
+     * @param quantity Quantity to reserve
+     * @return true if successful, false if insufficient unreserved holding
+     */
+    public synchronized boolean reserveQuantity(int symbolId, long quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Reserved quantity must not be negative");
+        }
+        
+        if (getAvailableQuantity(symbolId) < quantity) {
+            return false;
+        }
+        
+        reservedQuantities.merge(symbolId, quantity, Long::sum);
+        return true;
+    }
+    
+    /**
+     * Return a reserved quantity to the available holding
+     * 
+     * @param symbolId Symbol id
+     * @param quantity Quantity to release, at most the reserved quantity
+     */
+    public synchronized void releaseQuantity(int symbolId, long quantity) {
+        reservedQuantities.computeIfPresent(symbolId, (id, reserved) -> 
+            reserved > quantity ? reserved - quantity : null);
+    }
+    
+    /**
+     * Check the total value against the alert threshold
+     * 
+     * @return true only when the value has just fallen below the threshold,
+     *         so each crossing is reported once
+     */
+    public synchronized boolean checkEquityAlert() {
+        boolean below = equityAlertThreshold > 0 && getTotalValue() < equityAlertThreshold;
+        boolean crossed = below && !belowAlertThreshold;
+        belowAlertThreshold = below;
+        return crossed;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.riskengine.risksystem.market.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * Monte Carlo value-at-risk and expected shortfall of one portfolio
+ */
+@Value
+public class PortfolioRisk {
+    /** Portfolio owner */
+    String userId;
+    
+    /** Total portfolio value the risk was measured against */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long totalValue;
+    
+    /** Loss not exceeded with the given confidence over the horizon */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long valueAtRisk;
+    
+    /** Average loss in the scenarios beyond the value at risk */
+    @JsonSerialize(using = FixedPoint.Serializer.class)
+    long expectedShortfall;
+    
+    /** Confidence level, e.g. 0.99 */
+    double confidence;
+    
+    /** Risk horizon, in simulated price updates */
+    int horizon;
+    
+    /** Number of simulated scenarios */
+    int paths;
+    
+    /** When the risk was computed */
+    LocalDateTime computedAt;
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.riskengine.risksystem.market.model;
+
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * Throughput of the market simulator over one reporting window
+ */
+@Value
+public class SimulationStats {
+    /** Assets being simulated */
+    int assets;
+    
+    /** Partitions generating prices in parallel, one per matching engine shard */
+    int partitions;
+    
+    /** Prices generated in the window */
+    long ticks;
+    
+    /** Prices generated per second of wall time */
+    double ticksPerSecond;
+    
+    /** Prices generated per second a partition spent generating; times partitions, the machine's ceiling */
+    double ticksPerBusySecond;
+    
+    /** Price updates dropped because the partition was still busy with the previous one */
+    long skippedUpdates;
+    
+    /** Length of the window */
+    long windowMillis;
+    
+    /** End of the window */
+    LocalDateTime measuredAt;
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.riskengine.risksystem.market.model;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.Getter;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns every traded symbol a dense integer id, starting at zero.
+ * <p>
+ * Prices, price history, order books and holdings are kept in arrays and
+ * primitive maps indexed by this id, so the engine never hashes or
+ * compares symbol strings. Strings are translated to ids once, where a
+ * request or a persisted record enters the engine, and back where data
+ * leaves it. Ids are stable for the life of the process but are not
+ * persisted; journal and snapshot records refer to symbols by name.
+ */
+@Component
+public class SymbolRegistry {
+    /** Id of a symbol that has not been registered yet */
+    public static final int UNREGISTERED = -1;
+    
+    /** Most symbols that can be registered; sizes every per-symbol array */
+    @Getter
+    @Value("${market.symbols.capacity:131072}")
+    private int capacity;
+    
+    /** Symbol name by id */
+    private AtomicReferenceArray<String> symbols;
+    
+    /** Id by symbol name */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    
+    /** Number of ids assigned so far */
+    private volatile int size;
+    
+    @PostConstruct
+    public void init() {
+        symbols = new AtomicReferenceArray<>(capacity);
+    }
+    
+    /**
+     * Id of a symbol, assigning the next free id on first registration
+     *
+     * @param symbol Asset symbol
+     * @return Dense symbol id
+     * @throws IllegalStateException if the registry is full
+     */
+    public int register(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        
+        synchronized (this) {
+            id = ids.get(symbol);
+            if (id == null) {
+                if (size == capacity) {
+                    throw new IllegalStateException("Symbol registry is full: " + capacity + " symbols");
+                }
+                id = size;
+                symbols.set(id, symbol);
+                ids.put(symbol, id);
+                size = id + 1;
+            }
+            return id;
+        }
+    }
+    
+    /**
+     * Id of an order's symbol, registered and stamped on the order the first
+     * time. Only for orders read back from persisted state; live orders go
+     * through {@link #require(Order)}.
+     *
+     * @param order Order
+     * @return Dense symbol id
+     */
+    public int register(Order order) {
+        if (order.getSymbolId() == UNREGISTERED) {
+            order.setSymbolId(register(order.getSymbol()));
+        }
+        return order.getSymbolId();
+    }
+    
+    /**
+     * Id of an order's symbol, which must already be registered; stamped on
+     * the order the first time
+     *
+     * @param order Order
+     * @return Dense symbol id
+     * @throws IllegalArgumentException if the symbol is not registered
+     */
+    public int require(Order order) {
+        if (order.getSymbolId() == UNREGISTERED) {
+            order.setSymbolId(require(order.getSymbol()));
+        }
+        return order.getSymbolId();
+    }
+    
+    /**
+     * Id of a registered symbol
+     *
+     * @param symbol Asset symbol
+     * @return Symbol id, or {@link #UNREGISTERED}
+     */
+    public int idOf(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : UNREGISTERED;
+    }
+    
+    /**
+     * Id of a symbol that must be registered
+     *
+     * @param symbol Asset symbol
+     * @return Symbol id
+     * @throws IllegalArgumentException if the symbol is not registered
+     */
+    public int require(String symbol) {
+        Integer id = symbol != null ? ids.get(symbol) : null;
+        if (id == null) {
+            throw new IllegalArgumentException("Asset not found: " + symbol);
+        }
+        return id;
+    }
+    
+    /**
+     * Symbol name of an id
+     *
+     * @param id Symbol id
+     * @return Asset symbol, or null if the id is not assigned
+     */
+    public String symbolOf(int id) {
+        return id >= 0 && id < size ? symbols.get(id) : null;
+    }
+    
+    /**
+     * Number of registered symbols; ids run from 0 to size - 1
+     */
+    public int size() {
+        return size;
+    }
+}
\ No newline at end of file
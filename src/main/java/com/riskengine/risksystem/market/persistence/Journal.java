@@ -0,0 +1,659 @@
+package com.riskengine.risksystem.market.persistence;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Fill;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of order commands, fills and cash movements,
+ * used to rebuild in-memory trading state after a restart.
+ * <p>
+ * The journal is a series of memory-mapped segment files holding
+ * fixed-size records. Writers on any thread claim a record slot with a
+ * single atomic increment and encode straight into the mapping; the
+ * record type is written last, so a slot only becomes visible to replay
+ * once it is complete. A record is in the OS page cache as soon as it is
+ * appended and survives a process crash; a background thread forces the
+ * mapped segments to disk every flush interval, committing every record
+ * appended since the last flush as one group. Callers that acknowledge
+ * work to a client first wait in {@link #awaitFlush()} for the group that
+ * covers their records.
+ * <p>
+ * Only segments still being written are held open. Once every slot of a
+ * segment is settled it is forced one last time and closed, and its
+ * mapping is released by the garbage collector; replay maps segments
+ * read-only, one at a time, while it reads them.
+ * <p>
+ * Slots whose writer failed, or was interrupted by a crash, stay empty
+ * and are skipped on replay. Prices, quantities and cash amounts are
+ * stored as their fixed-point longs.
+ */
+@Service
+@Slf4j
+public class Journal {
+    /** Size of every record in bytes */
+    public static final int RECORD_SIZE = 256;
+    
+    /** Offset of the payload within a record: type, padding, sequence, timestamp */
+    private static final int HEADER_SIZE = 24;
+    
+    /** Ordered access to the record type, which marks a slot as complete */
+    private static final VarHandle RECORD_TYPE =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    
+    /**
+     * Kinds of journal record; the ordinal plus one is stored in the file,
+     * so new kinds must only be added at the end
+     */
+    public enum RecordType {
+        /** Order handed to the matching engine, with the market price it saw */
+        PLACE,
+        
+        /** Cancellation handed to the matching engine */
+        CANCEL,
+        
+        /** New market price applied to a symbol's book */
+        TICK,
+        
+        /** Execution produced by the order books or a market order */
+        FILL,
+        
+        /** Deposit (positive) or withdrawal (negative) of portfolio cash */
+        CASH
+    }
+    
+    /**
+     * Receives journal records in sequence order during replay
+     */
+    public interface Handler {
+        void onPlace(long sequence, Order order, long marketPrice);
+        
+        void onCancel(long sequence, String orderId);
+        
+        void onTick(long sequence, AssetPrice price);
+        
+        void onFill(long sequence, Fill fill);
+        
+        void onCash(long sequence, String userId, long amount);
+    }
+    
+    /** Whether records are written at all */
+    @Value("${market.journal.enabled:true}")
+    private boolean enabled;
+    
+    /** Directory holding the segment files */
+    @Value("${market.journal.path:data/journal}")
+    private String journalPath;
+    
+    /** Size of each segment file */
+    @Value("${market.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+    
+    /** Longest a record waits in the page cache before being forced to disk */
+    @Value("${market.journal.flush-interval-ms:5}")
+    private long flushIntervalMs;
+    
+    /** Mapped segments by index */
+    private final Map<Long, MappedSegment> segments = new ConcurrentHashMap<>();
+    
+    /** Next sequence number to claim */
+    private final AtomicLong nextSequence = new AtomicLong();
+    
+    /** Records per segment file */
+    private long recordsPerSegment;
+    
+    /** Flush passes the flusher has started; a pass covers every record complete before it started */
+    private volatile long flushesStarted;
+    
+    /** Flush passes the flusher has finished; guarded by flushMonitor for waiting */
+    private volatile long flushesCompleted;
+    
+    /** Highest flush pass a caller is waiting for */
+    private final AtomicLong flushRequested = new AtomicLong();
+    
+    /** Notified after every flush pass */
+    private final Object flushMonitor = new Object();
+    
+    private Path directory;
+    
+    private Thread flusher;
+    
+    private volatile boolean running;
+    
+    /**
+     * A single mapped segment file, with the number of its slots whose
+     * writer has finished, successfully or not
+     */
+    private record MappedSegment(long index, FileChannel channel, MappedByteBuffer buffer, AtomicLong settled) {}
+    
+    /**
+     * Map existing segments and continue numbering after the last record
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            log.info("Journal disabled");
+            return;
+        }
+        
+        directory = Path.of(journalPath);
+        Files.createDirectories(directory);
+        recordsPerSegment = (long) segmentSizeMb * 1024 * 1024 / RECORD_SIZE;
+        
+        // Only the newest segment is written to; replay maps segments separately
+        List<Long> existing = segmentIndexes();
+        long next = 0;
+        if (!existing.isEmpty()) {
+            MappedSegment last = segment(existing.get(existing.size() - 1));
+            next = lastSequence(last) + 1;
+            last.settled().set(next - last.index() * recordsPerSegment);
+        }
+        nextSequence.set(next);
+        
+        running = true;
+        flusher = new Thread(this::runFlusher, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        
+        log.info("Journal {} opened with {} segments, next sequence {}", directory, existing.size(), next);
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        for (MappedSegment segment : segments.values()) {
+            segment.buffer().force();
+            segment.channel().close();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Sequence number the next record will receive
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+    
+    /**
+     * Wait until every record the caller has appended, or has seen appended
+     * by another thread, has been forced to disk. Waits at most about one
+     * flush interval, so acknowledgements are batched into group commits.
+     * Must not be called on a matching engine thread.
+     */
+    public void awaitFlush() {
+        if (!enabled) {
+            return;
+        }
+        
+        // A pass started after this point covers every record already complete
+        long pass = flushesStarted + 1;
+        flushRequested.accumulateAndGet(pass, Math::max);
+        
+        synchronized (flushMonitor) {
+            while (flushesCompleted < pass && running) {
+                try {
+                    flushMonitor.wait(flushIntervalMs + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Journal an order before the matching engine applies it
+     *
+     * @param order Order being placed
+     * @param marketPrice Market price the engine places it against
+     * @return Sequence number of the record
+     */
+    public long appendPlace(Order order, long marketPrice) {
+        return append(RecordType.PLACE, record -> {
+            putString(record, order.getId());
+            putString(record, order.getUserId());
+            putString(record, order.getSymbol());
+            record.put((byte) order.getType().ordinal());
+            record.put((byte) order.getSide().ordinal());
+            record.putLong(order.getQuantity());
+            record.putLong(order.getPrice());
+            record.putLong(order.getStopPrice());
+            record.putLong(marketPrice);
+            record.putLong(OrderArchive.toEpochMillis(order.getCreatedAt()));
+        });
+    }
+    
+    /**
+     * Journal a cancellation before the matching engine applies it
+     *
+     * @param order Order being cancelled
+     * @return Sequence number of the record
+     */
+    public long appendCancel(Order order) {
+        return append(RecordType.CANCEL, record -> putString(record, order.getId()));
+    }
+    
+    /**
+     * Journal a price before the matching engine applies it to a book
+     *
+     * @param price New market price
+     * @return Sequence number of the record
+     */
+    public long appendTick(AssetPrice price) {
+        return append(RecordType.TICK, record -> {
+            putString(record, price.getSymbol());
+            record.putLong(price.getPrice());
+            record.putLong(price.getNetPrice());
+            record.putLong(price.getLow());
+            record.putLong(price.getHigh());
+            record.putLong(price.getVolume());
+            record.putLong(OrderArchive.toEpochMillis(price.getTimestamp()));
+        });
+    }
+    
+    /**
+     * Journal an execution
+     *
+     * @param fill Execution to record
+     * @return Sequence number of the record
+     */
+    public long appendFill(Fill fill) {
+        return append(RecordType.FILL, record -> {
+            putString(record, fill.getSymbol());
+            putString(record, fill.getTakerOrderId());
+            putString(record, fill.getTakerUserId());
+            record.put((byte) fill.getTakerSide().ordinal());
+            putString(record, fill.getMakerOrderId());
+            putString(record, fill.getMakerUserId());
+            record.putLong(fill.getPrice());
+            record.putLong(fill.getQuantity());
+            record.putLong(OrderArchive.toEpochMillis(fill.getTimestamp()));
+        });
+    }
+    
+    /**
+     * Journal a completed cash movement
+     *
+     * @param userId Portfolio owner
+     * @param amount Positive for a deposit, negative for a withdrawal
+     * @return Sequence number of the record
+     */
+    public long appendCash(String userId, long amount) {
+        return append(RecordType.CASH, record -> {
+            putString(record, userId);
+            record.putLong(amount);
+        });
+    }
+    
+    /**
+     * Pass every complete record, oldest first, to a handler
+     *
+     * @param fromSequence First sequence number to replay
+     * @param handler Receives the decoded records
+     * @return Number of records replayed
+     */
+    public long replay(long fromSequence, Handler handler) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        
+        long end = nextSequence.get();
+        long replayed = 0;
+        long sequence = fromSequence;
+        
+        while (sequence < end) {
+            long index = sequence / recordsPerSegment;
+            long segmentEnd = Math.min(end, (index + 1) * recordsPerSegment);
+            
+            // A separate read-only mapping, so the flusher may retire the writer's mapping meanwhile
+            MappedByteBuffer buffer = mapForReplay(index);
+            if (buffer == null) {
+                // Skip a segment that was removed after a snapshot
+                sequence = segmentEnd;
+                continue;
+            }
+            
+            for (; sequence < segmentEnd; sequence++) {
+                int offset = offsetOf(sequence);
+                int type = (int) RECORD_TYPE.getAcquire(buffer, offset);
+                if (type == 0) {
+                    continue;
+                }
+                
+                ByteBuffer record = buffer.slice(offset, RECORD_SIZE);
+                record.position(HEADER_SIZE);
+                dispatch(RecordType.values()[type - 1], sequence, record, handler);
+                replayed++;
+            }
+        }
+        
+        return replayed;
+    }
+    
+    /**
+     * Delete segment files that only hold records older than a sequence,
+     * once a snapshot has made them unnecessary for recovery
+     *
+     * @param sequence Oldest sequence that must be kept
+     * @return Number of segments deleted
+     */
+    public int deleteSegmentsBefore(long sequence) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        
+        // Never delete the segment currently being written
+        long limit = Math.min(sequence, nextSequence.get()) / recordsPerSegment;
+        int deleted = 0;
+        
+        for (long index : segmentIndexes()) {
+            if (index >= limit) {
+                break;
+            }
+            
+            // Full segments were already retired by the flusher
+            MappedSegment segment = segments.remove(index);
+            if (segment != null) {
+                segment.channel().close();
+            }
+            Files.deleteIfExists(directory.resolve(segmentName(index)));
+            deleted++;
+        }
+        
+        if (deleted > 0) {
+            log.info("Deleted {} journal segments before sequence {}", deleted, sequence);
+        }
+        return deleted;
+    }
+    
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(ByteBuffer record);
+    }
+    
+    /**
+     * Claim the next slot and encode a record into it
+     */
+    private long append(RecordType type, Encoder encoder) {
+        if (!enabled) {
+            return -1;
+        }
+        
+        long sequence = nextSequence.getAndIncrement();
+        MappedSegment segment = segmentFor(sequence);
+        int offset = offsetOf(sequence);
+        
+        try {
+            ByteBuffer record = segment.buffer().slice(offset, RECORD_SIZE);
+            record.putLong(8, sequence);
+            record.putLong(16, System.currentTimeMillis());
+            record.position(HEADER_SIZE);
+            try {
+                encoder.encode(record);
+            } catch (BufferOverflowException e) {
+                // The slot stays empty and is skipped on replay
+                throw new IllegalArgumentException(type + " record exceeds " + RECORD_SIZE + " bytes");
+            }
+            
+            // Publish the record by writing its type last
+            RECORD_TYPE.setRelease(segment.buffer(), offset, type.ordinal() + 1);
+            return sequence;
+        } finally {
+            segment.settled().incrementAndGet();
+        }
+    }
+    
+    private void dispatch(RecordType type, long sequence, ByteBuffer record, Handler handler) {
+        switch (type) {
+            case PLACE -> {
+                Order.OrderBuilder order = Order.builder()
+                    .id(getString(record))
+                    .userId(getString(record))
+                    .symbol(getString(record))
+                    .type(Order.OrderType.values()[record.get()])
+                    .side(Order.OrderSide.values()[record.get()]);
+                long quantity = record.getLong();
+                order.quantity(quantity)
+                    .remainingQuantity(quantity)
+                    .price(record.getLong())
+                    .stopPrice(record.getLong())
+                    .status(Order.OrderStatus.PENDING);
+                long marketPrice = record.getLong();
+                LocalDateTime createdAt = OrderArchive.fromEpochMillis(record.getLong());
+                handler.onPlace(sequence, order.createdAt(createdAt).updatedAt(createdAt).build(), marketPrice);
+            }
+            case CANCEL -> handler.onCancel(sequence, getString(record));
+            case TICK -> handler.onTick(sequence, new AssetPrice(
+                getString(record),
+                SymbolRegistry.UNREGISTERED,
+                record.getLong(),
+                record.getLong(),
+                record.getLong(),
+                record.getLong(),
+                record.getLong(),
+                OrderArchive.fromEpochMillis(record.getLong())));
+            case FILL -> handler.onFill(sequence, new Fill(
+                getString(record),
+                getString(record),
+                getString(record),
+                Order.OrderSide.values()[record.get()],
+                getString(record),
+                getString(record),
+                record.getLong(),
+                record.getLong(),
+                OrderArchive.fromEpochMillis(record.getLong())));
+            case CASH -> handler.onCash(sequence, getString(record), record.getLong());
+        }
+    }
+    
+    /**
+     * Write a string as a length byte and UTF-8 bytes; null is written as length 255
+     */
+    private static void putString(ByteBuffer record, String value) {
+        if (value == null) {
+            record.put((byte) 0xFF);
+            return;
+        }
+        
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= 0xFF) {
+            throw new BufferOverflowException();
+        }
+        record.put((byte) bytes.length);
+        record.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer record) {
+        int length = record.get() & 0xFF;
+        if (length == 0xFF) {
+            return null;
+        }
+        
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private int offsetOf(long sequence) {
+        return (int) (sequence % recordsPerSegment) * RECORD_SIZE;
+    }
+    
+    private MappedSegment segmentFor(long sequence) {
+        MappedSegment segment = segments.get(sequence / recordsPerSegment);
+        if (segment != null) {
+            return segment;
+        }
+        
+        try {
+            return segment(sequence / recordsPerSegment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to map journal segment for sequence " + sequence, e);
+        }
+    }
+    
+    /**
+     * Map a segment file, creating it if needed
+     */
+    private synchronized MappedSegment segment(long index) throws IOException {
+        MappedSegment segment = segments.get(index);
+        if (segment != null) {
+            return segment;
+        }
+        
+        long size = recordsPerSegment * RECORD_SIZE;
+        FileChannel channel = FileChannel.open(directory.resolve(segmentName(index)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = new MappedSegment(index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size),
+                new AtomicLong());
+        segments.put(index, segment);
+        return segment;
+    }
+    
+    /**
+     * Map a segment read-only for replay
+     *
+     * @return Mapping, released by the garbage collector once read, or null
+     *         if the segment file no longer exists
+     */
+    private MappedByteBuffer mapForReplay(long index) throws IOException {
+        Path path = directory.resolve(segmentName(index));
+        if (!Files.exists(path)) {
+            return null;
+        }
+        
+        // The mapping stays valid after its channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, recordsPerSegment * RECORD_SIZE);
+        }
+    }
+    
+    /**
+     * Highest sequence number written to a segment, or -1 if it is empty
+     */
+    private long lastSequence(MappedSegment segment) {
+        for (long slot = recordsPerSegment - 1; slot >= 0; slot--) {
+            int offset = (int) slot * RECORD_SIZE;
+            if ((int) RECORD_TYPE.getAcquire(segment.buffer(), offset) != 0) {
+                return segment.buffer().getLong(offset + 8);
+            }
+        }
+        return segment.index() * recordsPerSegment - 1;
+    }
+    
+    /**
+     * Indexes of the segment files on disk, ascending
+     */
+    private List<Long> segmentIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("journal-") && name.endsWith(".dat"))
+                .map(name -> Long.parseLong(name.substring(8, name.length() - 4)))
+                .sorted()
+                .toList();
+        }
+    }
+    
+    private static String segmentName(long index) {
+        return String.format("journal-%010d.dat", index);
+    }
+    
+    /**
+     * Group commit: force every mapped segment whenever records have been
+     * written or a caller is waiting, then retire full segments
+     */
+    private void runFlusher() {
+        long flushed = nextSequence.get();
+        
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            
+            long written = nextSequence.get();
+            if (written == flushed && flushRequested.get() <= flushesCompleted) {
+                continue;
+            }
+            
+            flush();
+            flushed = written;
+        }
+        
+        flush();
+    }
+    
+    /**
+     * One flush pass. Segments whose slots were all settled before the
+     * pass started are forced by it and then closed.
+     */
+    private void flush() {
+        long pass = flushesStarted + 1;
+        flushesStarted = pass;
+        
+        List<MappedSegment> full = segments.values().stream()
+            .filter(segment -> segment.settled().get() == recordsPerSegment)
+            .toList();
+        
+        for (MappedSegment segment : segments.values()) {
+            try {
+                segment.buffer().force();
+            } catch (RuntimeException e) {
+                log.error("Failed to force journal segment {}", segment.index(), e);
+            }
+        }
+        
+        for (MappedSegment segment : full) {
+            if (segments.remove(segment.index(), segment)) {
+                try {
+                    segment.channel().close();
+                } catch (IOException e) {
+                    log.warn("Failed to close journal segment {}", segment.index(), e);
+                }
+            }
+        }
+        
+        synchronized (flushMonitor) {
+            flushesCompleted = pass;
+            flushMonitor.notifyAll();
+        }
+    }
+}
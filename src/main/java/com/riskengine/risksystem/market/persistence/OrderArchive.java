@@ -0,0 +1,425 @@
+package com.riskengine.risksystem.market.persistence;
+
+import com.riskengine.risksystem.market.model.Order;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only on-disk store for orders that have reached a terminal status.
+ * <p>
+ * Each record is a length-prefixed binary encoding of one order. Records
+ * are located through an open-addressing hash index kept in a separate
+ * memory-mapped file, so heap use does not grow with the archive. Each
+ * index slot holds a 64-bit hash of an order id and the offset of its
+ * record; the id stored in the record resolves hash collisions. The index
+ * header records how much of the archive it covers, and records written
+ * after that point are indexed again when the archive is opened.
+ */
+@Service
+@Slf4j
+public class OrderArchive {
+    /** Index header: archive offset covered by the index, then number of indexed orders */
+    private static final int HEADER_BYTES = 16;
+    
+    /** Index slot: id hash (0 marks an empty slot), then record offset */
+    private static final int SLOT_BYTES = 16;
+    
+    /** Slots in a new index (power of two) */
+    private static final int INITIAL_SLOTS = 1 << 16;
+    
+    /** Most slots a single mapping can hold */
+    private static final int MAX_SLOTS = 1 << 26;
+    
+    /** Location of the archive file */
+    @Value("${market.orders.archive.path:data/orders.archive}")
+    private String archivePath;
+    
+    private RandomAccessFile file;
+    
+    private Path indexPath;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    
+    /** Number of index slots, a power of two */
+    private int slots;
+    
+    /** Number of occupied index slots */
+    private long count;
+    
+    /**
+     * Open the archive and its index, indexing any records the index does not cover yet
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Path path = Path.of(archivePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        file = new RandomAccessFile(path.toFile(), "rw");
+        indexPath = Path.of(archivePath + ".idx");
+        
+        if (Files.exists(indexPath)) {
+            mapIndex(indexPath, (int) ((Files.size(indexPath) - HEADER_BYTES) / SLOT_BYTES));
+        } else {
+            mapIndex(indexPath, INITIAL_SLOTS);
+        }
+        
+        // An index ahead of its archive belongs to a file that has since been replaced
+        if (index.getLong(0) > file.length()) {
+            log.warn("Order archive index is ahead of the archive, rebuilding it");
+            indexChannel.close();
+            Files.delete(indexPath);
+            mapIndex(indexPath, INITIAL_SLOTS);
+        }
+        
+        long end = catchUp(index.getLong(0));
+        
+        // Drop a partially written record left by a crash
+        if (end < file.length()) {
+            log.warn("Truncating {} bytes of incomplete data in order archive", file.length() - end);
+            file.setLength(end);
+        }
+        file.seek(end);
+        
+        log.info("Order archive {} opened with {} orders", path, count);
+    }
+    
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (indexChannel != null) {
+            index.force();
+            indexChannel.close();
+        }
+        if (file != null) {
+            file.close();
+        }
+    }
+    
+    /**
+     * Append a batch of terminal orders in a single write
+     * 
+     * @param terminalOrders Orders to archive
+     * @throws IOException if the batch could not be written
+     */
+    public synchronized void append(Collection<Order> terminalOrders) throws IOException {
+        // Orders recovered from the journal may already have been archived by an earlier run
+        List<Order> orders = new ArrayList<>(terminalOrders.size());
+        for (Order order : terminalOrders) {
+            if (locate(order.getId()) < 0) {
+                orders.add(order);
+            }
+        }
+        if (orders.isEmpty()) {
+            return;
+        }
+        
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(orders.size() * 160);
+        DataOutputStream out = new DataOutputStream(buffer);
+        long start = file.getFilePointer();
+        long[] batchOffsets = new long[orders.size()];
+        
+        for (int i = 0; i < orders.size(); i++) {
+            batchOffsets[i] = start + out.size();
+            byte[] record = encode(orders.get(i));
+            out.writeInt(record.length);
+            out.write(record);
+        }
+        
+        try {
+            file.write(buffer.toByteArray());
+            file.getChannel().force(false);
+        } catch (IOException e) {
+            // Leave the file ending on a complete record
+            file.setLength(start);
+            file.seek(start);
+            throw e;
+        }
+        
+        // Only make the orders visible once they are on disk
+        for (int i = 0; i < orders.size(); i++) {
+            insert(orders.get(i).getId(), batchOffsets[i]);
+        }
+        commitIndex(file.getFilePointer());
+    }
+    
+    /**
+     * Look up an archived order
+     * 
+     * @param orderId Order ID
+     * @return Decoded order, or null if it was never archived
+     */
+    public synchronized Order find(String orderId) {
+        try {
+            long offset = locate(orderId);
+            return offset >= 0 ? decode(readRecord(offset)) : null;
+        } catch (IOException e) {
+            log.error("Failed to read archived order {}", orderId, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Number of orders in the archive
+     */
+    public synchronized long size() {
+        return count;
+    }
+    
+    /**
+     * Index every complete record from a given offset onwards
+     * 
+     * @param from Archive offset already covered by the index
+     * @return Offset just past the last complete record
+     */
+    private long catchUp(long from) throws IOException {
+        long position = from;
+        long length = file.length();
+        file.seek(from);
+        
+        while (position + Integer.BYTES <= length) {
+            int size = file.readInt();
+            if (size <= 0 || position + Integer.BYTES + size > length) {
+                break;
+            }
+            
+            byte[] record = new byte[size];
+            file.readFully(record);
+            insert(new DataInputStream(new ByteArrayInputStream(record)).readUTF(), position);
+            position += Integer.BYTES + size;
+        }
+        
+        if (position != from) {
+            log.info("Indexed {} bytes of archived orders", position - from);
+        }
+        commitIndex(position);
+        return position;
+    }
+    
+    /**
+     * Offset of an order's record, or -1 if it is not archived
+     */
+    private long locate(String orderId) throws IOException {
+        long key = hash(orderId);
+        
+        for (int slot = slotOf(key); ; slot = (slot + 1) & (slots - 1)) {
+            int position = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = index.getLong(position);
+            if (stored == 0) {
+                return -1;
+            }
+            
+            long offset = index.getLong(position + Long.BYTES);
+            if (stored == key && orderId.equals(idAt(offset))) {
+                return offset;
+            }
+        }
+    }
+    
+    /**
+     * Add an order's record offset to the index unless the order is already there
+     */
+    private void insert(String orderId, long offset) throws IOException {
+        if (locate(orderId) >= 0) {
+            return;
+        }
+        
+        // Keep the table at most half full so probe runs stay short
+        if ((count + 1) * 2 > slots) {
+            grow();
+        }
+        
+        put(index, slots, hash(orderId), offset);
+        count++;
+    }
+    
+    /**
+     * Write a slot into the first free position of a probe run
+     */
+    private static void put(MappedByteBuffer table, int slotCount, long key, long offset) {
+        for (int slot = (int) (mix(key) & (slotCount - 1)); ; slot = (slot + 1) & (slotCount - 1)) {
+            int position = HEADER_BYTES + slot * SLOT_BYTES;
+            if (table.getLong(position) == 0) {
+                table.putLong(position + Long.BYTES, offset);
+                table.putLong(position, key);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Rehash into an index twice the size. The new index is built next to
+     * the old one and moved over it, so a crash leaves one or the other.
+     */
+    private void grow() throws IOException {
+        if (slots >= MAX_SLOTS) {
+            throw new IOException("Order archive index is full at " + count + " orders");
+        }
+        
+        int newSlots = slots * 2;
+        Path tmp = Path.of(indexPath + ".tmp");
+        Files.deleteIfExists(tmp);
+        
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) newSlots * SLOT_BYTES);
+            
+            for (int slot = 0; slot < slots; slot++) {
+                int position = HEADER_BYTES + slot * SLOT_BYTES;
+                long key = index.getLong(position);
+                if (key != 0) {
+                    put(grown, newSlots, key, index.getLong(position + Long.BYTES));
+                }
+            }
+            grown.putLong(0, index.getLong(0));
+            grown.putLong(Long.BYTES, count);
+            grown.force();
+        }
+        
+        indexChannel.close();
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapIndex(indexPath, newSlots);
+        log.info("Order archive index grown to {} slots", newSlots);
+    }
+    
+    private void mapIndex(Path path, int slotCount) throws IOException {
+        indexChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_BYTES + (long) slotCount * SLOT_BYTES);
+        slots = slotCount;
+        count = index.getLong(Long.BYTES);
+    }
+    
+    /**
+     * Record how much of the archive the index covers and flush it
+     */
+    private void commitIndex(long indexedEnd) {
+        index.putLong(Long.BYTES, count);
+        index.putLong(0, indexedEnd);
+        index.force();
+    }
+    
+    private byte[] readRecord(long offset) throws IOException {
+        FileChannel channel = file.getChannel();
+        ByteBuffer size = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, size, offset);
+        
+        ByteBuffer record = ByteBuffer.allocate(size.getInt(0));
+        readFully(channel, record, offset + Integer.BYTES);
+        return record.array();
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of order archive at " + position);
+            }
+        }
+    }
+    
+    /**
+     * Id of the order stored at an offset; the id is the first field of every record
+     */
+    private String idAt(long offset) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(readRecord(offset))).readUTF();
+    }
+    
+    private int slotOf(long key) {
+        return (int) (mix(key) & (slots - 1));
+    }
+    
+    /**
+     * 64-bit FNV-1a hash of an order id, never 0 so it cannot be mistaken for an empty slot
+     */
+    static long hash(String orderId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < orderId.length(); i++) {
+            hash ^= orderId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+    
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        return key ^ (key >>> 33);
+    }
+    
+    static byte[] encode(Order order) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(160);
+        DataOutputStream out = new DataOutputStream(buffer);
+        
+        out.writeUTF(order.getId());
+        out.writeUTF(order.getUserId());
+        out.writeUTF(order.getSymbol());
+        out.writeByte(order.getType().ordinal());
+        out.writeByte(order.getSide().ordinal());
+        out.writeByte(order.getStatus().ordinal());
+        out.writeLong(order.getQuantity());
+        out.writeLong(order.getRemainingQuantity());
+        out.writeLong(order.getPrice());
+        out.writeLong(order.getStopPrice());
+        out.writeLong(toEpochMillis(order.getCreatedAt()));
+        out.writeLong(toEpochMillis(order.getUpdatedAt()));
+        out.writeBoolean(order.getStatusReason() != null);
+        if (order.getStatusReason() != null) {
+            out.writeUTF(order.getStatusReason());
+        }
+        
+        return buffer.toByteArray();
+    }
+    
+    static Order decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        
+        return Order.builder()
+            .id(in.readUTF())
+            .userId(in.readUTF())
+            .symbol(in.readUTF())
+            .type(Order.OrderType.values()[in.readByte()])
+            .side(Order.OrderSide.values()[in.readByte()])
+            .status(Order.OrderStatus.values()[in.readByte()])
+            .quantity(in.readLong())
+            .remainingQuantity(in.readLong())
+            .price(in.readLong())
+            .stopPrice(in.readLong())
+            .createdAt(fromEpochMillis(in.readLong()))
+            .updatedAt(fromEpochMillis(in.readLong()))
+            .statusReason(in.readBoolean() ? in.readUTF() : null)
+            .build();
+    }
+    
+    static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), 
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
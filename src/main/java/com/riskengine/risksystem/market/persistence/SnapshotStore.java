@@ -0,0 +1,357 @@
+package com.riskengine.risksystem.market.persistence;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.Portfolio;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshots of the in-memory trading state: live orders and the
+ * current price of every symbol, terminal orders not yet archived, and
+ * every portfolio.
+ * <p>
+ * Each symbol and each portfolio carries the journal sequence it was
+ * captured at; journal records below that sequence are already reflected
+ * in it. The snapshot as a whole is named after the lowest of those
+ * sequences, where journal replay has to start. Files are written under a
+ * temporary name, checksummed, and renamed once complete.
+ */
+@Service
+@Slf4j
+public class SnapshotStore {
+    /** File header ("SNAP") */
+    private static final int MAGIC = 0x534E4150;
+    
+    /** Layout version, bumped on any incompatible change */
+    private static final int VERSION = 3;
+    
+    private static final String PREFIX = "snapshot-";
+    
+    private static final String SUFFIX = ".bin";
+    
+    /** Directory holding snapshot files */
+    @Value("${market.snapshot.path:data/snapshots}")
+    private String snapshotPath;
+    
+    /** Number of most recent snapshots kept on disk */
+    @Value("${market.snapshot.retained:2}")
+    private int retained;
+    
+    /**
+     * State of one symbol: current price and live orders in priority order
+     */
+    public record SymbolState(String symbol, long sequence, AssetPrice price,
+                              List<Order> orders, List<Order> stops) {}
+    
+    /**
+     * State of one user's portfolio
+     */
+    public record PortfolioState(String userId, long sequence, long cashBalance,
+                                 Map<String, Long> holdings) {}
+    
+    /**
+     * A complete snapshot read back from disk
+     */
+    public record Snapshot(long sequence, LocalDateTime createdAt, List<SymbolState> symbols,
+                           List<Order> terminalOrders, List<PortfolioState> portfolios) {}
+    
+    /**
+     * Encode one symbol's state. Called on the thread that owns the
+     * symbol's book, so the encoded bytes are consistent with the sequence.
+     *
+     * @param symbol Asset symbol
+     * @param sequence Next journal sequence at the time of capture
+     * @param price Current price, or null if the symbol has none
+     * @param orders Resting orders in price-time priority
+     * @param stops Pending stop orders in trigger priority
+     * @return Encoded symbol state
+     */
+    public static byte[] encodeSymbol(String symbol, long sequence, AssetPrice price,
+                                      List<Order> orders, List<Order> stops) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128 + (orders.size() + stops.size()) * 160);
+        DataOutputStream out = new DataOutputStream(buffer);
+        
+        out.writeUTF(symbol);
+        out.writeLong(sequence);
+        out.writeBoolean(price != null);
+        if (price != null) {
+            out.writeLong(price.getPrice());
+            out.writeLong(price.getNetPrice());
+            out.writeLong(price.getLow());
+            out.writeLong(price.getHigh());
+            out.writeLong(price.getVolume());
+            out.writeLong(OrderArchive.toEpochMillis(price.getTimestamp()));
+        }
+        writeOrders(out, orders);
+        writeOrders(out, stops);
+        
+        return buffer.toByteArray();
+    }
+    
+    /**
+     * Start writing a new snapshot
+     *
+     * @param sequence Journal sequence replay must start from
+     * @return Writer; the snapshot only becomes visible once committed
+     */
+    public Writer create(long sequence) throws IOException {
+        Path directory = Path.of(snapshotPath);
+        Files.createDirectories(directory);
+        return new Writer(directory.resolve(fileName(sequence)), sequence);
+    }
+    
+    /**
+     * Streams one snapshot to a temporary file: symbols first, then
+     * terminal orders, then portfolios
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        
+        private final Path temporary;
+        
+        private final FileOutputStream file;
+        
+        private final CheckedOutputStream checked;
+        
+        private final DataOutputStream out;
+        
+        private boolean committed;
+        
+        private Writer(Path target, long sequence) throws IOException {
+            this.target = target;
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            this.file = new FileOutputStream(temporary.toFile());
+            this.checked = new CheckedOutputStream(file, new CRC32());
+            this.out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeLong(OrderArchive.toEpochMillis(LocalDateTime.now()));
+        }
+        
+        /**
+         * Write every symbol's encoded state
+         */
+        public void writeSymbols(List<byte[]> symbols) throws IOException {
+            out.writeInt(symbols.size());
+            for (byte[] symbol : symbols) {
+                out.write(symbol);
+            }
+        }
+        
+        /**
+         * Write the terminal orders still held in memory, oldest update first
+         */
+        public void writeTerminalOrders(List<Order> orders) throws IOException {
+            writeOrders(out, orders);
+        }
+        
+        /**
+         * Write one portfolio; must be called while holding the portfolio's lock
+         */
+        public void writePortfolio(Portfolio portfolio, long sequence) throws IOException {
+            out.writeBoolean(true);
+            out.writeUTF(portfolio.getUserId());
+            out.writeLong(sequence);
+            out.writeLong(portfolio.getCashBalance());
+            out.writeInt(portfolio.getHoldings().size());
+            for (Map.Entry<String, Long> holding : portfolio.getHoldings().entrySet()) {
+                out.writeUTF(holding.getKey());
+                out.writeLong(holding.getValue());
+            }
+        }
+        
+        /**
+         * Finish the file and make it the latest snapshot
+         *
+         * @return Path of the snapshot
+         */
+        public Path commit() throws IOException {
+            out.writeBoolean(false);
+            out.flush();
+            
+            // The checksum covers everything before it
+            new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+            file.getFD().sync();
+            file.close();
+            
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return target;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                file.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+    
+    /**
+     * Read the most recent valid snapshot, falling back to older ones if it
+     * cannot be read
+     *
+     * @return Latest snapshot, or null if there is none
+     */
+    public Snapshot loadLatest() throws IOException {
+        List<Path> files = snapshotFiles();
+        
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return read(files.get(i));
+            } catch (IOException | RuntimeException e) {
+                log.error("Snapshot {} is unreadable, trying an older one", files.get(i), e);
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Delete all but the most recent snapshots
+     *
+     * @return Sequence of the oldest snapshot kept; journal records before it are no longer needed
+     */
+    public long prune() throws IOException {
+        List<Path> files = snapshotFiles();
+        int excess = Math.max(0, files.size() - Math.max(1, retained));
+        
+        for (Path file : files.subList(0, excess)) {
+            Files.deleteIfExists(file);
+        }
+        
+        return files.isEmpty() ? 0 : sequenceOf(files.get(excess));
+    }
+    
+    private Snapshot read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " snapshot");
+            }
+            long sequence = in.readLong();
+            LocalDateTime createdAt = OrderArchive.fromEpochMillis(in.readLong());
+            
+            int symbolCount = in.readInt();
+            List<SymbolState> symbols = new ArrayList<>(symbolCount);
+            for (int i = 0; i < symbolCount; i++) {
+                symbols.add(readSymbol(in));
+            }
+            
+            List<Order> terminalOrders = readOrders(in);
+            
+            List<PortfolioState> portfolios = new ArrayList<>();
+            while (in.readBoolean()) {
+                portfolios.add(readPortfolio(in));
+            }
+            
+            long checksum = checked.getChecksum().getValue();
+            if (new DataInputStream(file).readLong() != checksum) {
+                throw new IOException("Checksum mismatch");
+            }
+            
+            return new Snapshot(sequence, createdAt, symbols, terminalOrders, portfolios);
+        }
+    }
+    
+    private static SymbolState readSymbol(DataInputStream in) throws IOException {
+        String symbol = in.readUTF();
+        long sequence = in.readLong();
+        AssetPrice price = null;
+        if (in.readBoolean()) {
+            price = new AssetPrice(symbol, SymbolRegistry.UNREGISTERED, in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong(), in.readLong(), OrderArchive.fromEpochMillis(in.readLong()));
+        }
+        return new SymbolState(symbol, sequence, price, readOrders(in), readOrders(in));
+    }
+    
+    private static PortfolioState readPortfolio(DataInputStream in) throws IOException {
+        String userId = in.readUTF();
+        long sequence = in.readLong();
+        long cashBalance = in.readLong();
+        int holdingCount = in.readInt();
+        Map<String, Long> holdings = new HashMap<>(holdingCount * 2);
+        for (int i = 0; i < holdingCount; i++) {
+            holdings.put(in.readUTF(), in.readLong());
+        }
+        return new PortfolioState(userId, sequence, cashBalance, holdings);
+    }
+    
+    private static void writeOrders(DataOutputStream out, List<Order> orders) throws IOException {
+        out.writeInt(orders.size());
+        for (Order order : orders) {
+            byte[] record = OrderArchive.encode(order);
+            out.writeShort(record.length);
+            out.write(record);
+        }
+    }
+    
+    private static List<Order> readOrders(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[in.readUnsignedShort()];
+            in.readFully(record);
+            orders.add(OrderArchive.decode(record));
+        }
+        return orders;
+    }
+    
+    /**
+     * Complete snapshot files, oldest first
+     */
+    private List<Path> snapshotFiles() throws IOException {
+        Path directory = Path.of(snapshotPath);
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+    
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+    
+    private static String fileName(long sequence) {
+        return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.riskengine.risksystem.market.persistence;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every batch of simulated prices to a file, so a run can be
+ * replayed later as exactly the same tick stream.
+ * <p>
+ * The file starts with a magic number and a format version, followed by
+ * one frame per batch: the batch time in epoch nanoseconds, the number of
+ * prices, and then each price as its symbol (a length byte and UTF-8
+ * bytes) and its price, net price, low, high and volume as fixed-point
+ * longs. Partitions encode their batches on their own threads and hand
+ * each frame to a single writer thread, so frames never interleave and
+ * partitions never wait on each other or on the disk unless the writer
+ * falls a full queue behind. Frames of different partitions may appear
+ * in either order within the same time, so two recordings of the same
+ * seeded run are byte-identical only with a single engine shard
+ * (market.engine.shards=1); they replay the same prices either way.
+ * A recording is replayed by selecting the historical price feed.
+ */
+@Service
+@Slf4j
+public class TickRecorder {
+    /** "TICK" */
+    public static final int MAGIC = 0x5449434B;
+    
+    public static final int VERSION = 1;
+    
+    /** Bytes of the file header: magic number and version */
+    public static final int HEADER_SIZE = 8;
+    
+    /** Bytes of a frame before its prices: time and price count */
+    public static final int FRAME_HEADER_SIZE = 12;
+    
+    /** Longest symbol that can be recorded, in UTF-8 bytes */
+    public static final int MAX_SYMBOL_BYTES = 254;
+    
+    /** Most bytes a price takes: symbol length, up to 254 symbol bytes, five longs */
+    public static final int MAX_PRICE_SIZE = 1 + MAX_SYMBOL_BYTES + 5 * 8;
+    
+    /** Frames waiting for the writer before recording partitions have to wait */
+    private static final int QUEUE_CAPACITY = 1024;
+    
+    /** File to record to; empty disables recording */
+    @Value("${market.simulation.record.path:}")
+    private String recordPath;
+    
+    private FileChannel channel;
+    
+    /** Writes frames in the order they were handed over; blocks callers while its queue is full */
+    private ThreadPoolExecutor writer;
+    
+    private volatile boolean enabled;
+    
+    /** Frames written; used only on the writer thread */
+    private long batches;
+    
+    /** Set once a write fails; frames queued after it are dropped. Used only on the writer thread */
+    private boolean failed;
+    
+    /**
+     * Create or truncate the recording file
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (recordPath.isEmpty()) {
+            return;
+        }
+        
+        Path path = Path.of(recordPath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writeFully(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip());
+        
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "tick-recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (frame, executor) -> {
+                    // A recording with a gap would not replay the run, so wait for room
+                    if (!executor.isShutdown()) {
+                        try {
+                            executor.getQueue().put(frame);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        enabled = true;
+        
+        log.info("Recording simulated prices to {}", path);
+    }
+    
+    @PreDestroy
+    public synchronized void close() throws IOException, InterruptedException {
+        if (channel == null) {
+            return;
+        }
+        
+        enabled = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Tick recorder did not write its last frames within 30s");
+        }
+        channel.force(false);
+        channel.close();
+        log.info("Tick recording closed after {} batches", batches);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Whether a symbol is short enough to be recorded
+     *
+     * @param symbol Asset symbol
+     * @return Whether its UTF-8 encoding fits the length byte
+     */
+    public static boolean isRecordable(String symbol) {
+        return symbol.getBytes(StandardCharsets.UTF_8).length <= MAX_SYMBOL_BYTES;
+    }
+    
+    /**
+     * Encode one batch of prices as a single frame on the calling thread
+     * and queue it for the writer. Never throws, since the caller has
+     * already stored the prices and still has to publish them. A symbol
+     * too long to record or a failed write stops the recording, since a
+     * recording with a gap would not replay the run.
+     *
+     * @param epochNanos Time of the batch
+     * @param prices Prices of the batch, from index 0
+     * @param count Number of prices in the batch
+     */
+    public void record(long epochNanos, AssetPrice[] prices, int count) {
+        if (!enabled) {
+            return;
+        }
+        
+        // Check every symbol before encoding any
+        byte[][] symbols = new byte[count][];
+        int size = FRAME_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            symbols[i] = prices[i].getSymbol().getBytes(StandardCharsets.UTF_8);
+            if (symbols[i].length > MAX_SYMBOL_BYTES) {
+                log.error("Symbol {} is longer than {} bytes; recording stopped", 
+                        prices[i].getSymbol(), MAX_SYMBOL_BYTES);
+                enabled = false;
+                return;
+            }
+            size += MAX_PRICE_SIZE - MAX_SYMBOL_BYTES + symbols[i].length;
+        }
+        
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        frame.putLong(epochNanos);
+        frame.putInt(count);
+        for (int i = 0; i < count; i++) {
+            AssetPrice price = prices[i];
+            frame.put((byte) symbols[i].length);
+            frame.put(symbols[i]);
+            frame.putLong(price.getPrice());
+            frame.putLong(price.getNetPrice());
+            frame.putLong(price.getLow());
+            frame.putLong(price.getHigh());
+            frame.putLong(price.getVolume());
+        }
+        frame.flip();
+        
+        writer.execute(() -> write(frame));
+    }
+    
+    /**
+     * Write one frame; runs on the writer thread
+     */
+    private void write(ByteBuffer frame) {
+        if (failed) {
+            return;
+        }
+        
+        try {
+            writeFully(frame);
+            batches++;
+        } catch (IOException e) {
+            log.error("Failed to record price batch; recording stopped after {} batches", batches, e);
+            failed = true;
+            enabled = false;
+        }
+    }
+    
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.riskengine.risksystem.market.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.OrderUpdate;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pushes price and order changes to dashboards as Server-Sent Events.
+ * <p>
+ * Each subscriber may restrict its prices to a set of symbols and may
+ * follow the orders of one user. Price ticks only mark their symbol as
+ * changed, and order updates are queued for users someone follows, so the
+ * engine threads that produce them never wait on a client. A dedicated
+ * thread then sends what changed at a fixed interval: one {@code prices}
+ * event per subscriber holding the latest price of each changed symbol it
+ * follows, rendered once for all subscribers that follow every symbol, and
+ * one {@code orders} event with the latest state of each changed order.
+ * A subscriber starts with the current prices of its symbols, and idle
+ * connections get a heartbeat comment so that closed ones are noticed.
+ * <p>
+ * Events are written to the connections by a small pool of writer
+ * threads, so one slow client never holds up the others. Each subscriber
+ * has a bounded backlog of events not yet written; a subscriber whose
+ * backlog is full is too slow to keep up and is disconnected. Pending
+ * order updates are bounded as well, keeping the latest of each order.
+ */
+@Service
+@Slf4j
+public class MarketStreamService {
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    @Autowired
+    private OrderBookService orderBookService;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    /** How often changes are sent; ticks within one interval are sent as one update */
+    @Value("${market.stream.interval-ms:500}")
+    private long intervalMs;
+    
+    /** Longest a connection goes without an event before it gets a heartbeat */
+    @Value("${market.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+    
+    /** Most open streams; further subscriptions are refused */
+    @Value("${market.stream.max-subscribers:10000}")
+    private int maxSubscribers;
+    
+    /** Threads writing events to the connections */
+    @Value("${market.stream.writer-threads:4}")
+    private int writerThreads;
+    
+    /** Most events waiting to be written to one connection before it is dropped as too slow */
+    @Value("${market.stream.max-pending-events:32}")
+    private int maxPendingEvents;
+    
+    /** Most orders with an update waiting to be sent; further orders' updates are dropped */
+    @Value("${market.stream.max-pending-orders:10000}")
+    private int maxPendingOrders;
+    
+    /** Symbols whose price changed since the last send, one bit per symbol id */
+    private AtomicLongArray changedSymbols;
+    
+    /** Latest update of each order changed since the last send, for users with a subscriber */
+    private final Map<String, OrderUpdate> orderUpdates = new ConcurrentHashMap<>();
+    
+    /** Order updates dropped since the last send because too many were pending */
+    private final AtomicLong droppedOrderUpdates = new AtomicLong();
+    
+    /** Open streams */
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    
+    /** Streams opened since the last send, still waiting for their initial prices */
+    private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+    
+    /** Number of open streams per followed user */
+    private final Map<String, Integer> followedUsers = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService sender;
+    
+    private ExecutorService writers;
+    
+    @PostConstruct
+    public void start() {
+        changedSymbols = new AtomicLongArray((symbolRegistry.getCapacity() + 63) >>> 6);
+        marketSimulator.addTickListener(this::onPriceTick);
+        orderBookService.addOrderListener(this::onOrderUpdate);
+        
+        sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "market-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger writerCount = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "market-stream-writer-" + writerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::sendSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+    
+    /**
+     * Open a stream of price and order changes
+     *
+     * @param symbolIds Symbols whose prices to send, or null for every symbol
+     * @param userId User whose orders to send, or null for no orders
+     * @return Emitter to return from the request handler
+     * @throws IllegalStateException if the most streams allowed are already open
+     */
+    public SseEmitter subscribe(int[] symbolIds, String userId) {
+        if (subscribers.size() + joining.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many open market streams: " + maxSubscribers);
+        }
+        
+        BitSet symbols = null;
+        if (symbolIds != null) {
+            symbols = new BitSet();
+            for (int symbolId : symbolIds) {
+                symbols.set(symbolId);
+            }
+        }
+        
+        // No timeout: closed connections are noticed when a send fails
+        Subscriber subscriber = new Subscriber(new SseEmitter(0L), symbols, userId, maxPendingEvents);
+        subscriber.emitter.onCompletion(() -> close(subscriber));
+        subscriber.emitter.onError(e -> close(subscriber));
+        subscriber.emitter.onTimeout(() -> close(subscriber));
+        
+        if (userId != null) {
+            followedUsers.merge(userId, 1, Integer::sum);
+        }
+        joining.add(subscriber);
+        return subscriber.emitter;
+    }
+    
+    /**
+     * Number of open streams
+     */
+    public int getSubscriberCount() {
+        return subscribers.size() + joining.size();
+    }
+    
+    private void onPriceTick(AssetPrice price) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        int symbolId = price.getSymbolId();
+        long bit = 1L << symbolId;
+        int word = symbolId >>> 6;
+        // Most ticks find their bit already set since the last send
+        if ((changedSymbols.get(word) & bit) == 0) {
+            changedSymbols.getAndAccumulate(word, bit, (current, mask) -> current | mask);
+        }
+    }
+    
+    private void onOrderUpdate(OrderUpdate update) {
+        if (!followedUsers.containsKey(update.getUserId())) {
+            return;
+        }
+        // An order already pending only replaces its update, so it never counts against the limit
+        if (orderUpdates.size() >= maxPendingOrders && !orderUpdates.containsKey(update.getOrderId())) {
+            droppedOrderUpdates.incrementAndGet();
+            return;
+        }
+        orderUpdates.put(update.getOrderId(), update);
+    }
+    
+    private void sendSafely() {
+        try {
+            send();
+        } catch (Exception e) {
+            log.error("Failed to send market stream updates", e);
+        }
+    }
+    
+    /**
+     * Queue for every subscriber what changed since the last send, then
+     * bring new subscribers up to date
+     */
+    private void send() {
+        List<AssetPrice> prices = takeChangedPrices();
+        Map<String, List<OrderUpdate>> ordersByUser = takeOrderUpdates();
+        long now = System.nanoTime();
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMs);
+        
+        // JSON of all changed prices, shared by every subscriber that follows all symbols
+        byte[] allPrices = null;
+        
+        for (Subscriber subscriber : subscribers) {
+            try {
+                if (!prices.isEmpty()) {
+                    if (subscriber.symbols == null) {
+                        if (allPrices == null) {
+                            allPrices = renderPrices(prices, null);
+                        }
+                        enqueue(subscriber, event("prices", allPrices), now);
+                    } else {
+                        byte[] json = renderPrices(prices, subscriber.symbols);
+                        if (json != null) {
+                            enqueue(subscriber, event("prices", json), now);
+                        }
+                    }
+                }
+                
+                List<OrderUpdate> orders = subscriber.userId != null ? ordersByUser.get(subscriber.userId) : null;
+                if (orders != null) {
+                    enqueue(subscriber, event("orders", objectMapper.writeValueAsBytes(orders)), now);
+                }
+                
+                if (now - subscriber.lastSentNanos >= heartbeatNanos) {
+                    enqueue(subscriber, SseEmitter.event().comment("heartbeat"), now);
+                }
+            } catch (IOException e) {
+                log.error("Failed to render market stream update", e);
+            }
+        }
+        
+        // Joining subscribers are listed before their prices are read, so a tick
+        // either is in their initial prices or marks its symbol for the next send
+        Subscriber subscriber;
+        while ((subscriber = joining.poll()) != null) {
+            subscribers.add(subscriber);
+            try {
+                byte[] json = subscriber.symbols == null
+                    ? marketSimulator.getPriceSnapshot().toJson(objectMapper)
+                    : renderPrices(currentPrices(subscriber.symbols), null);
+                if (json != null) {
+                    enqueue(subscriber, event("prices", json), now);
+                }
+            } catch (IOException e) {
+                log.error("Failed to render market stream update", e);
+            }
+        }
+        
+        long dropped = droppedOrderUpdates.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("Dropped {} order updates: more than {} orders were waiting to be streamed",
+                    dropped, maxPendingOrders);
+        }
+    }
+    
+    private static SseEmitter.SseEventBuilder event(String name, byte[] json) {
+        return SseEmitter.event().name(name).data(json, MediaType.APPLICATION_JSON);
+    }
+    
+    /**
+     * Add an event to a subscriber's backlog and make sure a writer is
+     * draining it, disconnecting the subscriber if the backlog is full
+     */
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event, long now) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.outbox.offer(event)) {
+            log.warn("Disconnecting market stream of {}: {} events not yet written",
+                    subscriber.userId != null ? subscriber.userId : "an anonymous client", maxPendingEvents);
+            close(subscriber);
+            // Completing waits for a write in progress, so it is left to a writer
+            writers.execute(subscriber.emitter::complete);
+            return;
+        }
+        subscriber.lastSentNanos = now;
+        if (subscriber.draining.compareAndSet(false, true)) {
+            writers.execute(() -> drain(subscriber));
+        }
+    }
+    
+    /**
+     * Write a subscriber's backlog to its connection, on a writer thread.
+     * Only one drain of a subscriber runs at a time.
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.outbox.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // The client has gone; the emitter's callbacks may not fire for a broken connection
+                    close(subscriber);
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // An event queued after the last poll but before the release would otherwise wait
+        } while (!subscriber.outbox.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+    
+    /**
+     * Current prices of the symbols marked as changed, clearing the marks
+     */
+    private List<AssetPrice> takeChangedPrices() {
+        List<AssetPrice> prices = new ArrayList<>();
+        int words = (symbolRegistry.size() + 63) >>> 6;
+        for (int word = 0; word < words; word++) {
+            if (changedSymbols.get(word) == 0) {
+                continue;
+            }
+            long bits = changedSymbols.getAndSet(word, 0);
+            while (bits != 0) {
+                int symbolId = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                AssetPrice price = marketSimulator.getCurrentPrice(symbolId);
+                if (price != null) {
+                    prices.add(price);
+                }
+            }
+        }
+        return prices;
+    }
+    
+    /**
+     * Pending order updates by user, in the order they happened, clearing them
+     */
+    private Map<String, List<OrderUpdate>> takeOrderUpdates() {
+        if (orderUpdates.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<String, List<OrderUpdate>> byUser = new HashMap<>();
+        for (String orderId : orderUpdates.keySet()) {
+            // An update arriving after the removal stays pending for the next send
+            OrderUpdate update = orderUpdates.remove(orderId);
+            if (update != null) {
+                byUser.computeIfAbsent(update.getUserId(), userId -> new ArrayList<>()).add(update);
+            }
+        }
+        byUser.values().forEach(updates -> updates.sort(Comparator.comparing(OrderUpdate::getUpdatedAt)));
+        return byUser;
+    }
+    
+    private List<AssetPrice> currentPrices(BitSet symbols) {
+        List<AssetPrice> prices = new ArrayList<>(symbols.cardinality());
+        for (int symbolId = symbols.nextSetBit(0); symbolId >= 0; symbolId = symbols.nextSetBit(symbolId + 1)) {
+            AssetPrice price = marketSimulator.getCurrentPrice(symbolId);
+            if (price != null) {
+                prices.add(price);
+            }
+        }
+        return prices;
+    }
+    
+    /**
+     * Prices as a JSON object keyed by symbol, in the form of the prices endpoint
+     *
+     * @param symbols Symbols to include, or null for all
+     * @return UTF-8 JSON, or null if no price is included
+     */
+    private byte[] renderPrices(List<AssetPrice> prices, BitSet symbols) throws IOException {
+        Map<String, AssetPrice> bySymbol = new LinkedHashMap<>();
+        for (AssetPrice price : prices) {
+            if (symbols == null || symbols.get(price.getSymbolId())) {
+                bySymbol.put(price.getSymbol(), price);
+            }
+        }
+        return bySymbol.isEmpty() ? null : objectMapper.writeValueAsBytes(bySymbol);
+    }
+    
+    /**
+     * Stop streaming to a subscriber and discard its backlog
+     */
+    private void close(Subscriber subscriber) {
+        subscriber.closed = true;
+        remove(subscriber);
+        subscriber.outbox.clear();
+    }
+    
+    private void remove(Subscriber subscriber) {
+        boolean removed = subscribers.remove(subscriber) | joining.remove(subscriber);
+        if (removed && subscriber.userId != null) {
+            followedUsers.computeIfPresent(subscriber.userId, (userId, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+    
+    /**
+     * One open stream and what it follows
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        
+        /** Symbol ids to send prices of, or null for all */
+        private final BitSet symbols;
+        
+        /** User to send order updates of, or null for none */
+        private final String userId;
+        
+        /** Events not yet written to the connection */
+        private final BlockingQueue<SseEmitter.SseEventBuilder> outbox;
+        
+        /** Whether a writer is draining the backlog */
+        private final AtomicBoolean draining = new AtomicBoolean();
+        
+        /** Set once nothing more is to be written */
+        private volatile boolean closed;
+        
+        /** When an event or heartbeat was last queued; only touched by the sending thread */
+        private long lastSentNanos;
+        
+        Subscriber(SseEmitter emitter, BitSet symbols, String userId, int maxPendingEvents) {
+            this.emitter = emitter;
+            this.symbols = symbols;
+            this.userId = userId;
+            this.outbox = new ArrayBlockingQueue<>(maxPendingEvents);
+        }
+    }
+}
\ No newline at end of file
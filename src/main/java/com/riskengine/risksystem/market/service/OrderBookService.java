@@ -1,59 +1,273 @@
 package com.riskengine.risksystem.market.service;
 
+import com.riskengine.risksystem.market.book.OrderBook;
+import com.riskengine.risksystem.market.model.DepthSnapshot;
+import com.riskengine.risksystem.market.model.DepthUpdate;
+import com.riskengine.risksystem.market.model.Fill;
+import com.riskengine.risksystem.market.model.FixedPoint;
 import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.OrderUpdate;
 import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.OrderArchive;
+import com.riskengine.risksystem.market.simulation.MarketClock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
- * Manages order books for all market assets
+ * Manages order books for all market assets.
+ * Book mutations (add, cancel, match) are applied by the
+ * {@link com.riskengine.risksystem.market.engine.MatchingEngine} thread
+ * that owns the symbol. Order, user and depth lookups may be called from
+ * any thread; reads of a book's individual orders must run on its owning
+ * thread, see {@link com.riskengine.risksystem.market.engine.MatchingEngine#getOpenOrders}.
+ * Books are indexed by {@link SymbolRegistry} id.
  */
 @Service
 @Slf4j
 public class OrderBookService {
-    /** Order books for each asset (symbol → orders) */
-    private final Map<String, List<Order>> orderBooks = new ConcurrentHashMap<>();
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    /** Source of order timestamps, virtual in deterministic runs */
+    @Autowired
+    private MarketClock marketClock;
+    
+    /** Order books for each asset (symbol id → price-time priority book) */
+    private AtomicReferenceArray<OrderBook> orderBooks;
     
     /** Order lookup by ID */
     private final Map<String, Order> ordersById = new ConcurrentHashMap<>();
     
+    /** Live (open or partially filled) orders per user (userId → orderId → order) */
+    private final Map<String, Map<String, Order>> openOrdersByUser = new ConcurrentHashMap<>();
+    
+    /** Orders that reached a terminal status, oldest first, awaiting archival */
+    private final Deque<Order> terminalOrders = new ConcurrentLinkedDeque<>();
+    
+    /** Size of terminalOrders (ConcurrentLinkedDeque.size() is O(n)) */
+    private final AtomicInteger terminalOrderCount = new AtomicInteger();
+    
+    /** How long terminal orders stay in memory before being archived */
+    @Value("${market.orders.retention.max-age-seconds:300}")
+    private long retentionMaxAgeSeconds;
+    
+    /** Most terminal orders kept in memory regardless of age */
+    @Value("${market.orders.retention.max-terminal-orders:100000}")
+    private int retentionMaxTerminalOrders;
+    
+    @Autowired
+    private OrderArchive orderArchive;
+    
+    /** Subscribers notified of every execution */
+    private final List<Consumer<Fill>> fillListeners = new CopyOnWriteArrayList<>();
+    
+    /** Subscribers notified of every price level change */
+    private final List<Consumer<DepthUpdate>> depthListeners = new CopyOnWriteArrayList<>();
+    
+    /** Subscribers notified of every order status change */
+    private final List<Consumer<OrderUpdate>> orderListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Size the book array to the registry's capacity
+     */
+    @PostConstruct
+    public void init() {
+        orderBooks = new AtomicReferenceArray<>(symbolRegistry.getCapacity());
+    }
+    
+    /**
+     * Register a listener that receives one event per execution
+     * 
+     * @param listener Fill event consumer
+     */
+    public void addFillListener(Consumer<Fill> listener) {
+        fillListeners.add(listener);
+    }
+    
+    /**
+     * Register a listener that receives one event per price level change.
+     * Listeners run on the matching engine thread that owns the book.
+     * 
+     * @param listener Depth update consumer
+     */
+    public void addDepthListener(Consumer<DepthUpdate> listener) {
+        depthListeners.add(listener);
+    }
+    
+    /**
+     * Register a listener that receives the new state of a booked order
+     * whenever its status or filled quantity changes. An order placed and
+     * executed in one step is reported once, in its final state.
+     * Listeners run on the matching engine thread that owns the book.
+     * 
+     * @param listener Order update consumer
+     */
+    public void addOrderListener(Consumer<OrderUpdate> listener) {
+        orderListeners.add(listener);
+    }
+    
     /**
-     * Add an order to the appropriate order book
+     * Add an order to the appropriate order book.
+     * <ul>
+     *   <li>LIMIT: crossed against the opposite side of the book; only the
+     *       unfilled remainder is left resting.</li>
+     *   <li>STOP / STOP_LIMIT: parked in the stop trigger index, or activated
+     *       straight away if the market is already through the stop price.
+     *       A stop buy is cancelled rather than executed above its price,
+     *       which is its protection price.</li>
+     *   <li>IMMEDIATE_OR_CANCEL: crossed against the book, then against the
+     *       market price if it is within the limit; the rest is cancelled.</li>
+     *   <li>FILL_OR_KILL: executed in full as IMMEDIATE_OR_CANCEL would, but
+     *       only if enough liquidity is available; otherwise cancelled untouched.</li>
+     * </ul>
      * 
      * @param order Order to add
+     * @param marketPrice Current market price of the order's asset
      * @return Updated order with new status
      */
-    public Order addOrder(Order order) {
+    public Order addOrder(Order order, AssetPrice marketPrice) {
         // Create order book for symbol if it doesn't exist
-        orderBooks.computeIfAbsent(order.getSymbol(), k -> new ArrayList<>());
+        OrderBook book = bookFor(order);
+        LocalDateTime now = marketClock.localNow();
         
         // Update order status
         order.setStatus(Order.OrderStatus.OPEN);
-        order.setUpdatedAt(LocalDateTime.now());
-        
-        // Add to order book
-        orderBooks.get(order.getSymbol()).add(order);
+        order.setUpdatedAt(now);
         ordersById.put(order.getId(), order);
         
-        log.info("Order added to book: {}", order);
+        switch (order.getType()) {
+            case LIMIT -> rest(book, order);
+            case STOP, STOP_LIMIT -> {
+                if (isStopReached(order, marketPrice.getPrice())) {
+                    activateStop(book, order, marketPrice.getPrice(), now);
+                } else {
+                    book.addStop(order);
+                    indexOpenOrder(order);
+                    log.info("Stop order added to book: {}", order);
+                }
+            }
+            case IMMEDIATE_OR_CANCEL -> {
+                executeImmediately(book, order, marketPrice.getPrice(), now);
+                cancelRemainder(order, "Unfilled quantity cancelled", now);
+            }
+            case FILL_OR_KILL -> {
+                long wanted = order.getRemainingQuantity();
+                if (isMarketable(order, marketPrice.getPrice()) || 
+                    book.availableQuantity(order, wanted) >= wanted) {
+                    executeImmediately(book, order, marketPrice.getPrice(), now);
+                }
+                cancelRemainder(order, "Insufficient liquidity to fill entire order", now);
+            }
+            case MARKET -> throw new IllegalArgumentException("Market orders do not rest in the order book");
+        }
+        
+        publish(order);
         return order;
     }
     
     /**
-     * Get all open orders for a specific asset
+     * Get all open orders for a specific asset.
+     * Must be called on the matching engine thread that owns the book.
      * 
      * @param symbol Asset symbol
      * @return List of open orders
      */
     public List<Order> getOpenOrders(String symbol) {
-        return orderBooks.getOrDefault(symbol, List.of()).stream()
-            .filter(o -> o.getStatus() == Order.OrderStatus.OPEN || 
-                   o.getStatus() == Order.OrderStatus.PARTIALLY_FILLED)
-            .toList();
+        OrderBook book = findBook(symbol);
+        return book != null ? book.getOrders() : List.of();
+    }
+    
+    /**
+     * Get all stop orders of an asset still waiting for their stop price.
+     * Must be called on the matching engine thread that owns the book.
+     * 
+     * @param symbol Asset symbol
+     * @return List of pending stop orders
+     */
+    public List<Order> getPendingStops(String symbol) {
+        OrderBook book = findBook(symbol);
+        return book != null ? book.getStops() : List.of();
+    }
+    
+    /**
+     * Put a live order recovered from a snapshot back into its book without
+     * matching it. Orders must be restored in the priority order they were
+     * captured in.
+     * 
+     * @param order Open or partially filled order
+     * @param pendingStop Whether the order is still waiting for its stop price
+     */
+    public void restoreOrder(Order order, boolean pendingStop) {
+        OrderBook book = bookFor(order);
+        
+        if (pendingStop) {
+            book.addStop(order);
+        } else {
+            book.add(order);
+        }
+        ordersById.put(order.getId(), order);
+        indexOpenOrder(order);
+    }
+    
+    /**
+     * Aggregated L2 depth for an asset, read from the incrementally
+     * maintained level totals without touching individual orders
+     * 
+     * @param symbol Asset symbol
+     * @param levels Maximum number of levels per side
+     * @return Depth snapshot; empty if no order has been placed for the symbol
+     */
+    public DepthSnapshot getDepth(String symbol, int levels) {
+        OrderBook book = findBook(symbol);
+        if (book == null) {
+            return new DepthSnapshot(symbol, 0, List.of(), List.of(), marketClock.localNow());
+        }
+        
+        // Read the sequence first: any change that races with the level
+        // reads has a higher sequence and will be re-applied by the reader
+        long sequence = book.getDepthLog().getLastSequence();
+        
+        return new DepthSnapshot(symbol, sequence,
+                book.getDepth(Order.OrderSide.BUY, levels),
+                book.getDepth(Order.OrderSide.SELL, levels),
+                marketClock.localNow());
+    }
+    
+    /**
+     * Depth updates for an asset newer than a given sequence
+     * 
+     * @param symbol Asset symbol
+     * @param since Last sequence the caller has applied
+     * @param limit Maximum number of updates to return
+     * @return Updates oldest first, or null if some are no longer retained
+     *         and the caller must start again from a snapshot
+     * @throws IllegalArgumentException if since is negative
+     */
+    public List<DepthUpdate> getDepthUpdates(String symbol, long since, int limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("Sequence must not be negative: " + since);
+        }
+        
+        // A symbol without a book has never changed: its book is still empty
+        OrderBook book = findBook(symbol);
+        if (book == null) {
+            return List.of();
+        }
+        return book.getDepthLog().readSince(since, limit);
     }
     
     /**
@@ -63,11 +277,19 @@ public class OrderBookService {
      * @return List of user's open orders
      */
     public List<Order> getUserOpenOrders(String userId) {
-        return ordersById.values().stream()
-            .filter(o -> o.getUserId().equals(userId) && 
-                  (o.getStatus() == Order.OrderStatus.OPEN || 
-                   o.getStatus() == Order.OrderStatus.PARTIALLY_FILLED))
-            .toList();
+        Map<String, Order> openOrders = openOrdersByUser.get(userId);
+        return openOrders != null ? List.copyOf(openOrders.values()) : List.of();
+    }
+
+    /**
+     * Get the open orders of every user, including stops waiting for their price
+     *
+     * @return List of open orders, in no particular order
+     */
+    public List<Order> getAllOpenOrders() {
+        List<Order> orders = new ArrayList<>();
+        openOrdersByUser.values().forEach(openOrders -> orders.addAll(openOrders.values()));
+        return orders;
     }
     
     /**
@@ -84,8 +306,14 @@ public class OrderBookService {
         
         if (order.getStatus() == Order.OrderStatus.OPEN || 
             order.getStatus() == Order.OrderStatus.PARTIALLY_FILLED) {
+            OrderBook book = orderBooks.get(symbolRegistry.register(order));
+            if (book != null) {
+                book.remove(order);
+            }
             order.setStatus(Order.OrderStatus.CANCELLED);
-            order.setUpdatedAt(LocalDateTime.now());
+            order.setUpdatedAt(marketClock.localNow());
+            retire(order);
+            publish(order);
             log.info("Order cancelled: {}", order);
         }
         
@@ -93,41 +321,252 @@ public class OrderBookService {
     }
     
     /**
-     * Match limit orders against current market price
+     * Apply a new market price to a symbol's book: activate the stop orders
+     * it triggers, then fill the limit orders it crosses
      * 
-     * @param symbol Asset symbol
-     * @param currentPrice Current market price
-     * @return List of orders that were filled
+     * @param currentPrice Current market price, stamped with its symbol id
+     * @return Orders completely filled by this price
      */
-    public List<Order> matchLimitOrders(String symbol, AssetPrice currentPrice) {
+    public List<Order> processTick(AssetPrice currentPrice) {
+        OrderBook book = orderBooks.get(currentPrice.getSymbolId());
+        if (book == null) {
+            return List.of();
+        }
+        
         List<Order> filledOrders = new ArrayList<>();
-        List<Order> orders = orderBooks.getOrDefault(symbol, List.of());
+        LocalDateTime now = marketClock.localNow();
         
-        for (Order order : orders) {
-            if (order.getStatus() != Order.OrderStatus.OPEN) {
-                continue;
-            }
+        for (Order stop : book.takeTriggeredStops(currentPrice.getPrice())) {
+            log.info("Stop order {} triggered at price {}", stop.getId(),
+                    FixedPoint.toBigDecimal(currentPrice.getPrice()));
+            activateStop(book, stop, currentPrice.getPrice(), now);
+            publish(stop);
             
-            if (order.getType() == Order.OrderType.LIMIT) {
-                boolean shouldFill = switch (order.getSide()) {
-                    case BUY -> currentPrice.getPrice() <= order.getPrice();
-                    case SELL -> currentPrice.getPrice() >= order.getPrice();
-                };
-                
-                if (shouldFill) {
-                    order.setStatus(Order.OrderStatus.FILLED);
-                    order.setUpdatedAt(LocalDateTime.now());
-                    filledOrders.add(order);
-                    
-                    log.info("Filled limit order: {} at price {}", 
-                             order.getId(), currentPrice.getPrice());
-                }
+            if (stop.getStatus() == Order.OrderStatus.FILLED) {
+                filledOrders.add(stop);
             }
         }
         
+        filledOrders.addAll(matchLimitOrders(currentPrice));
         return filledOrders;
     }
     
+    /**
+     * Match limit orders against current market price.
+     * Only the price levels crossed by the market price are visited.
+     * 
+     * @param currentPrice Current market price, stamped with its symbol id
+     * @return List of orders that were filled
+     */
+    public List<Order> matchLimitOrders(AssetPrice currentPrice) {
+        OrderBook book = orderBooks.get(currentPrice.getSymbolId());
+        if (book == null || book.size() == 0) {
+            return List.of();
+        }
+        
+        List<Order> filledOrders = book.takeCrossed(currentPrice.getPrice());
+        LocalDateTime now = marketClock.localNow();
+        
+        for (Order order : filledOrders) {
+            fillAtMarket(order, currentPrice.getPrice(), now);
+            publish(order);
+            
+            log.info("Filled limit order: {} at price {}", 
+                     order.getId(), FixedPoint.toBigDecimal(currentPrice.getPrice()));
+        }
+        
+        return filledOrders;
+    }
+    
+    /**
+     * Cross an order against the book and leave any remainder resting
+     */
+    private void rest(OrderBook book, Order order) {
+        // Trade against resting orders before joining the book
+        book.match(order, this::onBookFill);
+        
+        if (order.getRemainingQuantity() > 0) {
+            book.add(order);
+            indexOpenOrder(order);
+            log.info("Order added to book: {}", order);
+        } else {
+            retire(order);
+        }
+    }
+    
+    /**
+     * Turn a triggered stop into a market execution (STOP) or a resting limit order (STOP_LIMIT).
+     * A stop buy is only executed up to its protection price, which bounds
+     * the cash it reserved; above it the order is cancelled.
+     */
+    private void activateStop(OrderBook book, Order order, long marketPrice, LocalDateTime now) {
+        if (order.getType() == Order.OrderType.STOP) {
+            if (order.getSide() == Order.OrderSide.BUY && marketPrice > order.getPrice()) {
+                cancelRemainder(order, "Market price above stop protection price", now);
+            } else {
+                fillAtMarket(order, marketPrice, now);
+            }
+        } else {
+            rest(book, order);
+        }
+    }
+    
+    /**
+     * Execute as much of an order as possible right now: first against
+     * resting orders, then at the market price if it is within the limit
+     */
+    private void executeImmediately(OrderBook book, Order order, long marketPrice, LocalDateTime now) {
+        book.match(order, this::onBookFill);
+        
+        if (order.getRemainingQuantity() > 0 && isMarketable(order, marketPrice)) {
+            fillAtMarket(order, marketPrice, now);
+        }
+    }
+    
+    /**
+     * Execute an order's whole remaining quantity against the market price
+     */
+    private void fillAtMarket(Order order, long marketPrice, LocalDateTime now) {
+        long quantity = order.getRemainingQuantity();
+        order.fill(quantity);
+        order.setUpdatedAt(now);
+        retire(order);
+        
+        publish(new Fill(order.getSymbol(), order.getId(), order.getUserId(), order.getSide(),
+                null, null, marketPrice, quantity, now));
+    }
+    
+    /**
+     * Cancel whatever an immediate order could not execute
+     */
+    private void cancelRemainder(Order order, String reason, LocalDateTime now) {
+        if (order.getRemainingQuantity() <= 0) {
+            return; // Already filled and retired
+        }
+        
+        order.setStatus(Order.OrderStatus.CANCELLED);
+        order.setStatusReason(reason);
+        order.setUpdatedAt(now);
+        retire(order);
+        
+        log.info("{} order {} cancelled with {} unfilled", 
+                 order.getType(), order.getId(), FixedPoint.toBigDecimal(order.getRemainingQuantity()));
+    }
+    
+    private static boolean isMarketable(Order order, long marketPrice) {
+        return order.getSide() == Order.OrderSide.BUY 
+            ? marketPrice <= order.getPrice() 
+            : marketPrice >= order.getPrice();
+    }
+    
+    private static boolean isStopReached(Order order, long marketPrice) {
+        return order.getSide() == Order.OrderSide.BUY 
+            ? marketPrice >= order.getStopPrice() 
+            : marketPrice <= order.getStopPrice();
+    }
+    
+    /**
+     * Handle an order-against-order execution reported by a book
+     */
+    private void onBookFill(Order taker, Order maker, long price, long quantity) {
+        LocalDateTime now = marketClock.localNow();
+        taker.setUpdatedAt(now);
+        maker.setUpdatedAt(now);
+        
+        if (maker.getStatus() == Order.OrderStatus.FILLED) {
+            retire(maker);
+        }
+        // The taker is reported by whoever is executing it, once it is done
+        publish(maker);
+        
+        publish(new Fill(taker.getSymbol(), taker.getId(), taker.getUserId(), taker.getSide(),
+                maker.getId(), maker.getUserId(), price, quantity, now));
+        
+        log.debug("Crossed order {} with {}: {} at price {}", 
+                 taker.getId(), maker.getId(), quantity, price);
+    }
+    
+    /**
+     * Book of a symbol looked up by name, or null if it has none
+     */
+    private OrderBook findBook(String symbol) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        return symbolId != SymbolRegistry.UNREGISTERED ? orderBooks.get(symbolId) : null;
+    }
+    
+    /**
+     * Book of an order's symbol, created on first use
+     */
+    private OrderBook bookFor(Order order) {
+        int symbolId = symbolRegistry.register(order);
+        OrderBook book = orderBooks.get(symbolId);
+        if (book == null) {
+            OrderBook created = new OrderBook(order.getSymbol(), this::onLevelChange);
+            book = orderBooks.compareAndSet(symbolId, null, created) ? created : orderBooks.get(symbolId);
+        }
+        return book;
+    }
+
+    
+    /**
+     * Forward a price level change reported by a book to depth listeners
+     */
+    private void onLevelChange(OrderBook book, long sequence, Order.OrderSide side,
+                               long price, long quantity, int orderCount) {
+        if (depthListeners.isEmpty()) {
+            return;
+        }
+        
+        DepthUpdate update = new DepthUpdate(book.getSymbol(), sequence, side, price, quantity, orderCount);
+        for (Consumer<DepthUpdate> listener : depthListeners) {
+            listener.accept(update);
+        }
+    }
+    
+    /**
+     * Track an order that is now resting in a book
+     */
+    private void indexOpenOrder(Order order) {
+        openOrdersByUser.compute(order.getUserId(), (userId, openOrders) -> {
+            Map<String, Order> orders = openOrders != null ? openOrders : new ConcurrentHashMap<>();
+            orders.put(order.getId(), order);
+            return orders;
+        });
+    }
+    
+    /**
+     * Move an order that has reached a terminal status out of the live
+     * indexes and queue it for archival
+     */
+    private void retire(Order order) {
+        openOrdersByUser.computeIfPresent(order.getUserId(), (userId, openOrders) -> {
+            openOrders.remove(order.getId());
+            return openOrders.isEmpty() ? null : openOrders;
+        });
+        
+        terminalOrders.add(order);
+        terminalOrderCount.incrementAndGet();
+    }
+    
+    private void publish(Fill fill) {
+        for (Consumer<Fill> listener : fillListeners) {
+            listener.accept(fill);
+        }
+    }
+    
+    private void publish(Order order) {
+        if (orderListeners.isEmpty()) {
+            return;
+        }
+        
+        OrderUpdate update = new OrderUpdate(order.getId(), order.getUserId(), order.getSymbol(),
+                order.getType(), order.getSide(), order.getStatus(), order.getQuantity(),
+                order.getRemainingQuantity(), order.getPrice(), order.getStatusReason(), order.getUpdatedAt());
+        for (Consumer<OrderUpdate> listener : orderListeners) {
+            listener.accept(update);
+        }
+    }
+    
     /**
      * Get a specific order by ID
      * 
@@ -135,6 +574,99 @@ public class OrderBookService {
      * @return Order or null if not found
      */
     public Order getOrder(String orderId) {
-        return ordersById.get(orderId);
+        Order order = ordersById.get(orderId);
+        return order != null ? order : orderArchive.find(orderId);
+    }
+    
+    /**
+     * Archive terminal orders that are older than the retention age, or
+     * beyond the retention count, and drop them from memory.
+     * Orders are written to the archive before they leave ordersById, so
+     * getOrder always finds them in one place or the other.
+     * 
+     * @return Number of orders archived
+     */
+    public int archiveTerminalOrders() {
+        LocalDateTime cutoff = marketClock.localNow().minusSeconds(retentionMaxAgeSeconds);
+        List<Order> batch = new ArrayList<>();
+        Order oldest;
+        
+        while ((oldest = terminalOrders.peek()) != null &&
+               (terminalOrderCount.get() - batch.size() > retentionMaxTerminalOrders ||
+                oldest.getUpdatedAt().isBefore(cutoff))) {
+            batch.add(terminalOrders.poll());
+        }
+        
+        try {
+            return archive(batch);
+        } catch (IOException e) {
+            log.error("Failed to archive {} terminal orders, keeping them in memory", batch.size(), e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Terminal orders still held in memory, oldest update first.
+     * Read from the order index rather than the archival queue, so an
+     * order being archived concurrently is returned until it is on disk.
+     * 
+     * @return Filled, cancelled and rejected orders not yet archived
+     */
+    public List<Order> getTerminalOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (Order order : ordersById.values()) {
+            if (isTerminal(order.getStatus())) {
+                orders.add(order);
+            }
+        }
+        orders.sort(Comparator.comparing(Order::getUpdatedAt));
+        return orders;
+    }
+    
+    /**
+     * Put a terminal order recovered from a snapshot back in memory, where
+     * it waits for the retention job like any other terminal order.
+     * Orders already restored as live are left alone.
+     * 
+     * @param order Filled, cancelled or rejected order
+     */
+    public void restoreTerminalOrder(Order order) {
+        if (ordersById.putIfAbsent(order.getId(), order) == null) {
+            terminalOrders.add(order);
+            terminalOrderCount.incrementAndGet();
+        }
+    }
+    
+    private static boolean isTerminal(Order.OrderStatus status) {
+        return status == Order.OrderStatus.FILLED ||
+               status == Order.OrderStatus.CANCELLED ||
+               status == Order.OrderStatus.REJECTED;
+    }
+    
+    /**
+     * Write terminal orders taken from the queue to the archive and drop them from memory
+     */
+    private int archive(List<Order> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        
+        try {
+            orderArchive.append(batch);
+        } catch (IOException e) {
+            // Put the batch back at the head, oldest first, so retention stays in age order
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                terminalOrders.addFirst(batch.get(i));
+            }
+            throw e;
+        }
+        
+        for (Order order : batch) {
+            ordersById.remove(order.getId());
+        }
+        terminalOrderCount.addAndGet(-batch.size());
+        
+        log.info("Archived {} terminal orders, {} live orders remain", batch.size(), ordersById.size());
+        return batch.size();
     }
 }
\ No newline at end of file
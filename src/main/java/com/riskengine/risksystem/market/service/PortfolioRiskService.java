@@ -0,0 +1,471 @@
+package com.riskengine.risksystem.market.service;
+
+import com.riskengine.risksystem.market.model.*;
+import com.riskengine.risksystem.market.simulation.CorrelationModel;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import com.riskengine.risksystem.market.simulation.PriceHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Monte Carlo value-at-risk and expected shortfall of portfolios.
+ * <p>
+ * Each asset's log return over the risk horizon is drawn from a normal
+ * distribution whose drift and volatility are estimated from its price
+ * history, or taken from the asset's nominal volatility until enough
+ * history exists. Returns are correlated through the same asset type
+ * factors as simulated prices ({@link CorrelationModel}): each scenario
+ * draws one set of factors, shared by every asset in it.
+ * <p>
+ * Scenarios are generated and valued on a dedicated fork/join pool. Every
+ * task draws from its own {@link SplittableRandom}, split from its
+ * parent's before the task is forked, and writes into preallocated
+ * primitive arrays, so nothing is allocated per path. A single portfolio
+ * is assessed on demand against scenarios of its own holdings. The
+ * firm-wide run values every portfolio against one shared set of
+ * scenarios and stops at a time budget, so it finishes in bounded time
+ * however many portfolios there are.
+ */
+@Service
+@Slf4j
+public class PortfolioRiskService {
+    /** Scenario values generated or summed by one fork/join leaf */
+    private static final int VALUES_PER_TASK = 16_384;
+    
+    /** Portfolios valued by one fork/join leaf of the firm-wide run */
+    private static final int PORTFOLIOS_PER_TASK = 64;
+    
+    @Autowired
+    private MarketSimulator marketSimulator;
+    
+    @Autowired
+    private PortfolioService portfolioService;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    @Autowired
+    private CorrelationModel correlationModel;
+    
+    /** Scenarios per on-demand portfolio assessment */
+    @Value("${market.risk.paths:20000}")
+    private int paths;
+    
+    /** Scenarios shared by all portfolios in the firm-wide run */
+    @Value("${market.risk.batch.paths:2000}")
+    private int batchPaths;
+    
+    /** Longest the firm-wide run may take; portfolios not reached are skipped */
+    @Value("${market.risk.batch.time-budget-ms:60000}")
+    private long batchTimeBudgetMs;
+    
+    /** Confidence level of the value at risk */
+    @Value("${market.risk.confidence:0.99}")
+    private double confidence;
+    
+    /** Risk horizon, in simulated price updates */
+    @Value("${market.risk.horizon:1}")
+    private int horizon;
+    
+    /** Fewest historical returns used to estimate an asset's distribution */
+    @Value("${market.risk.min-history:30}")
+    private int minHistory;
+    
+    /** Worker threads; 0 means one per available processor */
+    @Value("${market.risk.parallelism:0}")
+    private int parallelism;
+    
+    private ForkJoinPool pool;
+    
+    /** Set while a firm-wide run is in progress, so runs never queue up */
+    private final AtomicBoolean batchInProgress = new AtomicBoolean();
+    
+    /** Summary of the latest firm-wide run, or null before the first completes */
+    private volatile FirmRiskReport latestReport;
+    
+    /** Per-portfolio results of the latest firm-wide run (userId → risk) */
+    private volatile Map<String, PortfolioRisk> latestRisk = Map.of();
+    
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+    
+    /**
+     * Assess one portfolio against freshly generated scenarios
+     *
+     * @param userId User ID
+     * @return Value at risk and expected shortfall of the portfolio, or null if the user has no portfolio
+     */
+    public PortfolioRisk assess(String userId) {
+        Portfolio portfolio = portfolioService.findPortfolio(userId);
+        if (portfolio == null) {
+            return null;
+        }
+        Positions positions = new Positions();
+        positions.load(portfolio);
+        
+        double[][] returns = generateScenarios(Arrays.copyOf(positions.symbolIds, positions.size),
+                paths, new SplittableRandom());
+        double[] losses = new double[paths];
+        
+        pool.invoke(new RangeTask(0, paths, VALUES_PER_TASK, null,
+                (from, to, random) -> positions.losses(returns, losses, (int) from, (int) to)));
+        
+        return toRisk(portfolio, losses, paths, LocalDateTime.now());
+    }
+    
+    /**
+     * Start a firm-wide run on the risk pool unless one is already running
+     */
+    public void requestFirmAssessment() {
+        if (!batchInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        
+        pool.execute(() -> {
+            try {
+                assessAll();
+            } catch (Exception e) {
+                log.error("Firm-wide risk run failed", e);
+            } finally {
+                batchInProgress.set(false);
+            }
+        });
+    }
+    
+    /**
+     * Assess every portfolio against one shared set of scenarios, in
+     * parallel across portfolios, until the time budget runs out
+     *
+     * @return Summary of the run, including how many portfolios were skipped
+     */
+    public FirmRiskReport assessAll() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(batchTimeBudgetMs);
+        LocalDateTime now = LocalDateTime.now();
+        
+        double[][] returns = generateScenarios(marketSimulator.getAssetIds(), batchPaths, new SplittableRandom());
+        List<Portfolio> portfolios = portfolioService.getPortfolios();
+        PortfolioRisk[] results = new PortfolioRisk[portfolios.size()];
+        
+        pool.invoke(new RangeTask(0, portfolios.size(), PORTFOLIOS_PER_TASK, null, (from, to, random) -> {
+            // Scratch arrays reused for every portfolio of this leaf
+            Positions positions = new Positions();
+            double[] losses = new double[batchPaths];
+            
+            for (int i = (int) from; i < to && System.nanoTime() < deadline; i++) {
+                Portfolio portfolio = portfolios.get(i);
+                positions.load(portfolio);
+                positions.losses(returns, losses, 0, batchPaths);
+                results[i] = toRisk(portfolio, losses, batchPaths, now);
+            }
+        }));
+        
+        Map<String, PortfolioRisk> risk = new HashMap<>(results.length * 2);
+        long totalValueAtRisk = 0;
+        long totalExpectedShortfall = 0;
+        for (PortfolioRisk result : results) {
+            if (result != null) {
+                risk.put(result.getUserId(), result);
+                totalValueAtRisk += result.getValueAtRisk();
+                totalExpectedShortfall += result.getExpectedShortfall();
+            }
+        }
+        
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int skipped = portfolios.size() - risk.size();
+        FirmRiskReport report = new FirmRiskReport(portfolios.size(), risk.size(), skipped, totalValueAtRisk,
+                totalExpectedShortfall, confidence, batchPaths, elapsedMillis, now);
+        latestRisk = risk;
+        latestReport = report;
+        
+        if (skipped > 0) {
+            log.warn("Firm-wide risk run hit its {} ms budget: {} of {} portfolios skipped",
+                    batchTimeBudgetMs, skipped, portfolios.size());
+        }
+        log.info("Firm-wide risk: {} portfolios in {} ms, total VaR ${}", risk.size(), elapsedMillis,
+                FixedPoint.toBigDecimal(totalValueAtRisk));
+        return report;
+    }
+    
+    /**
+     * Summary of the latest firm-wide run
+     *
+     * @return Report, or null if no run has completed yet
+     */
+    public FirmRiskReport getLatestReport() {
+        return latestReport;
+    }
+    
+    /**
+     * A portfolio's result from the latest firm-wide run
+     *
+     * @param userId User ID
+     * @return Risk, or null if the portfolio was not assessed by the latest run
+     */
+    public PortfolioRisk getLatestRisk(String userId) {
+        return latestRisk.get(userId);
+    }
+    
+    /**
+     * Simple returns over the horizon of each symbol in each scenario
+     *
+     * @param symbolIds Symbols to simulate
+     * @param pathCount Number of scenarios
+     * @param random Root of the random streams
+     * @return Returns by symbol id, then scenario; null for symbols not simulated
+     */
+    private double[][] generateScenarios(int[] symbolIds, int pathCount, SplittableRandom random) {
+        double[][] returns = new double[symbolRegistry.size()][];
+        double[] drift = new double[symbolIds.length];
+        double[] volatility = new double[symbolIds.length];
+        Asset.AssetType[] types = new Asset.AssetType[symbolIds.length];
+        
+        for (int j = 0; j < symbolIds.length; j++) {
+            estimate(symbolIds[j], drift, volatility, j);
+            returns[symbolIds[j]] = new double[pathCount];
+            Asset asset = marketSimulator.getAsset(symbolIds[j]);
+            types[j] = asset != null ? asset.getType() : null;
+        }
+        
+        // Type factors of every scenario, drawn up front so all symbols share them
+        int factorCount = correlationModel.factorCount();
+        double[] factors = new double[pathCount * factorCount];
+        SplittableRandom factorRandom = random.split();
+        for (int path = 0; path < pathCount; path++) {
+            correlationModel.drawFactors(factorRandom, factors, path * factorCount);
+        }
+        
+        long total = (long) symbolIds.length * pathCount;
+        pool.invoke(new RangeTask(0, total, VALUES_PER_TASK, random, (from, to, stream) -> {
+            int j = (int) (from / pathCount);
+            int path = (int) (from % pathCount);
+            
+            for (long i = from; i < to; i++) {
+                double noise = stream.nextGaussian();
+                double shock = types[j] != null
+                    ? correlationModel.shock(types[j], factors, path * factorCount, noise)
+                    : noise;
+                returns[symbolIds[j]][path] = Math.expm1(drift[j] + volatility[j] * shock);
+                if (++path == pathCount) {
+                    path = 0;
+                    j++;
+                }
+            }
+        }));
+        
+        return returns;
+    }
+    
+    /**
+     * Drift and volatility of a symbol's log return over the horizon
+     */
+    private void estimate(int symbolId, double[] drift, double[] volatility, int index) {
+        PriceHistory.View history = marketSimulator.getPriceHistory(symbolId);
+        ReturnStatistics returns = new ReturnStatistics();
+        if (history != null) {
+            history.forEach(returns);
+        }
+        
+        double mean = 0;
+        double deviation;
+        if (returns.count >= Math.max(minHistory, 2)) {
+            mean = returns.mean;
+            deviation = Math.sqrt(returns.m2 / (returns.count - 1));
+        } else {
+            Asset asset = marketSimulator.getAsset(symbolId);
+            deviation = asset != null ? asset.getVolatility() : 0;
+        }
+        
+        drift[index] = mean * horizon;
+        volatility[index] = deviation * Math.sqrt(horizon);
+    }
+    
+    /**
+     * Value at risk and expected shortfall from scenario losses; reorders the losses
+     */
+    private PortfolioRisk toRisk(Portfolio portfolio, double[] losses, int count, LocalDateTime computedAt) {
+        int k = Math.min(count - 1, Math.max(0, (int) Math.ceil(confidence * count) - 1));
+        select(losses, count, k);
+        
+        double tail = 0;
+        for (int i = k; i < count; i++) {
+            tail += losses[i];
+        }
+        
+        return new PortfolioRisk(portfolio.getUserId(), portfolio.getTotalValue(),
+                FixedPoint.of(losses[k]), FixedPoint.of(tail / (count - k)),
+                confidence, horizon, count, computedAt);
+    }
+    
+    /**
+     * Partially sort the first count values so the k-th smallest is at
+     * index k, with no smaller value after it and no larger value before it
+     */
+    private static void select(double[] values, int count, int k) {
+        int left = 0;
+        int right = count - 1;
+        
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Welford's running mean and variance of one-update log returns
+     */
+    private static final class ReturnStatistics implements PriceHistory.Visitor {
+        private double previous = Double.NaN;
+        
+        private int count;
+        
+        private double mean;
+        
+        private double m2;
+        
+        @Override
+        public void accept(long epochNanos, long price, long low, long high, long volume) {
+            double current = Math.log(FixedPoint.toDouble(price));
+            if (!Double.isNaN(previous)) {
+                double logReturn = current - previous;
+                double delta = logReturn - mean;
+                mean += delta / ++count;
+                m2 += delta * (logReturn - mean);
+            }
+            previous = current;
+        }
+    }
+    
+    /**
+     * Holdings of one portfolio valued at their marks; reused across portfolios
+     */
+    private static final class Positions {
+        private int[] symbolIds = new int[8];
+        
+        private double[] values = new double[8];
+        
+        private int size;
+        
+        void load(Portfolio portfolio) {
+            size = 0;
+            portfolio.forEachHolding((symbolId, quantity, mark) -> {
+                if (size == symbolIds.length) {
+                    symbolIds = Arrays.copyOf(symbolIds, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                symbolIds[size] = symbolId;
+                values[size] = FixedPoint.toDouble(FixedPoint.multiply(quantity, mark));
+                size++;
+            });
+        }
+        
+        /**
+         * Loss of the holdings in scenarios from (inclusive) to to (exclusive);
+         * symbols without scenarios are treated as riskless
+         */
+        void losses(double[][] returns, double[] losses, int from, int to) {
+            Arrays.fill(losses, from, to, 0);
+            for (int i = 0; i < size; i++) {
+                double[] symbolReturns = symbolIds[i] < returns.length ? returns[symbolIds[i]] : null;
+                if (symbolReturns == null) {
+                    continue;
+                }
+                double value = values[i];
+                for (int path = from; path < to; path++) {
+                    losses[path] -= value * symbolReturns[path];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Work on a range of indexes, given a random stream no other task uses
+     */
+    @FunctionalInterface
+    private interface RangeBody {
+        void run(long from, long to, SplittableRandom random);
+    }
+    
+    /**
+     * Splits an index range in halves until it is small enough to run directly.
+     * The random stream, if any, is split before forking, so the streams
+     * depend only on the root seed and the range, not on scheduling.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final long from;
+        
+        private final long to;
+        
+        private final long grain;
+        
+        private final SplittableRandom random;
+        
+        private final RangeBody body;
+        
+        RangeTask(long from, long to, long grain, SplittableRandom random, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.random = random;
+            this.body = body;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to, random);
+                return;
+            }
+            
+            long middle = (from + to) >>> 1;
+            SplittableRandom leftRandom = random != null ? random.split() : null;
+            invokeAll(new RangeTask(from, middle, grain, leftRandom, body),
+                      new RangeTask(middle, to, grain, random, body));
+        }
+    }
+}
\ No newline at end of file
@@ -1,26 +1,111 @@
 package com.riskengine.risksystem.market.service;
 
 import com.riskengine.risksystem.market.model.*;
+import com.riskengine.risksystem.market.persistence.Journal;
 import com.riskengine.risksystem.market.simulation.MarketSimulator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 /**
- * Manages user portfolios and executes trades
+ * Manages user portfolios and executes trades.
+ * Portfolio values are marked to market incrementally: every price tick
+ * re-values only the portfolios that hold the ticking symbol, found
+ * through an index of holders per symbol id. A portfolio joins the index
+ * before a new holding reads its mark price, so a tick racing with the
+ * trade is never missed.
+ * <p>
+ * An order that rests or executes in a book first reserves what it may
+ * need: a buy its quantity at its limit price, a sell its quantity. Each
+ * execution consumes the reservations of the orders involved, so both
+ * sides of every fill reported by the books can be settled.
  */
 @Service
 @Slf4j
 public class PortfolioService {
+    /** Cash balance of a new portfolio */
+    private static final long STARTING_BALANCE = FixedPoint.of(10000.0);
+    
     /** User portfolios (userId → portfolio) */
     private final Map<String, Portfolio> portfolios = new ConcurrentHashMap<>();
     
+    /** Portfolios holding each symbol, by symbol id */
+    private AtomicReferenceArray<Set<Portfolio>> holdersBySymbol;
+    
+    /** What each open book order still holds in reserve (orderId → reservation) */
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    
+    /** Subscribers notified when a portfolio falls below its equity alert threshold */
+    private final List<Consumer<EquityAlert>> equityAlertListeners = new CopyOnWriteArrayList<>();
+    
     @Autowired
     private MarketSimulator marketSimulator;
     
+    @Autowired
+    private Journal journal;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
+    /**
+     * Size the holder index and re-value holders of a symbol whenever its price moves
+     */
+    @PostConstruct
+    public void registerListeners() {
+        holdersBySymbol = new AtomicReferenceArray<>(symbolRegistry.getCapacity());
+        marketSimulator.addTickListener(this::onPriceTick);
+    }
+    
+    /**
+     * Cash or quantity an open order holds in reserve; guarded by the
+     * owning portfolio's lock
+     */
+    private static final class Reservation {
+        final Portfolio portfolio;
+        final int symbolId;
+        final Order.OrderSide side;
+        
+        /** Highest price a buy can execute at, or 0 for a sell */
+        final long price;
+        
+        /** Order quantity not yet executed */
+        long quantity;
+        
+        /** Cash still reserved for a buy */
+        long cash;
+        
+        Reservation(Portfolio portfolio, int symbolId, Order.OrderSide side, long price, long quantity, long cash) {
+            this.portfolio = portfolio;
+            this.symbolId = symbolId;
+            this.side = side;
+            this.price = price;
+            this.quantity = quantity;
+            this.cash = cash;
+        }
+    }
+    
+    /**
+     * Register a listener that is called once each time a portfolio's total
+     * value falls below its alert threshold. Listeners may run on the
+     * matching engine thread that published the price, so they should be quick.
+     * 
+     * @param listener Equity alert consumer
+     */
+    public void addEquityAlertListener(Consumer<EquityAlert> listener) {
+        equityAlertListeners.add(listener);
+    }
+    
     /**
      * Get or create a user's portfolio
      * 
@@ -29,12 +114,72 @@ public class PortfolioService {
      */
     public Portfolio getPortfolio(String userId) {
         return portfolios.computeIfAbsent(userId, id -> {
-            Portfolio portfolio = new Portfolio(id);
-            portfolio.setCashBalance(10000.0); // Default starting balance
+            Portfolio portfolio = new Portfolio(id, symbolRegistry);
+            portfolio.setCashBalance(STARTING_BALANCE);
             return portfolio;
         });
     }
     
+    /**
+     * A user's portfolio if it exists, without creating one
+     * 
+     * @param userId User ID
+     * @return User's portfolio, or null if the user has none
+     */
+    public Portfolio findPortfolio(String userId) {
+        return portfolios.get(userId);
+    }
+    
+    /**
+     * All portfolios, in no particular order
+     * 
+     * @return Copy of the current portfolio list
+     */
+    public List<Portfolio> getPortfolios() {
+        return List.copyOf(portfolios.values());
+    }
+    
+    /**
+     * Visit every portfolio while holding its lock, together with the
+     * journal sequence at that moment: every cash movement journaled before
+     * that sequence is reflected in the portfolio, and none after it.
+     * 
+     * @param visitor Receives each portfolio and its journal sequence
+     */
+    public void forEachPortfolio(ObjLongConsumer<Portfolio> visitor) {
+        for (Portfolio portfolio : portfolios.values()) {
+            synchronized (portfolio) {
+                visitor.accept(portfolio, journal.getNextSequence());
+            }
+        }
+    }
+    
+    /**
+     * Replace a user's portfolio with one recovered from a snapshot
+     * 
+     * @param userId User ID
+     * @param cashBalance Recovered cash balance
+     * @param holdings Recovered holdings (symbol → quantity)
+     */
+    public void restorePortfolio(String userId, long cashBalance, Map<String, Long> holdings) {
+        Portfolio portfolio = new Portfolio(userId, symbolRegistry);
+        portfolio.setCashBalance(cashBalance);
+        
+        Portfolio previous = portfolios.put(userId, portfolio);
+        if (previous != null) {
+            previous.getHoldings().keySet().forEach(symbol -> 
+                holdersOf(symbolRegistry.register(symbol)).remove(previous));
+        }
+        
+        synchronized (portfolio) {
+            holdings.forEach((symbol, quantity) -> {
+                int symbolId = symbolRegistry.register(symbol);
+                holdersOf(symbolId).add(portfolio);
+                portfolio.addHolding(symbolId, quantity, markPrice(symbolId));
+            });
+        }
+    }
+    
     /**
      * Execute a trade by updating the user's portfolio
      * 
@@ -42,33 +187,284 @@ public class PortfolioService {
      * @param executionPrice Price at which the order was executed
      * @return true if successful, false if failed (e.g., insufficient funds)
      */
-    public boolean executeTrade(Order order, double executionPrice) {
+    public boolean executeTrade(Order order, long executionPrice) {
         if (order.getStatus() != Order.OrderStatus.FILLED) {
             return false; // Only execute filled orders
         }
         
+        return executeTrade(order.getUserId(), symbolRegistry.require(order), order.getSide(),
+                order.getQuantity(), executionPrice);
+    }
+    
+    /**
+     * Apply one side of an execution to a user's portfolio
+     * 
+     * @param userId Portfolio owner
+     * @param symbolId Symbol id of the traded asset
+     * @param side Direction of the user's side of the trade
+     * @param quantity Executed amount
+     * @param executionPrice Price at which the trade executed
+     * @return true if successful, false if failed (e.g., insufficient funds)
+     */
+    public boolean executeTrade(String userId, int symbolId, Order.OrderSide side, long quantity,
+                                long executionPrice) {
+        Portfolio portfolio = getPortfolio(userId);
+        
+        // Check and update under the portfolio's lock so concurrent trades
+        // and cash movements for the same user cannot interleave
+        boolean success;
+        synchronized (portfolio) {
+            success = settle(portfolio, side, symbolId, quantity, executionPrice);
+        }
+        
+        checkEquityAlert(portfolio);
+        return success;
+    }
+    
+    /**
+     * Reserve what a book order may need before it reaches the matching
+     * engine: cash for its remaining quantity at its limit price if it
+     * buys, the remaining quantity if it sells. A stop buy's limit is its
+     * protection price.
+     * 
+     * @param order Limit, stop or immediate order
+     * @return false if the user cannot cover the order; nothing is reserved then
+     */
+    public boolean reserve(Order order) {
         Portfolio portfolio = getPortfolio(order.getUserId());
-        double tradeValue = order.getQuantity() * executionPrice;
+        int symbolId = symbolRegistry.require(order);
+        long quantity = order.getRemainingQuantity();
         
-        if (order.getSide() == Order.OrderSide.BUY) {
-            // Check if user has enough cash
-            if (portfolio.getCashBalance() < tradeValue) {
-                log.warn("Insufficient funds for trade: {}", order);
+        synchronized (portfolio) {
+            boolean reserved;
+            long price = 0;
+            long cash = 0;
+            if (order.getSide() == Order.OrderSide.BUY) {
+                price = order.getPrice();
+                cash = FixedPoint.multiply(quantity, price);
+                reserved = portfolio.reserveCash(cash);
+            } else {
+                reserved = portfolio.reserveQuantity(symbolId, quantity);
+            }
+            
+            if (reserved) {
+                reservations.put(order.getId(),
+                        new Reservation(portfolio, symbolId, order.getSide(), price, quantity, cash));
+            }
+            return reserved;
+        }
+    }
+    
+    /**
+     * Re-reserve for the orders left open by recovery, which replays the
+     * books and portfolios without reservations
+     * 
+     * @param openOrders Every open or pending stop order
+     */
+    public void reserveOpenOrders(List<Order> openOrders) {
+        for (Order order : openOrders) {
+            if (!reserve(order)) {
+                log.warn("Recovered order {} of {} is not covered by the recovered portfolio",
+                        order.getId(), order.getUserId());
+            }
+        }
+    }
+    
+    /**
+     * Return whatever an order still holds in reserve
+     * 
+     * @param orderId Order ID
+     */
+    public void release(String orderId) {
+        Reservation reservation = reservations.get(orderId);
+        if (reservation == null) {
+            return;
+        }
+        
+        synchronized (reservation.portfolio) {
+            if (reservations.remove(orderId, reservation)) {
+                releaseRemainder(reservation);
+            }
+        }
+    }
+    
+    /**
+     * Release the reservation of an order the books have cancelled or
+     * rejected. A filled order has already consumed its reservation.
+     * 
+     * @param update New state of a booked order
+     */
+    public void onOrderUpdate(OrderUpdate update) {
+        if (update.getStatus() == Order.OrderStatus.CANCELLED || 
+            update.getStatus() == Order.OrderStatus.REJECTED) {
+            release(update.getOrderId());
+        }
+    }
+    
+    /**
+     * Execute a market order against the simulated market, which is the
+     * counterparty, and journal it only if the user's unreserved cash or
+     * holdings cover it
+     * 
+     * @param fill Execution at the current market price
+     * @return false if the user cannot cover it; nothing changes then
+     */
+    public boolean executeMarketFill(Fill fill) {
+        int symbolId = symbolRegistry.require(fill.getSymbol());
+        Portfolio portfolio = getPortfolio(fill.getTakerUserId());
+        
+        boolean applied;
+        synchronized (portfolio) {
+            applied = settle(portfolio, fill.getTakerSide(), symbolId, fill.getQuantity(), fill.getPrice());
+            if (applied) {
+                journalFill(fill);
+            }
+        }
+        
+        checkEquityAlert(portfolio);
+        return applied;
+    }
+    
+    /**
+     * Settle an execution reported by the order books against the
+     * portfolios of both sides and journal it.
+     * <p>
+     * Both portfolios are locked, in user id order, while the fill is
+     * journaled and applied, so a snapshot sees it in both or in neither.
+     * Each side is paid for out of its order's reservation; a fill at the
+     * market price has the simulated market as its only counterparty.
+     * 
+     * @param fill Execution reported by a book
+     */
+    public void applyFill(Fill fill) {
+        int symbolId = symbolRegistry.require(fill.getSymbol());
+        Portfolio taker = getPortfolio(fill.getTakerUserId());
+        Portfolio maker = fill.getMakerUserId() != null ? getPortfolio(fill.getMakerUserId()) : taker;
+        
+        Portfolio first = taker.getUserId().compareTo(maker.getUserId()) <= 0 ? taker : maker;
+        Portfolio second = first == taker ? maker : taker;
+        
+        synchronized (first) {
+            synchronized (second) {
+                journalFill(fill);
+                settleReserved(taker, fill.getTakerOrderId(), fill.getTakerSide(), symbolId, fill);
+                
+                if (fill.getMakerUserId() != null) {
+                    Order.OrderSide makerSide = fill.getTakerSide() == Order.OrderSide.BUY
+                        ? Order.OrderSide.SELL
+                        : Order.OrderSide.BUY;
+                    settleReserved(maker, fill.getMakerOrderId(), makerSide, symbolId, fill);
+                }
+            }
+        }
+        
+        checkEquityAlert(taker);
+        if (maker != taker) {
+            checkEquityAlert(maker);
+        }
+    }
+    
+    /**
+     * Consume the part of an order's reservation a fill uses, then apply
+     * the fill; the caller holds the portfolio's lock
+     */
+    private void settleReserved(Portfolio portfolio, String orderId, Order.OrderSide side, int symbolId, Fill fill) {
+        Reservation reservation = reservations.get(orderId);
+        if (reservation != null) {
+            long quantity = Math.min(fill.getQuantity(), reservation.quantity);
+            reservation.quantity -= quantity;
+            
+            if (side == Order.OrderSide.BUY) {
+                long cash = Math.min(FixedPoint.multiply(quantity, reservation.price), reservation.cash);
+                reservation.cash -= cash;
+                portfolio.releaseCash(cash);
+            } else {
+                portfolio.releaseQuantity(symbolId, quantity);
+            }
+            
+            // Return the rounding left over once the order is fully executed
+            if (reservation.quantity == 0) {
+                reservations.remove(orderId);
+                releaseRemainder(reservation);
+            }
+        }
+        
+        if (!settle(portfolio, side, symbolId, fill.getQuantity(), fill.getPrice())) {
+            log.error("Fill of order {} exceeds what {} reserved for it", orderId, portfolio.getUserId());
+        }
+    }
+    
+    /**
+     * Return what is left of a reservation; the caller holds the portfolio's lock
+     */
+    private void releaseRemainder(Reservation reservation) {
+        if (reservation.side == Order.OrderSide.BUY) {
+            reservation.portfolio.releaseCash(reservation.cash);
+        } else {
+            reservation.portfolio.releaseQuantity(reservation.symbolId, reservation.quantity);
+        }
+        reservation.quantity = 0;
+        reservation.cash = 0;
+    }
+    
+    /**
+     * Journal a fill for recovery; a failure must not interrupt matching
+     */
+    private void journalFill(Fill fill) {
+        try {
+            journal.appendFill(fill);
+        } catch (Exception e) {
+            log.error("Failed to journal fill of order {}", fill.getTakerOrderId(), e);
+        }
+    }
+    
+    /**
+     * Apply one side of a trade and keep the holder index in step with the
+     * holding; the caller holds the portfolio's lock
+     */
+    private boolean settle(Portfolio portfolio, Order.OrderSide side, int symbolId, long quantity,
+                           long executionPrice) {
+        long tradeValue = FixedPoint.multiply(quantity, executionPrice);
+        boolean success = applyTrade(portfolio, side, symbolId, quantity, tradeValue, executionPrice);
+        
+        if (portfolio.holds(symbolId)) {
+            holdersOf(symbolId).add(portfolio);
+        } else {
+            holdersOf(symbolId).remove(portfolio);
+        }
+        return success;
+    }
+    
+    /**
+     * Apply one side of a trade to a portfolio; the caller holds the portfolio's lock
+     */
+    private boolean applyTrade(Portfolio portfolio, Order.OrderSide side, int symbolId, long quantity,
+                               long tradeValue, long executionPrice) {
+        String symbol = symbolRegistry.symbolOf(symbolId);
+        
+        if (side == Order.OrderSide.BUY) {
+            // Check if user has enough unreserved cash
+            if (portfolio.getAvailableCash() < tradeValue) {
+                log.warn("Insufficient funds for trade: {} buying {} of {}", portfolio.getUserId(),
+                        FixedPoint.toBigDecimal(quantity), symbol);
                 return false;
             }
             
-            // Update portfolio
+            // Update portfolio; join the holders before reading the mark, so
+            // a tick published after the read re-marks the new holding
             portfolio.withdrawCash(tradeValue);
-            portfolio.addHolding(order.getSymbol(), order.getQuantity());
+            holdersOf(symbolId).add(portfolio);
+            portfolio.addHolding(symbolId, quantity, markPrice(symbolId));
             
             log.info("Buy executed: {} {} of {} at ${}", 
-                    order.getUserId(), order.getQuantity(), 
-                    order.getSymbol(), executionPrice);
+                    portfolio.getUserId(), FixedPoint.toBigDecimal(quantity), 
+                    symbol, FixedPoint.toBigDecimal(executionPrice));
             
         } else { // SELL
-            // Check if user has enough of the asset
-            if (!portfolio.removeHolding(order.getSymbol(), order.getQuantity())) {
-                log.warn("Insufficient holdings for trade: {}", order);
+            // Check if user has enough of the asset that is not reserved
+            if (!portfolio.removeHolding(symbolId, quantity)) {
+                log.warn("Insufficient holdings for trade: {} selling {} of {}", portfolio.getUserId(),
+                        FixedPoint.toBigDecimal(quantity), symbol);
                 return false;
             }
             
@@ -76,62 +472,143 @@ public class PortfolioService {
             portfolio.depositCash(tradeValue);
             
             log.info("Sell executed: {} {} of {} at ${}", 
-                    order.getUserId(), order.getQuantity(), 
-                    order.getSymbol(), executionPrice);
+                    portfolio.getUserId(), FixedPoint.toBigDecimal(quantity), 
+                    symbol, FixedPoint.toBigDecimal(executionPrice));
         }
         
         return true;
     }
     
     /**
-     * Calculate total portfolio value for a user
+     * Total portfolio value for a user, as of the latest price tick of each holding
      * 
      * @param userId User ID
-     * @return Total portfolio value
+     * @return Total portfolio value, fixed-point
      */
-    public double getPortfolioValue(String userId) {
+    public long getPortfolioValue(String userId) {
+        return getPortfolio(userId).getTotalValue();
+    }
+    
+    /**
+     * Set the total value below which a user's portfolio raises an equity alert
+     * 
+     * @param userId User ID
+     * @param threshold Alert threshold, fixed-point, or 0 to remove the alert
+     */
+    public void setEquityAlert(String userId, long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Alert threshold must not be negative");
+        }
+        
         Portfolio portfolio = getPortfolio(userId);
-        Map<String, AssetPrice> prices = marketSimulator.getAllPrices();
+        portfolio.setEquityAlertThreshold(threshold);
+        checkEquityAlert(portfolio);
+    }
+    
+    /**
+     * Re-value every holder of the ticking symbol by quantity × price change
+     */
+    private void onPriceTick(AssetPrice price) {
+        Set<Portfolio> holders = holdersBySymbol.get(price.getSymbolId());
+        if (holders == null) {
+            return;
+        }
         
-        return portfolio.calculateTotalValue(prices);
+        for (Portfolio portfolio : holders) {
+            portfolio.mark(price.getSymbolId(), price.getPrice());
+            checkEquityAlert(portfolio);
+        }
+    }
+    
+    /**
+     * Notify listeners if the portfolio has just fallen below its alert threshold
+     */
+    private void checkEquityAlert(Portfolio portfolio) {
+        if (portfolio.getEquityAlertThreshold() <= 0 || !portfolio.checkEquityAlert()) {
+            return;
+        }
+        
+        EquityAlert alert = new EquityAlert(portfolio.getUserId(), portfolio.getEquityAlertThreshold(),
+                portfolio.getTotalValue(), LocalDateTime.now());
+        log.warn("Equity alert: {} value ${} below ${}", alert.getUserId(),
+                FixedPoint.toBigDecimal(alert.getTotalValue()), FixedPoint.toBigDecimal(alert.getThreshold()));
+        
+        for (Consumer<EquityAlert> listener : equityAlertListeners) {
+            try {
+                listener.accept(alert);
+            } catch (Exception e) {
+                log.error("Equity alert listener failed for {}", alert.getUserId(), e);
+            }
+        }
+    }
+    
+    private Set<Portfolio> holdersOf(int symbolId) {
+        Set<Portfolio> holders = holdersBySymbol.get(symbolId);
+        if (holders == null) {
+            Set<Portfolio> created = ConcurrentHashMap.newKeySet();
+            holders = holdersBySymbol.compareAndSet(symbolId, null, created) ? created : holdersBySymbol.get(symbolId);
+        }
+        return holders;
+    }
+    
+    /**
+     * Current price to mark a new holding at; 0 until the symbol has a price,
+     * in which case its first tick sets the mark
+     */
+    private long markPrice(int symbolId) {
+        AssetPrice price = marketSimulator.getCurrentPrice(symbolId);
+        return price != null ? price.getPrice() : 0;
     }
     
     /**
      * Add funds to a user's portfolio
      * 
      * @param userId User ID
-     * @param amount Amount to add
+     * @param amount Amount to add, fixed-point
      */
-    public void depositFunds(String userId, double amount) {
+    public void depositFunds(String userId, long amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
         
         Portfolio portfolio = getPortfolio(userId);
-        portfolio.depositCash(amount);
+        // Apply and journal together so a snapshot sees both or neither
+        synchronized (portfolio) {
+            portfolio.depositCash(amount);
+            journal.appendCash(userId, amount);
+        }
+        journal.awaitFlush();
         
-        log.info("Funds deposited: {} added ${}", userId, amount);
+        log.info("Funds deposited: {} added ${}", userId, FixedPoint.toBigDecimal(amount));
     }
     
     /**
      * Withdraw funds from a user's portfolio
      * 
      * @param userId User ID
-     * @param amount Amount to withdraw
+     * @param amount Amount to withdraw, fixed-point
      * @return true if successful, false if insufficient funds
      */
-    public boolean withdrawFunds(String userId, double amount) {
+    public boolean withdrawFunds(String userId, long amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
         
         Portfolio portfolio = getPortfolio(userId);
-        boolean success = portfolio.withdrawCash(amount);
+        boolean success;
+        synchronized (portfolio) {
+            success = portfolio.withdrawCash(amount);
+            if (success) {
+                journal.appendCash(userId, -amount);
+            }
+        }
         
         if (success) {
-            log.info("Funds withdrawn: {} withdrew ${}", userId, amount);
+            journal.awaitFlush();
+            log.info("Funds withdrawn: {} withdrew ${}", userId, FixedPoint.toBigDecimal(amount));
+            checkEquityAlert(portfolio);
         } else {
-            log.warn("Withdrawal failed: {} insufficient funds for ${}", userId, amount);
+            log.warn("Withdrawal failed: {} insufficient funds for ${}", userId, FixedPoint.toBigDecimal(amount));
         }
         
         return success;
@@ -1,6 +1,10 @@
 package com.riskengine.risksystem.market.service;
 
+import com.riskengine.risksystem.market.engine.MatchingEngine;
+import com.riskengine.risksystem.market.engine.OrderCommand;
 import com.riskengine.risksystem.market.model.*;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.simulation.MarketClock;
 import com.riskengine.risksystem.market.simulation.MarketSimulator;
 import com.riskengine.risksystem.service.RiskScoringService;
 import com.riskengine.risksystem.model.Transaction;
@@ -11,13 +15,24 @@ import com.riskengine.risksystem.repository.TransactionRepository;
 import com.riskengine.risksystem.repository.UserProfileRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
-import java.math.BigDecimal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Core trading service that processes orders with risk assessment
@@ -25,12 +40,30 @@ import java.util.Map;
 @Service
 @Slf4j
 public class TradingService {
+    /** Longest a caller waits for the matching engine to apply its command */
+    private static final long ENGINE_TIMEOUT_SECONDS = 5;
+    
     @Autowired
     private MarketSimulator marketSimulator;
     
+    @Autowired
+    private MarketClock marketClock;
+    
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+    
     @Autowired
     private OrderBookService orderBookService;
     
+    @Autowired
+    private MatchingEngine matchingEngine;
+    
+    @Autowired
+    private PortfolioService portfolioService;
+    
+    @Autowired
+    private Journal journal;
+    
     @Autowired
     private RiskScoringService riskScoringService;
     
@@ -40,6 +73,17 @@ public class TradingService {
     @Autowired
     private UserProfileRepository userProfileRepository;
     
+    /** How far above its stop price a stop buy may execute, as a fraction of the stop price */
+    @Value("${market.orders.stop-protection:0.05}")
+    private double stopProtection;
+    
+    /** Persists fill transactions off the matching engine threads, in fill order */
+    private final ExecutorService fillRecorder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fill-recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     /**
      * Result of a trading operation
      */
@@ -49,69 +93,109 @@ public class TradingService {
         String message
     ) {}
     
+    /**
+     * One instruction of a batch request: place a new order or cancel an existing one
+     */
+    public record BatchInstruction(
+        Order.OrderAction action,
+        String orderId,
+        String symbol,
+        Order.OrderSide side,
+        long quantity,
+        long price,
+        long stopPrice,
+        Order.OrderType type
+    ) {}
+    
+    /**
+     * Record a transaction for every execution produced by the order books,
+     * and match resting limit orders as soon as their symbol's price moves
+     */
+    @PostConstruct
+    public void registerListeners() {
+        orderBookService.addFillListener(this::recordFill);
+        marketSimulator.addTickListener(this::onPriceTick);
+    }
+    
+    /**
+     * Persist the fills already handed to the recorder before shutting down
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        fillRecorder.shutdown();
+        if (!fillRecorder.awaitTermination(ENGINE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Fill recorder did not finish within {}s", ENGINE_TIMEOUT_SECONDS);
+        }
+    }
+    
     /**
      * Place a new order with risk assessment
      * 
      * @param userId User placing the order
      * @param symbol Asset symbol
      * @param side Buy or sell
-     * @param quantity Amount to trade
-     * @param price Limit price (if applicable)
+     * @param quantity Amount to trade, fixed-point
+     * @param price Limit price (if applicable), fixed-point
      * @param type Market or limit order
      * @return Result of the order placement
      */
     public OrderResult placeOrder(String userId, String symbol, 
-                                 Order.OrderSide side, double quantity, 
-                                 double price, Order.OrderType type) {
-        log.info("Processing order request: {} {} {} at {} ({})", 
-                userId, side, quantity, price, type);
-        
-        // Validate inputs
-        if (quantity <= 0) {
-            return new OrderResult(null, false, "Quantity must be positive");
-        }
-        
-        if (type == Order.OrderType.LIMIT && price <= 0) {
-            return new OrderResult(null, false, "Price must be positive for limit orders");
-        }
+                                 Order.OrderSide side, long quantity, 
+                                 long price, Order.OrderType type) {
+        return placeOrder(userId, symbol, side, quantity, price, 0, type);
+    }
+    
+    /**
+     * Place a new order of any type with risk assessment
+     * 
+     * @param userId User placing the order
+     * @param symbol Asset symbol
+     * @param side Buy or sell
+     * @param quantity Amount to trade, fixed-point
+     * @param price Limit price (if applicable), fixed-point
+     * @param stopPrice Trigger price for stop and stop-limit orders, fixed-point
+     * @param type Order type
+     * @return Result of the order placement
+     */
+    public OrderResult placeOrder(String userId, String symbol, 
+                                 Order.OrderSide side, long quantity, 
+                                 long price, long stopPrice,
+                                 Order.OrderType type) {
+        log.info("Processing order request: {} {} {} at {} stop {} ({})", 
+                userId, side, FixedPoint.toBigDecimal(quantity), FixedPoint.toBigDecimal(price),
+                FixedPoint.toBigDecimal(stopPrice), type);
         
         try {
+            // Validate inputs against the asset's tick and lot size
+            int symbolId = symbolRegistry.require(symbol);
+            String invalid = validateOrder(marketSimulator.getAsset(symbolId), type, quantity, price, stopPrice);
+            if (invalid != null) {
+                return new OrderResult(null, false, invalid);
+            }
+            
             // Get current market price
-            AssetPrice currentPrice = marketSimulator.getCurrentPrice(symbol);
+            AssetPrice currentPrice = marketSimulator.getCurrentPrice(symbolId);
             
             // Create order
-            Order order = Order.create(userId, symbol, type, side, quantity, price);
-            
-            // For market orders, use current price
-            double effectivePrice = (type == Order.OrderType.MARKET) 
-                ? currentPrice.getPrice() 
-                : price;
-            
-            // Create transaction record for risk assessment
-            Transaction transaction = createTransactionFromOrder(
-                userId, symbol, side, quantity, effectivePrice);
+            Order order = Order.create(userId, symbol, type, side, quantity,
+                    protectStop(type, side, price, stopPrice), stopPrice, marketClock.localNow());
+            order.setSymbolId(symbolId);
             
             // Get user profile for risk assessment
             UserProfile userProfile = userProfileRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
             
-            // Assess risk before executing
-            RiskScore riskScore = riskScoringService.calculateRiskScore(transaction, userProfile);
-            log.info("Risk assessment for order {}: {}", order.getId(), riskScore);
-            
             // If high risk, reject the order
-            if (riskScore.getLevel() == RiskLevel.HIGH) {
-                order.setStatus(Order.OrderStatus.REJECTED);
-                order.setStatusReason("High risk transaction");
+            if (!passesRiskCheck(order, currentPrice, userProfile)) {
                 return new OrderResult(order, false, "Order rejected due to high risk score");
             }
             
-            // Process order according to type
-            if (type == Order.OrderType.MARKET) {
-                return executeMarketOrder(order, currentPrice);
-            } else {
-                return placeLimitOrder(order);
-            }
+            // Process order according to type, acknowledging only once it is durable
+            OrderResult result = type == Order.OrderType.MARKET
+                ? executeMarketOrder(order, currentPrice)
+                : placeBookOrder(order);
+            journal.awaitFlush();
+            return result;
             
         } catch (Exception e) {
             log.error("Error processing order", e);
@@ -120,9 +204,336 @@ public class TradingService {
     }
     
     /**
-     * Execute a market order immediately
+     * Place and cancel a batch of orders for one user.
+     * The user profile is loaded once and every new order is risk scored
+     * against it in a single pass. Instructions are then applied in the
+     * order given: consecutive book instructions go to the order books
+     * together, one sequenced command per engine shard, and a market order
+     * executes only once every instruction before it has been applied.
+     * 
+     * @param userId User submitting the batch
+     * @param instructions Place and cancel instructions
+     * @return One result per instruction, in the same order
+     */
+    public List<OrderResult> placeBatch(String userId, List<BatchInstruction> instructions) {
+        log.info("Processing batch of {} instructions for {}", instructions.size(), userId);
+        
+        OrderResult[] results = new OrderResult[instructions.size()];
+        
+        UserProfile userProfile = userProfileRepository.findById(userId).orElse(null);
+        if (userProfile == null) {
+            Arrays.fill(results, new OrderResult(null, false, "User not found: " + userId));
+            return Arrays.asList(results);
+        }
+        
+        // Validate every new order, then score them all in one pass
+        Order[] orders = new Order[results.length];
+        AssetPrice[] marketPrices = new AssetPrice[results.length];
+        List<Transaction> transactions = new ArrayList<>();
+        List<Integer> scored = new ArrayList<>();
+        
+        for (int i = 0; i < results.length; i++) {
+            BatchInstruction instruction = instructions.get(i);
+            if (instruction.action() == Order.OrderAction.CANCEL) {
+                continue;
+            }
+            try {
+                orders[i] = preparePlace(userId, instruction, results, i);
+                if (orders[i] != null) {
+                    marketPrices[i] = marketSimulator.getCurrentPrice(orders[i].getSymbolId());
+                    transactions.add(riskTransaction(orders[i], marketPrices[i]));
+                    scored.add(i);
+                }
+            } catch (Exception e) {
+                log.error("Error processing batch instruction {}", i, e);
+                results[i] = new OrderResult(null, false, "Error: " + e.getMessage());
+            }
+        }
+        
+        List<RiskScore> scores = riskScoringService.calculateRiskScores(transactions, userProfile);
+        for (int j = 0; j < scores.size(); j++) {
+            int i = scored.get(j);
+            if (!acceptRiskScore(orders[i], scores.get(j))) {
+                results[i] = new OrderResult(orders[i], false, "Order rejected due to high risk score");
+            }
+        }
+        
+        // Apply the surviving instructions in the order given
+        List<OrderCommand.BatchItem> batch = new ArrayList<>();
+        List<Integer> batchIndexes = new ArrayList<>();
+        Set<String> cancelIds = new HashSet<>();
+        boolean applied = true;
+        
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            try {
+                if (instructions.get(i).action() == Order.OrderAction.CANCEL) {
+                    OrderCommand.BatchItem item = prepareCancel(userId, instructions.get(i), cancelIds, results, i);
+                    if (item != null) {
+                        batch.add(item);
+                        batchIndexes.add(i);
+                    }
+                } else if (orders[i].getType() == Order.OrderType.MARKET) {
+                    // Everything before a market order must reach the books first
+                    applied = applied && applyBatch(userId, batch, batchIndexes, results);
+                    results[i] = applied
+                        ? executeMarketOrder(orders[i], marketPrices[i])
+                        : new OrderResult(orders[i], false, "Not executed: earlier instructions not yet applied");
+                } else if (portfolioService.reserve(orders[i])) {
+                    batch.add(new OrderCommand.BatchItem(OrderCommand.Type.PLACE, orders[i]));
+                    batchIndexes.add(i);
+                } else {
+                    results[i] = rejectUncovered(orders[i]);
+                }
+            } catch (Exception e) {
+                log.error("Error processing batch instruction {}", i, e);
+                results[i] = new OrderResult(orders[i], false, "Error: " + e.getMessage());
+            }
+        }
+        applyBatch(userId, batch, batchIndexes, results);
+        journal.awaitFlush();
+        
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Apply queued batch instructions to the order books in one sequenced
+     * step, fill in their results and clear the queue
+     * 
+     * @return true if the engine applied every instruction
+     */
+    private boolean applyBatch(String userId, List<OrderCommand.BatchItem> batch, List<Integer> batchIndexes,
+                               OrderResult[] results) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        
+        boolean applied = false;
+        try {
+            awaitEngine(matchingEngine.applyBatch(batch));
+            applied = true;
+            for (int j = 0; j < batch.size(); j++) {
+                OrderCommand.BatchItem item = batch.get(j);
+                results[batchIndexes.get(j)] = item.type() == OrderCommand.Type.CANCEL
+                    ? cancelResult(item.order(), item.order())
+                    : bookResult(item.order());
+            }
+        } catch (TimeoutException e) {
+            log.warn("Batch for {} not applied within {}s, still pending", userId, ENGINE_TIMEOUT_SECONDS);
+            for (int j = 0; j < batch.size(); j++) {
+                results[batchIndexes.get(j)] = pendingResult(batch.get(j).order());
+            }
+        } catch (Exception e) {
+            log.error("Error applying batch for {}", userId, e);
+            for (int j = 0; j < batch.size(); j++) {
+                OrderCommand.BatchItem item = batch.get(j);
+                if (item.type() == OrderCommand.Type.PLACE) {
+                    releaseUnplaced(item.order());
+                }
+                results[batchIndexes.get(j)] = new OrderResult(item.order(), false, "Error: " + e.getMessage());
+            }
+        }
+        
+        batch.clear();
+        batchIndexes.clear();
+        return applied;
+    }
+    
+    /**
+     * Validate one batch order and create it
+     * 
+     * @return New order, or null if the instruction is invalid
+     */
+    private Order preparePlace(String userId, BatchInstruction instruction, OrderResult[] results, int index) {
+        int symbolId = symbolRegistry.require(instruction.symbol());
+        String invalid = validateOrder(marketSimulator.getAsset(symbolId), instruction.type(),
+                instruction.quantity(), instruction.price(), instruction.stopPrice());
+        if (invalid != null) {
+            results[index] = new OrderResult(null, false, invalid);
+            return null;
+        }
+        
+        Order order = Order.create(userId, instruction.symbol(), instruction.type(), instruction.side(),
+                instruction.quantity(),
+                protectStop(instruction.type(), instruction.side(), instruction.price(), instruction.stopPrice()),
+                instruction.stopPrice(), marketClock.localNow());
+        order.setSymbolId(symbolId);
+        return order;
+    }
+    
+    /**
+     * Check ownership and state of one batch cancellation
+     */
+    private OrderCommand.BatchItem prepareCancel(String userId, BatchInstruction instruction,
+                                                 Set<String> cancelIds,
+                                                 OrderResult[] results, int index) {
+        Order order = orderBookService.getOrder(instruction.orderId());
+        
+        if (order == null) {
+            results[index] = new OrderResult(null, false, "Order not found");
+            return null;
+        }
+        
+        if (!order.getUserId().equals(userId)) {
+            results[index] = new OrderResult(order, false, "Not authorized to cancel this order");
+            return null;
+        }
+        
+        if (!cancelIds.add(order.getId())) {
+            results[index] = new OrderResult(order, false, "Order already cancelled in this batch");
+            return null;
+        }
+        
+        if (order.getStatus() != Order.OrderStatus.OPEN && 
+            order.getStatus() != Order.OrderStatus.PARTIALLY_FILLED) {
+            results[index] = new OrderResult(order, false, "Could not cancel order");
+            return null;
+        }
+        
+        return new OrderCommand.BatchItem(OrderCommand.Type.CANCEL, order);
+    }
+    
+    /**
+     * Check order parameters for the given type and asset
+     * 
+     * @return Reason the order is invalid, or null if it is valid
+     */
+    private static String validateOrder(Asset asset, Order.OrderType type, long quantity, 
+                                        long price, long stopPrice) {
+        if (asset == null) {
+            return "Asset is not traded";
+        }
+        
+        if (type == null) {
+            return "Order type is required";
+        }
+        
+        if (quantity <= 0) {
+            return "Quantity must be positive";
+        }
+        
+        if (hasLimitPrice(type) && price <= 0) {
+            return "Price must be positive for limit orders";
+        }
+        
+        if (type.isStop() && stopPrice <= 0) {
+            return "Stop price must be positive for stop orders";
+        }
+        
+        if (!FixedPoint.isMultiple(quantity, asset.getLotSize())) {
+            return "Quantity must be a multiple of the lot size " + 
+                FixedPoint.toBigDecimal(asset.getLotSize()).toPlainString();
+        }
+        
+        if (hasLimitPrice(type) && !FixedPoint.isMultiple(price, asset.getTickSize())) {
+            return "Price must be a multiple of the tick size " + 
+                FixedPoint.toBigDecimal(asset.getTickSize()).toPlainString();
+        }
+        
+        if (type.isStop() && !FixedPoint.isMultiple(stopPrice, asset.getTickSize())) {
+            return "Stop price must be a multiple of the tick size " + 
+                FixedPoint.toBigDecimal(asset.getTickSize()).toPlainString();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Score an order against the user's profile, rejecting it if the risk is high
+     * 
+     * @return false if the order was rejected
+     */
+    private boolean passesRiskCheck(Order order, AssetPrice currentPrice, UserProfile userProfile) {
+        RiskScore riskScore = riskScoringService.calculateRiskScore(riskTransaction(order, currentPrice), userProfile);
+        return acceptRiskScore(order, riskScore);
+    }
+    
+    /**
+     * Transaction record an order is risk scored as
+     */
+    private Transaction riskTransaction(Order order, AssetPrice currentPrice) {
+        // For market orders, use current price; stops execute around their stop price
+        long effectivePrice = switch (order.getType()) {
+            case MARKET -> currentPrice.getPrice();
+            case STOP -> order.getStopPrice();
+            default -> order.getPrice();
+        };
+        
+        return createTransactionFromOrder(
+            order.getUserId(), order.getSymbol(), order.getSide(), order.getQuantity(), effectivePrice);
+    }
+    
+    /**
+     * Reject an order whose risk score is high
+     * 
+     * @return false if the order was rejected
+     */
+    private boolean acceptRiskScore(Order order, RiskScore riskScore) {
+        log.info("Risk assessment for order {}: {}", order.getId(), riskScore);
+        
+        if (riskScore.getLevel() == RiskLevel.HIGH) {
+            order.setStatus(Order.OrderStatus.REJECTED);
+            order.setStatusReason("High risk transaction");
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Price to give a new order: a stop buy gets the protection price it
+     * may execute up to, which bounds the cash it reserves
+     */
+    private long protectStop(Order.OrderType type, Order.OrderSide side, long price, long stopPrice) {
+        if (type == Order.OrderType.STOP && side == Order.OrderSide.BUY) {
+            return FixedPoint.multiply(stopPrice, FixedPoint.of(1 + stopProtection));
+        }
+        return price;
+    }
+    
+    /**
+     * Reject an order the user's unreserved cash or holdings cannot cover
+     */
+    private OrderResult rejectUncovered(Order order) {
+        order.setStatus(Order.OrderStatus.REJECTED);
+        order.setStatusReason(order.getSide() == Order.OrderSide.BUY
+            ? "Insufficient funds"
+            : "Insufficient holdings");
+        order.setUpdatedAt(marketClock.localNow());
+        return new OrderResult(order, false, "Order rejected: " + order.getStatusReason());
+    }
+    
+    /**
+     * Release the reservation of an order the engine failed to place.
+     * An order it did place keeps its reservation until the book is done with it.
+     */
+    private void releaseUnplaced(Order order) {
+        if (order.getStatus() == Order.OrderStatus.PENDING) {
+            portfolioService.release(order.getId());
+        }
+    }
+    
+    /**
+     * Execute a market order immediately against the user's portfolio,
+     * rejecting it if the user cannot pay for it or does not hold enough
      */
     private OrderResult executeMarketOrder(Order order, AssetPrice currentPrice) {
+        long quantity = order.getRemainingQuantity();
+        LocalDateTime now = marketClock.localNow();
+        
+        // Market orders never reach a book, so settle and journal their execution here
+        Fill fill = new Fill(order.getSymbol(), order.getId(), order.getUserId(), order.getSide(),
+                null, null, currentPrice.getPrice(), quantity, now);
+        if (!portfolioService.executeMarketFill(fill)) {
+            return rejectUncovered(order);
+        }
+        
+        // Update order status
+        order.fill(quantity);
+        order.setUpdatedAt(now);
+        
         // Record the transaction
         Transaction transaction = createTransactionFromOrder(
             order.getUserId(), 
@@ -133,36 +544,124 @@ public class TradingService {
         );
         transactionRepository.save(transaction);
         
-        // Update order status
-        order.setStatus(Order.OrderStatus.FILLED);
-        order.setUpdatedAt(LocalDateTime.now());
-        
         log.info("Market order executed: {} at price {}", 
-                order.getId(), currentPrice.getPrice());
+                order.getId(), FixedPoint.toBigDecimal(currentPrice.getPrice()));
         
         return new OrderResult(order, true, "Market order executed successfully");
     }
     
     /**
-     * Place a limit order in the order book
+     * Place a limit, stop or immediate order through the order book,
+     * reserving what it may need first
      */
-    private OrderResult placeLimitOrder(Order order) {
-        // Add to order book
-        orderBookService.addOrder(order);
+    private OrderResult placeBookOrder(Order order) throws Exception {
+        if (!portfolioService.reserve(order)) {
+            return rejectUncovered(order);
+        }
+        
+        // Apply through the matching engine, crossing any resting orders first
+        try {
+            awaitEngine(matchingEngine.place(order));
+        } catch (TimeoutException e) {
+            log.warn("Order {} not applied within {}s, still pending", order.getId(), ENGINE_TIMEOUT_SECONDS);
+            return pendingResult(order);
+        } catch (Exception e) {
+            releaseUnplaced(order);
+            throw e;
+        }
         
-        return new OrderResult(order, true, "Limit order placed successfully");
+        return bookResult(order);
+    }
+    
+    /**
+     * Describe a command that is queued in the matching engine but has not
+     * been applied yet. It will still be applied, so it is not reported as
+     * a failure; its outcome arrives through the order stream and order lookups.
+     */
+    private static OrderResult pendingResult(Order order) {
+        return new OrderResult(order, true, "Accepted, still pending in the matching engine");
+    }
+    
+    /**
+     * Describe the outcome of an order the engine has applied to its book
+     */
+    private static OrderResult bookResult(Order order) {
+        return switch (order.getStatus()) {
+            case REJECTED -> new OrderResult(order, false, "Order rejected: " + order.getStatusReason());
+            case FILLED -> new OrderResult(order, true, "Order filled");
+            case PARTIALLY_FILLED -> new OrderResult(order, true, "Order partially filled");
+            case CANCELLED -> new OrderResult(order, order.getFilledQuantity() > 0, 
+                    "Order cancelled: " + order.getStatusReason());
+            default -> new OrderResult(order, true, order.getType().isStop()
+                    ? "Stop order placed successfully"
+                    : "Limit order placed successfully");
+        };
+    }
+    
+    /**
+     * Whether orders of this type carry a limit price
+     */
+    private static boolean hasLimitPrice(Order.OrderType type) {
+        return type != Order.OrderType.MARKET && type != Order.OrderType.STOP;
+    }
+    
+    /**
+     * Hand an execution to the fill recorder. Runs on the matching engine
+     * thread, which must not wait for the database.
+     */
+    private void recordFill(Fill fill) {
+        try {
+            fillRecorder.execute(() -> {
+                try {
+                    saveFill(fill);
+                } catch (Exception e) {
+                    log.error("Failed to record fill of order {}", fill.getTakerOrderId(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down while the engine drains its last commands
+            saveFill(fill);
+        }
     }
     
     /**
-     * Create a transaction record from order details
+     * Persist the transactions for a single execution, one per participating user
+     */
+    private void saveFill(Fill fill) {
+        transactionRepository.save(createTransactionFromOrder(
+            fill.getTakerUserId(),
+            fill.getSymbol(),
+            fill.getTakerSide(),
+            fill.getQuantity(),
+            fill.getPrice()
+        ));
+        
+        if (fill.getMakerOrderId() != null) {
+            Order.OrderSide makerSide = fill.getTakerSide() == Order.OrderSide.BUY
+                ? Order.OrderSide.SELL
+                : Order.OrderSide.BUY;
+            
+            transactionRepository.save(createTransactionFromOrder(
+                fill.getMakerUserId(),
+                fill.getSymbol(),
+                makerSide,
+                fill.getQuantity(),
+                fill.getPrice()
+            ));
+        }
+    }
+    
+    /**
+     * Create a transaction record from order details; the fixed-point
+     * notional becomes a decimal amount only here, where it is persisted
      */
     private Transaction createTransactionFromOrder(
             String userId, String symbol, Order.OrderSide side, 
-            double quantity, double price) {
+            long quantity, long price) {
         
         return Transaction.builder()
             .userId(userId)
-            .amount(BigDecimal.valueOf(quantity * price))
+            .amount(FixedPoint.toBigDecimal(FixedPoint.multiply(quantity, price)))
             .timestamp(LocalDateTime.now())
             .type("TRADE_" + side.name())
             .sourceAccountId(side == Order.OrderSide.BUY ? userId : "EXCHANGE")
@@ -191,8 +690,25 @@ public class TradingService {
             return new OrderResult(order, false, "Not authorized to cancel this order");
         }
         
-        Order cancelledOrder = orderBookService.cancelOrder(orderId);
+        Order cancelledOrder;
+        try {
+            cancelledOrder = awaitEngine(matchingEngine.cancel(order));
+        } catch (TimeoutException e) {
+            log.warn("Cancellation of {} not applied within {}s, still pending", orderId, ENGINE_TIMEOUT_SECONDS);
+            return pendingResult(order);
+        } catch (Exception e) {
+            log.error("Error cancelling order {}", orderId, e);
+            return new OrderResult(order, false, "Error: " + e.getMessage());
+        }
+        journal.awaitFlush();
         
+        return cancelResult(order, cancelledOrder);
+    }
+    
+    /**
+     * Describe the outcome of a cancellation the engine has applied
+     */
+    private static OrderResult cancelResult(Order order, Order cancelledOrder) {
         if (cancelledOrder != null && 
             cancelledOrder.getStatus() == Order.OrderStatus.CANCELLED) {
             return new OrderResult(cancelledOrder, true, "Order cancelled successfully");
@@ -202,34 +718,20 @@ public class TradingService {
     }
     
     /**
-     * Process all pending limit orders against current market prices
-     * This would typically be called on a schedule
+     * Hand a symbol's new price to the matching engine.
+     * Only price levels the new price reaches are visited; transactions are
+     * recorded by the fill handler.
      */
-    public void processLimitOrders() {
-        log.info("Processing pending limit orders");
-        
-        Map<String, AssetPrice> prices = marketSimulator.getAllPrices();
-        int totalFilled = 0;
-        
-        for (String symbol : prices.keySet()) {
-            AssetPrice price = prices.get(symbol);
-            
-            List<Order> filledOrders = orderBookService.matchLimitOrders(symbol, price);
-            totalFilled += filledOrders.size();
-            
-            // Record transactions for filled orders
-            for (Order order : filledOrders) {
-                Transaction transaction = createTransactionFromOrder(
-                    order.getUserId(),
-                    order.getSymbol(),
-                    order.getSide(),
-                    order.getQuantity(),
-                    price.getPrice()
-                );
-                transactionRepository.save(transaction);
-            }
-        }
-        
-        log.info("Completed limit order processing: {} orders filled", totalFilled);
+    private void onPriceTick(AssetPrice price) {
+        matchingEngine.tick(price);
+    }
+    
+    /**
+     * Wait for the matching engine to apply a command on its own thread
+     * 
+     * @throws TimeoutException if the command is still queued; it will be applied later
+     */
+    private <T> T awaitEngine(CompletableFuture<T> result) throws Exception {
+        return result.get(ENGINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     }
 }
\ No newline at end of file
@@ -0,0 +1,289 @@
+package com.riskengine.risksystem.market.simulation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * OHLCV bars of one symbol at one resolution, aggregated tick by tick into
+ * a bounded circular buffer of primitive columns.
+ * <p>
+ * A tick either updates the current bar in place or, once the tick falls
+ * in a later interval, opens a new bar that overwrites the oldest. Bars
+ * are aligned to whole intervals since the epoch (UTC), and intervals
+ * without ticks have no bar. The columns start small and double up to the
+ * retention, so rarely traded symbols do not reserve their full history.
+ * <p>
+ * Bars are written only by the engine thread that owns the symbol. Since
+ * the current bar changes in place, every slot carries a stamp that is odd
+ * while the slot is being written and even once it is complete, and
+ * encodes which bar the slot holds; readers on other threads check the
+ * stamp before and after reading a bar, retrying a bar caught mid-update
+ * and skipping one that has been overwritten.
+ */
+public class BarHistory {
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+    
+    /** Bars held before the columns first grow */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    /** Memory taken by one bar once the columns are full: stamp, open time, OHLC and volume */
+    public static final int BYTES_PER_BAR = 7 * Long.BYTES;
+    
+    /** Length of one bar in nanoseconds */
+    private final long duration;
+    
+    /** Most bars kept; older bars are overwritten */
+    private final int retention;
+    
+    /** Current columns; replaced, never modified, when they grow */
+    private volatile Columns columns;
+    
+    /** Number of bars ever opened; the current bar is count - 1 */
+    private volatile long count;
+    
+    /**
+     * Visits the bars of a view, oldest first
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long openTime, long open, long high, long low, long close, long volume);
+    }
+    
+    /**
+     * @param durationNanos Length of one bar in nanoseconds
+     * @param retention Most bars kept
+     */
+    public BarHistory(long durationNanos, int retention) {
+        this.duration = durationNanos;
+        this.retention = retention;
+        this.columns = new Columns(Math.min(INITIAL_CAPACITY, retention));
+    }
+    
+    /**
+     * Fold a tick into the current bar, or open a new bar if the tick falls
+     * in a later interval. A tick older than the current bar, such as after
+     * the clock is set back, is folded into the current bar.
+     * Must only be called by the thread that owns the symbol.
+     *
+     * @param epochNanos Time of the tick
+     * @param price Price, fixed-point
+     * @param volume Volume traded since the previous tick, fixed-point; summed into the bar
+     */
+    public void add(long epochNanos, long price, long volume) {
+        long openTime = epochNanos - Math.floorMod(epochNanos, duration);
+        Columns c = columns;
+        long current = count - 1;
+        
+        if (current >= 0) {
+            int slot = c.slot(current);
+            if (openTime <= c.openTimes[slot]) {
+                c.begin(slot, current);
+                c.highs[slot] = Math.max(c.highs[slot], price);
+                c.lows[slot] = Math.min(c.lows[slot], price);
+                c.closes[slot] = price;
+                c.volumes[slot] += volume;
+                c.end(slot, current);
+                return;
+            }
+        }
+        
+        long sequence = current + 1;
+        if (sequence == c.capacity && c.capacity < retention) {
+            c = c.grow(Math.min(retention, c.capacity * 2));
+            columns = c;
+        }
+        
+        int slot = c.slot(sequence);
+        c.begin(slot, sequence);
+        c.openTimes[slot] = openTime;
+        c.opens[slot] = price;
+        c.highs[slot] = price;
+        c.lows[slot] = price;
+        c.closes[slot] = price;
+        c.volumes[slot] = volume;
+        c.end(slot, sequence);
+        
+        count = sequence + 1;
+    }
+    
+    /**
+     * Bars currently held that open within a time range, read in place
+     *
+     * @param from Earliest bar open time, epoch nanoseconds, inclusive
+     * @param to Latest bar open time, epoch nanoseconds, exclusive
+     */
+    public View view(long from, long to) {
+        // Count first: columns are replaced before a bar is added to them
+        long end = count;
+        Columns c = columns;
+        return new View(c, Math.max(0, end - c.capacity), end, from, to);
+    }
+    
+    /**
+     * One generation of the bar columns
+     */
+    private static final class Columns {
+        private final int capacity;
+        
+        /** 2 × sequence + 1 while the slot's bar is being written, 2 × sequence + 2 once written */
+        private final long[] stamps;
+        
+        private final long[] openTimes;
+        
+        private final long[] opens;
+        
+        private final long[] highs;
+        
+        private final long[] lows;
+        
+        private final long[] closes;
+        
+        private final long[] volumes;
+        
+        Columns(int capacity) {
+            this(capacity, new long[capacity], new long[capacity], new long[capacity], new long[capacity],
+                    new long[capacity], new long[capacity], new long[capacity]);
+        }
+        
+        private Columns(int capacity, long[] stamps, long[] openTimes, long[] opens, long[] highs,
+                        long[] lows, long[] closes, long[] volumes) {
+            this.capacity = capacity;
+            this.stamps = stamps;
+            this.openTimes = openTimes;
+            this.opens = opens;
+            this.highs = highs;
+            this.lows = lows;
+            this.closes = closes;
+            this.volumes = volumes;
+        }
+        
+        int slot(long sequence) {
+            return (int) (sequence % capacity);
+        }
+        
+        void begin(int slot, long sequence) {
+            STAMPS.setVolatile(stamps, slot, 2 * sequence + 1);
+            // Keep the column writes that follow from being seen before the odd stamp
+            VarHandle.storeStoreFence();
+        }
+        
+        void end(int slot, long sequence) {
+            STAMPS.setRelease(stamps, slot, 2 * sequence + 2);
+        }
+        
+        /**
+         * Copy of full, not yet wrapped columns with more room
+         */
+        Columns grow(int newCapacity) {
+            return new Columns(newCapacity, Arrays.copyOf(stamps, newCapacity),
+                    Arrays.copyOf(openTimes, newCapacity), Arrays.copyOf(opens, newCapacity),
+                    Arrays.copyOf(highs, newCapacity), Arrays.copyOf(lows, newCapacity),
+                    Arrays.copyOf(closes, newCapacity), Arrays.copyOf(volumes, newCapacity));
+        }
+    }
+    
+    /**
+     * The bars that were held when the view was taken and open within its
+     * time range. The current bar is read as it is when visited; bars
+     * overwritten since the view was taken are skipped.
+     */
+    @JsonSerialize(using = ViewSerializer.class)
+    public static final class View {
+        private final Columns columns;
+        
+        /** Sequence of the oldest bar in the view */
+        private final long start;
+        
+        /** Sequence after the newest bar in the view */
+        private final long end;
+        
+        private final long from;
+        
+        private final long to;
+        
+        private View(Columns columns, long start, long end, long from, long to) {
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+        
+        /**
+         * Visit every bar in the time range that has not been overwritten, oldest first
+         */
+        public void forEach(Visitor visitor) {
+            Columns c = columns;
+            for (long sequence = start; sequence < end; sequence++) {
+                int slot = c.slot(sequence);
+                long written = 2 * sequence + 2;
+                
+                while (true) {
+                    long before = (long) STAMPS.getAcquire(c.stamps, slot);
+                    long openTime = c.openTimes[slot];
+                    long open = c.opens[slot];
+                    long high = c.highs[slot];
+                    long low = c.lows[slot];
+                    long close = c.closes[slot];
+                    long volume = c.volumes[slot];
+                    VarHandle.acquireFence();
+                    long after = (long) STAMPS.getAcquire(c.stamps, slot);
+                    
+                    if (before == written && after == written) {
+                        if (openTime >= from && openTime < to) {
+                            visitor.accept(openTime, open, high, low, close, volume);
+                        }
+                        break;
+                    }
+                    if (after > written) {
+                        break; // Overwritten by a newer bar
+                    }
+                    Thread.onSpinWait(); // Caught mid-update
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes a view as a JSON array of bars, straight from the columns
+     */
+    public static class ViewSerializer extends StdSerializer<View> {
+        private static final long serialVersionUID = 1L;
+        
+        public ViewSerializer() {
+            super(View.class);
+        }
+        
+        @Override
+        public void serialize(View view, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartArray();
+            try {
+                view.forEach((openTime, open, high, low, close, volume) -> {
+                    try {
+                        generator.writeStartObject();
+                        provider.defaultSerializeField("timestamp", PriceHistory.toLocalDateTime(openTime), generator);
+                        PriceHistory.writeFixedPoint(generator, "open", open);
+                        PriceHistory.writeFixedPoint(generator, "high", high);
+                        PriceHistory.writeFixedPoint(generator, "low", low);
+                        PriceHistory.writeFixedPoint(generator, "close", close);
+                        PriceHistory.writeFixedPoint(generator, "volume", volume);
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
\ No newline at end of file
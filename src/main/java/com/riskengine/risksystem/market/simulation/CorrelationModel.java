@@ -0,0 +1,157 @@
+package com.riskengine.risksystem.market.simulation;
+
+import com.riskengine.risksystem.market.model.Asset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Correlated random shocks for asset returns, from one common factor per
+ * {@link Asset.AssetType}.
+ * <p>
+ * The factors are correlated with each other as given by a configured
+ * type-by-type correlation matrix, whose Cholesky factor is computed once
+ * at startup; drawing the factors for a tick is then one matrix-vector
+ * product of that factor with independent standard normals. An asset's
+ * shock mixes its type's factor with noise of its own:
+ * {@code sqrt(w) × factor + sqrt(1 - w) × noise}, where w is the
+ * configured correlation between two assets of the same type. Two assets
+ * of different types a and b are then correlated by
+ * {@code sqrt(w_a × w_b) × matrix[a][b]}.
+ * <p>
+ * The work per tick is linear in the number of symbols, unlike a full
+ * asset-by-asset correlation matrix, and the factors of a tick can be
+ * drawn independently by every partition from a stream keyed by the tick
+ * time, so partitions stay correlated without sharing any state.
+ */
+@Component
+@Slf4j
+public class CorrelationModel {
+    private static final int TYPES = Asset.AssetType.values().length;
+    
+    /** Correlation of the type factors, row-major, in {@link Asset.AssetType} order */
+    @Value("${market.correlation.matrix:1,0.3,0.1,0.2,0.3,1,0.05,0.1,0.1,0.05,1,0.2,0.2,0.1,0.2,1}")
+    private double[] matrix;
+    
+    /** Correlation of two assets of the same type, in {@link Asset.AssetType} order; 0 makes assets independent */
+    @Value("${market.correlation.within-type:0.5,0.7,0.3,0.4}")
+    private double[] withinType;
+    
+    /** Lower-triangular Cholesky factor of the matrix, row-major */
+    private double[] cholesky;
+    
+    /** Weight of the type factor in each type's shocks */
+    private double[] factorWeight;
+    
+    /** Weight of each asset's own noise in its shocks */
+    private double[] noiseWeight;
+    
+    @PostConstruct
+    public void init() {
+        if (matrix.length != TYPES * TYPES || withinType.length != TYPES) {
+            throw new IllegalStateException("market.correlation.matrix needs " + TYPES * TYPES +
+                    " values and market.correlation.within-type " + TYPES + ", one per asset type pair and type");
+        }
+        
+        cholesky = factor(matrix, TYPES);
+        factorWeight = new double[TYPES];
+        noiseWeight = new double[TYPES];
+        for (int type = 0; type < TYPES; type++) {
+            if (withinType[type] < 0 || withinType[type] > 1) {
+                throw new IllegalStateException("market.correlation.within-type values must be between 0 and 1");
+            }
+            factorWeight[type] = Math.sqrt(withinType[type]);
+            noiseWeight[type] = Math.sqrt(1 - withinType[type]);
+        }
+        log.info("Asset types correlated with within-type correlation {}", Arrays.toString(withinType));
+    }
+    
+    /**
+     * Number of factors, one per asset type
+     */
+    public int factorCount() {
+        return TYPES;
+    }
+    
+    /**
+     * Draw correlated type factors: the Cholesky factor times independent standard normals
+     *
+     * @param random Stream to draw from
+     * @param factors Receives the factors, from offset on
+     * @param offset Index of the first factor
+     */
+    public void drawFactors(SplittableRandom random, double[] factors, int offset) {
+        for (int i = 0; i < TYPES; i++) {
+            factors[offset + i] = random.nextGaussian();
+        }
+        
+        // In place, last row first: a row only reads the normals at and before its own index
+        for (int row = TYPES - 1; row >= 0; row--) {
+            double sum = 0;
+            int base = row * TYPES;
+            for (int column = 0; column <= row; column++) {
+                sum += cholesky[base + column] * factors[offset + column];
+            }
+            factors[offset + row] = sum;
+        }
+    }
+    
+    /**
+     * Draw the type factors of one tick. Every caller asking for the same
+     * seed and time gets the same factors, so partitions that update
+     * their symbols separately still move together.
+     *
+     * @param seed Seed of the simulation
+     * @param epochNanos Time of the tick
+     * @param factors Receives the factors
+     */
+    public void drawFactors(long seed, long epochNanos, double[] factors) {
+        drawFactors(new SplittableRandom(seed ^ epochNanos * 0x9E3779B97F4A7C15L), factors, 0);
+    }
+    
+    /**
+     * Standard normal shock of one asset
+     *
+     * @param type Asset type
+     * @param factors Type factors of the tick or scenario
+     * @param offset Index of the first factor
+     * @param noise Independent standard normal of the asset
+     */
+    public double shock(Asset.AssetType type, double[] factors, int offset, double noise) {
+        int index = type.ordinal();
+        return factorWeight[index] * factors[offset + index] + noiseWeight[index] * noise;
+    }
+    
+    /**
+     * Lower-triangular L with L × Lᵀ equal to a symmetric positive-definite matrix
+     */
+    private static double[] factor(double[] a, int n) {
+        double[] l = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                if (a[i * n + j] != a[j * n + i] || (i == j && a[i * n + i] != 1)) {
+                    throw new IllegalStateException("market.correlation.matrix must be symmetric with a unit diagonal");
+                }
+                
+                double sum = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i * n + k] * l[j * n + k];
+                }
+                
+                if (i == j) {
+                    if (sum <= 0) {
+                        throw new IllegalStateException("market.correlation.matrix must be positive definite");
+                    }
+                    l[i * n + i] = Math.sqrt(sum);
+                } else {
+                    l[i * n + j] = sum / l[j * n + j];
+                }
+            }
+        }
+        return l;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.riskengine.risksystem.market.simulation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time as seen by the market simulation.
+ * <p>
+ * By default this is the system clock. In virtual mode time starts at a
+ * configured instant and each partition's updates fall exactly one tick
+ * interval apart, however long they take or however many are skipped, so
+ * a seeded run stamps the same prices with the same times on any machine.
+ * The clock reads as the latest time any partition has reached, and
+ * replay sets it to the time of each recorded batch. On the system clock,
+ * partitions asked for an update together share one time, so they draw
+ * the same correlated factors.
+ */
+@Component
+@Slf4j
+public class MarketClock {
+    /** Whether time is virtual rather than taken from the system clock */
+    @Value("${market.simulation.clock.virtual:false}")
+    private boolean virtual;
+    
+    /** Virtual time at startup, ISO-8601 */
+    @Value("${market.simulation.clock.start:2024-01-01T00:00:00Z}")
+    private String start;
+    
+    /** Virtual time that passes per price update */
+    @Value("${market.simulation.tick-interval-ms:1000}")
+    private long tickIntervalMs;
+    
+    /** Virtual time at startup, epoch nanoseconds */
+    private long startNanos;
+    
+    /** Current virtual time, epoch nanoseconds */
+    private final AtomicLong virtualNanos = new AtomicLong();
+    
+    /** System time of the latest round of updates, epoch nanoseconds */
+    private final AtomicLong roundNanos = new AtomicLong(Long.MIN_VALUE / 2);
+    
+    @PostConstruct
+    public void init() {
+        startNanos = PriceHistory.toEpochNanos(Instant.parse(start));
+        virtualNanos.set(startNanos);
+        if (virtual) {
+            log.info("Market clock is virtual, starting at {} and advancing {} ms per update", start, tickIntervalMs);
+        }
+    }
+    
+    public boolean isVirtual() {
+        return virtual;
+    }
+    
+    /**
+     * Current time
+     */
+    public Instant now() {
+        return virtual ? Instant.ofEpochSecond(0, virtualNanos.get()) : Instant.now();
+    }
+    
+    /**
+     * Current time in the system time zone, for stamping orders and fills
+     */
+    public LocalDateTime localNow() {
+        return LocalDateTime.ofInstant(now(), ZoneId.systemDefault());
+    }
+    
+    /**
+     * Time of a partition's next price update
+     *
+     * @param previous Time of the partition's previous update, or null before its first
+     * @return One tick interval after the previous update in virtual mode, otherwise
+     *         the system time of the current round of updates
+     */
+    public Instant next(Instant previous) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(tickIntervalMs);
+        if (!virtual) {
+            // Requests within half an interval of the round's first belong to the same round
+            long now = PriceHistory.toEpochNanos(Instant.now());
+            long round = roundNanos.get();
+            if (now - round >= interval / 2) {
+                // Open a new round, unless a concurrent request just did
+                round = roundNanos.compareAndSet(round, now) ? now : roundNanos.get();
+            }
+            return Instant.ofEpochSecond(0, round);
+        }
+        long nanos = (previous != null ? PriceHistory.toEpochNanos(previous) : startNanos) + interval;
+        virtualNanos.accumulateAndGet(nanos, Math::max);
+        return Instant.ofEpochSecond(0, nanos);
+    }
+    
+    /**
+     * Move virtual time to an instant, such as that of a replayed batch;
+     * no effect on the system clock
+     */
+    public void set(Instant instant) {
+        virtualNanos.set(PriceHistory.toEpochNanos(instant));
+    }
+}
\ No newline at end of file
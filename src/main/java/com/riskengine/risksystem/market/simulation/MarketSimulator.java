@@ -2,33 +2,252 @@ package com.riskengine.risksystem.market.simulation;
 
 import com.riskengine.risksystem.market.model.Asset;
 import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.BarResolution;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.SimulationStats;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.TickRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
- * Simulates a financial market with price movements and order matching
+ * Simulates a financial market with price movements and order matching.
+ * Price movements are drawn in floating point and rounded to each asset's
+ * tick size before they are published as fixed-point prices.
+ * Prices, history and assets are held in arrays indexed by
+ * {@link SymbolRegistry} id; symbols are registered as assets are added.
+ * Every batch of price changes advances a sequence number, and readers that
+ * need all prices at once share an immutable {@link PriceSnapshot} taken at
+ * most once per sequence.
+ * <p>
+ * Price movements of different assets are correlated through a common
+ * factor per asset type ({@link CorrelationModel}).
+ * <p>
+ * Symbols are updated in partitions, one per matching engine shard, each on
+ * its own thread with its own {@link SplittableRandom} split from a common
+ * root, so partitions never contend on a shared generator. A partition
+ * stores all of its new prices before it publishes any of them, and the
+ * simulator reports how many prices per second it reaches.
+ * <p>
+ * With a fixed seed, a virtual {@link MarketClock} and a fixed number of
+ * shards, every run generates the same prices at the same times. Batches
+ * can be recorded by the {@link TickRecorder} and fed back through
+ * {@link #applyPrices} in place of generated ones.
  */
 @Service
 @Slf4j
 public class MarketSimulator {
-    /** Current prices for all assets */
-    private final Map<String, AssetPrice> currentPrices = new ConcurrentHashMap<>();
+    @Autowired
+    private SymbolRegistry symbolRegistry;
     
-    /** Historical price data */
-    private final Map<String, List<AssetPrice>> priceHistory = new ConcurrentHashMap<>();
+    @Autowired
+    private MarketClock marketClock;
     
-    /** Available assets in the market */
-    private final Map<String, Asset> availableAssets = new ConcurrentHashMap<>();
+    @Autowired
+    private TickRecorder tickRecorder;
     
-    /** Random number generator for price movements */
-    private final Random random = new Random();
+    @Autowired
+    private CorrelationModel correlationModel;
     
-    /** Maximum history length to maintain */
-    private static final int MAX_HISTORY_SIZE = 1000;
+    /** Seed of every random stream; 0 draws a fresh seed, which is logged so the run can be repeated */
+    @Value("${market.simulation.seed:0}")
+    private long seed;
+    
+    /** Current prices for all assets, by symbol id */
+    private AtomicReferenceArray<AssetPrice> currentPrices;
+    
+    /** Historical price data, by symbol id */
+    private AtomicReferenceArray<PriceHistory> priceHistory;
+    
+    /** OHLCV bars at every resolution, by symbol id, then resolution ordinal */
+    private AtomicReferenceArray<BarHistory[]> priceBars;
+    
+    /** Bars kept at each resolution, in {@link BarResolution} order */
+    @Value("${market.bars.retention:3600,1440,2016,720,365}")
+    private int[] barRetention;
+    
+    /** Most memory the bars of all symbols may take once full; retention is scaled down to fit */
+    @Value("${market.bars.memory-budget-mb:1024}")
+    private long barMemoryBudgetMb;
+    
+    /** Available assets in the market, by symbol id */
+    private AtomicReferenceArray<Asset> availableAssets;
+    
+    /** Number of price batches published; advanced after the prices are written */
+    private final AtomicLong priceSequence = new AtomicLong();
+    
+    /** Latest snapshot of all prices; replaced when a reader finds it behind priceSequence */
+    private volatile PriceSnapshot priceSnapshot = PriceSnapshot.EMPTY;
+    
+    /** Symbol ids of the available assets, in the order they were added */
+    private volatile int[] assetIds = new int[0];
+    
+    /** Random number generator for initial prices */
+    private Random random;
+    
+    /** Root of the per-partition random streams */
+    private SplittableRandom rootRandom;
+    
+    /** Seed in effect, from which every tick's correlated factors are drawn */
+    private long effectiveSeed;
+    
+    /** Partition used by {@link #updateMarketPrices()} */
+    private Partition serialPartition;
+    
+    /** Number of partitions handed out to the matching engine */
+    private int partitionCount;
+    
+    /** Number of points kept in each symbol's price history */
+    @Value("${market.history.size:1000}")
+    private int historySize;
+    
+    /** Prices generated since startup */
+    private final LongAdder simulatedTicks = new LongAdder();
+    
+    /** Time partitions have spent generating prices since startup */
+    private final LongAdder generationNanos = new LongAdder();
+    
+    /** Price updates dropped since startup because a partition was busy */
+    private final LongAdder skippedUpdates = new LongAdder();
+    
+    /** Counters at the end of the last reporting window */
+    private long lastReportNanos;
+    
+    private long lastTicks;
+    
+    private long lastGenerationNanos;
+    
+    private long lastSkipped;
+    
+    /** Throughput over the latest reporting window, or null before the first report */
+    private volatile SimulationStats latestStats;
+    
+    /** Net price after the 1% fee */
+    private static final long NET_PRICE_FACTOR = FixedPoint.of(0.99);
+    
+    /** Initial low and high relative to the initial price */
+    private static final long INITIAL_LOW_FACTOR = FixedPoint.of(0.98);
+    
+    private static final long INITIAL_HIGH_FACTOR = FixedPoint.of(1.02);
+    
+    /** Subscribers notified synchronously of every price change */
+    private final List<Consumer<AssetPrice>> tickListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Size the per-symbol arrays to the registry's capacity
+     */
+    @PostConstruct
+    public void init() {
+        int capacity = symbolRegistry.getCapacity();
+        currentPrices = new AtomicReferenceArray<>(capacity);
+        priceHistory = new AtomicReferenceArray<>(capacity);
+        priceBars = new AtomicReferenceArray<>(capacity);
+        availableAssets = new AtomicReferenceArray<>(capacity);
+        
+        effectiveSeed = seed != 0 ? seed : new SplittableRandom().nextLong();
+        random = new Random(effectiveSeed);
+        rootRandom = new SplittableRandom(effectiveSeed);
+        log.info("Market simulation seed {}", effectiveSeed);
+        serialPartition = newPartition(rootRandom.split());
+        lastReportNanos = System.nanoTime();
+        
+        if (barRetention.length != BarResolution.values().length) {
+            throw new IllegalStateException("market.bars.retention needs one value per resolution, " + 
+                    BarResolution.values().length + " in all");
+        }
+    }
+    
+    /**
+     * Register a listener that is called with each new price as soon as it is published.
+     * Listeners run on the thread that updates prices, so they should be quick.
+     * 
+     * @param listener Price tick consumer
+     */
+    public void addTickListener(Consumer<AssetPrice> listener) {
+        tickListeners.add(listener);
+    }
+    
+    /**
+     * One partition's share of the price updates: its own random stream and
+     * scratch space, used only by the thread that updates its symbols
+     */
+    public static final class Partition {
+        private final SplittableRandom random;
+        
+        /** Set from the moment an update is requested until it has run */
+        private final AtomicBoolean pending = new AtomicBoolean();
+        
+        /** Time of the requested update */
+        private volatile Instant time;
+        
+        /** New prices of the current batch, all stored before any is published */
+        private AssetPrice[] batch = new AssetPrice[16];
+        
+        /** Whether each price of the batch differs from the one it replaces */
+        private boolean[] moved = new boolean[16];
+        
+        /** Correlated asset type factors of the current update */
+        private final double[] factors;
+        
+        private Partition(SplittableRandom random, int factorCount) {
+            this.random = random;
+            this.factors = new double[factorCount];
+        }
+        
+        private void ensureCapacity(int count) {
+            if (batch.length < count) {
+                batch = new AssetPrice[count];
+                moved = new boolean[count];
+            }
+        }
+    }
+    
+    /**
+     * Create a partition with its own random stream.
+     * The matching engine creates one per shard.
+     * 
+     * @return New partition
+     */
+    public synchronized Partition newPartition() {
+        partitionCount++;
+        return newPartition(rootRandom.split());
+    }
+    
+    private Partition newPartition(SplittableRandom random) {
+        return new Partition(random, correlationModel.factorCount());
+    }
+    
+    /**
+     * Claim a partition for its next price update, unless the previous one
+     * has not run yet; updates requested faster than a partition can run
+     * them are dropped rather than queued
+     * 
+     * @param partition Partition to update
+     * @return Whether the update should be sent to the partition's thread
+     */
+    public boolean requestUpdate(Partition partition) {
+        if (partition.pending.compareAndSet(false, true)) {
+            partition.time = marketClock.next(partition.time);
+            return true;
+        }
+        skippedUpdates.increment();
+        return false;
+    }
     
     /**
      * Initialize the market with a set of assets
@@ -38,26 +257,104 @@ public class MarketSimulator {
     public void initializeMarket(List<Asset> assets) {
         log.info("Initializing market with {} assets", assets.size());
         
+        int[] ids = Arrays.copyOf(assetIds, assetIds.length + assets.size());
+        int idCount = assetIds.length;
+        int[] retention = barRetentionFor(ids.length);
+        
+        // Reject symbols a recording could not hold before any price is stored
+        if (tickRecorder.isEnabled()) {
+            for (Asset asset : assets) {
+                if (!TickRecorder.isRecordable(asset.getSymbol())) {
+                    throw new IllegalArgumentException("Symbol too long to record: " + asset.getSymbol());
+                }
+            }
+        }
         for (Asset asset : assets) {
-            availableAssets.put(asset.getSymbol(), asset);
+            int symbolId = symbolRegistry.register(asset.getSymbol());
+            if (availableAssets.getAndSet(symbolId, asset) == null) {
+                ids[idCount++] = symbolId;
+            }
             
-            // Set initial price
-            double initialPrice = generateInitialPrice(asset);
-            AssetPrice price = new AssetPrice(
-                asset.getSymbol(),
-                initialPrice,
-                initialPrice * 0.99, // Net price with 1% fee
-                initialPrice * 0.98, // Low
-                initialPrice * 1.02, // High
-                random.nextDouble() * 1000000, // Volume
-                LocalDateTime.now()
-            );
+            // Keep a price recovered from the journal, otherwise set an initial price
+            AssetPrice price = currentPrices.get(symbolId);
+            if (price == null) {
+                long initialPrice = toTick(asset, generateInitialPrice(asset));
+                price = new AssetPrice(
+                    asset.getSymbol(),
+                    symbolId,
+                    initialPrice,
+                    netPrice(initialPrice),
+                    FixedPoint.multiply(initialPrice, INITIAL_LOW_FACTOR),
+                    FixedPoint.multiply(initialPrice, INITIAL_HIGH_FACTOR),
+                    FixedPoint.of(random.nextDouble() * 1000000), // Volume
+                    LocalDateTime.ofInstant(marketClock.now(), ZoneId.systemDefault())
+                );
+                currentPrices.set(symbolId, price);
+            }
             
-            currentPrices.put(asset.getSymbol(), price);
-            priceHistory.put(asset.getSymbol(), new ArrayList<>(List.of(price)));
+            PriceHistory history = new PriceHistory(historySize);
+            history.append(price);
+            priceHistory.set(symbolId, history);
             
-            log.info("Asset {} initialized at price {}", asset.getSymbol(), initialPrice);
+            BarHistory[] bars = new BarHistory[barRetention.length];
+            long epochNanos = PriceHistory.toEpochNanos(price.getTimestamp());
+            for (BarResolution resolution : BarResolution.values()) {
+                int index = resolution.ordinal();
+                bars[index] = new BarHistory(resolution.getDuration().toNanos(), retention[index]);
+                bars[index].add(epochNanos, price.getPrice(), 0);
+            }
+            priceBars.set(symbolId, bars);
+            
+            log.debug("Asset {} initialized at price {}", asset.getSymbol(), 
+                    FixedPoint.toBigDecimal(price.getPrice()));
+        }
+        assetIds = Arrays.copyOf(ids, idCount);
+        priceSequence.incrementAndGet();
+    }
+    
+    /**
+     * Bar retention per resolution for a market of the given size, scaled
+     * down evenly when the configured retention would not fit the memory
+     * budget once every symbol's bars are full
+     */
+    private int[] barRetentionFor(int symbols) {
+        long barsPerSymbol = Arrays.stream(barRetention).asLongStream().sum();
+        long needed = symbols * barsPerSymbol * BarHistory.BYTES_PER_BAR;
+        long budget = barMemoryBudgetMb << 20;
+        if (needed <= budget) {
+            return barRetention;
+        }
+        
+        double scale = (double) budget / needed;
+        int[] scaled = new int[barRetention.length];
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = (int) Math.max(1, barRetention[i] * scale);
         }
+        log.warn("Bars of {} symbols would take {} MB at the configured retention; keeping {} bars " +
+                "per resolution to stay within {} MB", symbols, needed >> 20, Arrays.toString(scaled),
+                barMemoryBudgetMb);
+        return scaled;
+    }
+    
+    /**
+     * Set a symbol's current price without publishing a tick.
+     * Used when rebuilding state at startup, before the market is initialized.
+     * 
+     * @param price Recovered price
+     * @return The price stamped with its symbol id
+     */
+    public AssetPrice restorePrice(AssetPrice price) {
+        AssetPrice stamped = price.withSymbolId(symbolRegistry.register(price.getSymbol()));
+        currentPrices.set(stamped.getSymbolId(), stamped);
+        priceSequence.incrementAndGet();
+        return stamped;
+    }
+    
+    /**
+     * Round a simulated price to the asset's tick size, never below one tick
+     */
+    private static long toTick(Asset asset, double price) {
+        return Math.max(asset.getTickSize(), FixedPoint.round(FixedPoint.of(price), asset.getTickSize()));
     }
     
     /**
@@ -74,6 +371,32 @@ public class MarketSimulator {
         };
     }
     
+    /**
+     * Get the definition of a specific asset
+     * 
+     * @param symbol Asset symbol
+     * @return Asset with its tick and lot size
+     * @throws IllegalArgumentException if the asset doesn't exist
+     */
+    public Asset getAsset(String symbol) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        Asset asset = symbolId >= 0 ? availableAssets.get(symbolId) : null;
+        if (asset == null) {
+            throw new IllegalArgumentException("Asset not found: " + symbol);
+        }
+        return asset;
+    }
+    
+    /**
+     * Get the definition of an asset by symbol id
+     * 
+     * @param symbolId Symbol id
+     * @return Asset, or null if no asset has this id
+     */
+    public Asset getAsset(int symbolId) {
+        return availableAssets.get(symbolId);
+    }
+    
     /**
      * Get current price for a specific asset
      * 
@@ -82,91 +405,261 @@ public class MarketSimulator {
      * @throws IllegalArgumentException if the asset doesn't exist
      */
     public AssetPrice getCurrentPrice(String symbol) {
-        if (!currentPrices.containsKey(symbol)) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        AssetPrice price = symbolId >= 0 ? currentPrices.get(symbolId) : null;
+        if (price == null) {
             throw new IllegalArgumentException("Asset not found: " + symbol);
         }
-        return currentPrices.get(symbol);
+        return price;
+    }
+    
+    /**
+     * Get current price by symbol id
+     * 
+     * @param symbolId Symbol id
+     * @return Current price data, or null if the symbol has no price
+     */
+    public AssetPrice getCurrentPrice(int symbolId) {
+        return currentPrices.get(symbolId);
     }
     
     /**
-     * Get all current market prices
+     * Get all current market prices as one immutable snapshot.
+     * Readers share the latest snapshot until prices change again, so
+     * repeated calls between price updates allocate nothing.
      * 
-     * @return Map of all current prices by symbol
+     * @return Snapshot at least as new as every price batch published before the call
      */
-    public Map<String, AssetPrice> getAllPrices() {
-        return new HashMap<>(currentPrices);
+    public PriceSnapshot getPriceSnapshot() {
+        long sequence = priceSequence.get();
+        PriceSnapshot snapshot = priceSnapshot;
+        if (snapshot.getSequence() >= sequence) {
+            return snapshot;
+        }
+        
+        // One reader takes the snapshot while the others wait for it
+        synchronized (priceSequence) {
+            sequence = priceSequence.get();
+            snapshot = priceSnapshot;
+            if (snapshot.getSequence() >= sequence) {
+                return snapshot;
+            }
+            
+            // Prices are read after the sequence, so none older than it is included
+            AssetPrice[] prices = new AssetPrice[symbolRegistry.size()];
+            for (int symbolId = 0; symbolId < prices.length; symbolId++) {
+                prices[symbolId] = currentPrices.get(symbolId);
+            }
+            snapshot = new PriceSnapshot(sequence, prices);
+            priceSnapshot = snapshot;
+            return snapshot;
+        }
     }
     
     /**
      * Get price history for a specific asset
      * 
      * @param symbol Asset symbol
-     * @return List of historical prices
+     * @return View of the historical prices, oldest first
      * @throws IllegalArgumentException if the asset doesn't exist
      */
-    public List<AssetPrice> getPriceHistory(String symbol) {
-        if (!priceHistory.containsKey(symbol)) {
+    public PriceHistory.View getPriceHistory(String symbol) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        PriceHistory history = symbolId >= 0 ? priceHistory.get(symbolId) : null;
+        if (history == null) {
             throw new IllegalArgumentException("Asset not found: " + symbol);
         }
-        return new ArrayList<>(priceHistory.get(symbol));
+        return history.view();
+    }
+    
+    /**
+     * Get OHLCV bars for a specific asset
+     * 
+     * @param symbol Asset symbol
+     * @param resolution Bar resolution
+     * @param from Earliest bar open time, inclusive, or null for no limit
+     * @param to Latest bar open time, exclusive, or null for no limit
+     * @return View of the bars, oldest first
+     * @throws IllegalArgumentException if the asset doesn't exist
+     */
+    public BarHistory.View getPriceBars(String symbol, BarResolution resolution, Instant from, Instant to) {
+        int symbolId = symbolRegistry.idOf(symbol);
+        BarHistory[] bars = symbolId >= 0 ? priceBars.get(symbolId) : null;
+        if (bars == null) {
+            throw new IllegalArgumentException("Asset not found: " + symbol);
+        }
+        return bars[resolution.ordinal()].view(
+                from != null ? PriceHistory.toEpochNanos(from) : Long.MIN_VALUE,
+                to != null ? PriceHistory.toEpochNanos(to) : Long.MAX_VALUE);
+    }
+    
+    /**
+     * Get price history by symbol id
+     * 
+     * @param symbolId Symbol id
+     * @return View of the historical prices, or null if the symbol has none
+     */
+    public PriceHistory.View getPriceHistory(int symbolId) {
+        PriceHistory history = priceHistory.get(symbolId);
+        return history != null ? history.view() : null;
     }
     
     /**
      * Update all market prices - simulates market movements
      * This method would typically be called on a schedule
      */
-    public void updateMarketPrices() {
-        LocalDateTime now = LocalDateTime.now();
+    public synchronized void updateMarketPrices() {
+        serialPartition.pending.set(true);
+        serialPartition.time = marketClock.next(serialPartition.time);
+        updateMarketPrices(assetIds, serialPartition);
+        log.info("Market prices updated at {}", LocalDateTime.now());
+    }
+    
+    /**
+     * Update prices for a subset of assets and release the partition for its
+     * next update. Used by matching engine shards, each of which owns a
+     * disjoint set of symbols and one partition. Every new price is stored
+     * before the moved ones are published to tick listeners.
+     * 
+     * @param symbolIds Ids of the symbols to move
+     * @param partition Partition owned by the calling thread, claimed by {@link #requestUpdate}
+     */
+    public void updateMarketPrices(int[] symbolIds, Partition partition) {
+        long started = System.nanoTime();
+        try {
+            partition.ensureCapacity(symbolIds.length);
+            generatePrices(symbolIds, partition);
+            applyBatch(partition, symbolIds.length, PriceHistory.toEpochNanos(partition.time));
+        } finally {
+            generationNanos.add(System.nanoTime() - started);
+            partition.pending.set(false);
+        }
+    }
+    
+    /**
+     * Store and publish recorded prices in place of generated ones, as one batch.
+     * Must run on the thread that owns the prices' symbols.
+     * 
+     * @param prices Prices stamped with the ids of available assets
+     * @param epochNanos Time of the batch
+     * @param partition Partition owned by the calling thread
+     */
+    public void applyPrices(List<AssetPrice> prices, long epochNanos, Partition partition) {
+        long started = System.nanoTime();
+        try {
+            partition.ensureCapacity(prices.size());
+            for (int i = 0; i < prices.size(); i++) {
+                partition.batch[i] = prices.get(i);
+            }
+            applyBatch(partition, prices.size(), epochNanos);
+        } finally {
+            generationNanos.add(System.nanoTime() - started);
+        }
+    }
+    
+    /**
+     * Draw the next price of every symbol into the partition's batch
+     */
+    private void generatePrices(int[] symbolIds, Partition partition) {
+        SplittableRandom random = partition.random;
+        AssetPrice[] batch = partition.batch;
+        LocalDateTime now = LocalDateTime.ofInstant(partition.time, ZoneId.systemDefault());
+        
+        // Every partition draws the same factors for the same time
+        double[] factors = partition.factors;
+        correlationModel.drawFactors(effectiveSeed, PriceHistory.toEpochNanos(partition.time), factors);
         
-        for (String symbol : availableAssets.keySet()) {
-            Asset asset = availableAssets.get(symbol);
-            AssetPrice currentPrice = currentPrices.get(symbol);
+        for (int i = 0; i < symbolIds.length; i++) {
+            int symbolId = symbolIds[i];
+            Asset asset = availableAssets.get(symbolId);
+            AssetPrice currentPrice = currentPrices.get(symbolId);
+            String symbol = asset.getSymbol();
             
             // Generate price movement based on asset volatility
-            double priceMovement = generatePriceMovement(asset, currentPrice.getPrice());
-            double newPrice = Math.max(0.01, currentPrice.getPrice() + priceMovement);
+            double price = FixedPoint.toDouble(currentPrice.getPrice());
+            double priceMovement = generatePriceMovement(asset, price, factors, random);
+            long newPrice = toTick(asset, price + priceMovement);
             
             // Update high/low if needed
-            double newHigh = Math.max(currentPrice.getHigh(), newPrice);
-            double newLow = Math.min(currentPrice.getLow(), newPrice);
+            long newHigh = Math.max(currentPrice.getHigh(), newPrice);
+            long newLow = Math.min(currentPrice.getLow(), newPrice);
             
             // Generate new volume
-            double newVolume = currentPrice.getVolume() * (0.8 + random.nextDouble() * 0.4);
+            long newVolume = FixedPoint.of(
+                FixedPoint.toDouble(currentPrice.getVolume()) * (0.8 + random.nextDouble() * 0.4));
             
             // Create new price object
-            AssetPrice newPriceObj = new AssetPrice(
+            batch[i] = new AssetPrice(
                 symbol,
+                symbolId,
                 newPrice,
-                newPrice * 0.99, // 1% fee
+                netPrice(newPrice),
                 newLow,
                 newHigh,
                 newVolume,
                 now
             );
+        }
+    }
+    
+    /**
+     * Store a batch of new prices, record it, then publish the prices that moved
+     */
+    private void applyBatch(Partition partition, int count, long epochNanos) {
+        AssetPrice[] batch = partition.batch;
+        boolean[] moved = partition.moved;
+        
+        for (int i = 0; i < count; i++) {
+            AssetPrice price = batch[i];
+            int symbolId = price.getSymbolId();
             
             // Update current price
-            currentPrices.put(symbol, newPriceObj);
-            
-            // Update history
-            List<AssetPrice> history = priceHistory.get(symbol);
-            history.add(newPriceObj);
+            AssetPrice previous = currentPrices.getAndSet(symbolId, price);
             
-            // Trim history if needed
-            if (history.size() > MAX_HISTORY_SIZE) {
-                history.remove(0);
+            // Update history; the oldest point is overwritten once it is full
+            priceHistory.get(symbolId).append(epochNanos, price.getPrice(), price.getLow(), price.getHigh(),
+                    price.getVolume());
+            // Prices carry the volume of a rolling window; a bar sums what
+            // traded since the previous tick, i.e. any increase of that level
+            long traded = previous != null ? Math.max(0, price.getVolume() - previous.getVolume()) : 0;
+            for (BarHistory bars : priceBars.get(symbolId)) {
+                bars.add(epochNanos, price.getPrice(), traded);
             }
             
-            log.debug("Updated price for {}: {} -> {}", symbol, 
-                     currentPrice.getPrice(), newPrice);
+            // Only symbols whose price actually moved need to be re-matched
+            moved[i] = previous == null || previous.getPrice() != price.getPrice();
         }
+        priceSequence.incrementAndGet();
+        simulatedTicks.add(count);
+        tickRecorder.record(epochNanos, batch, count);
         
-        log.info("Market prices updated at {}", now);
+        for (int i = 0; i < count; i++) {
+            if (moved[i]) {
+                publishTick(batch[i]);
+            }
+            batch[i] = null;
+        }
+    }
+    
+    /**
+     * Notify tick listeners of a new price, isolating them from each other
+     */
+    private void publishTick(AssetPrice price) {
+        for (Consumer<AssetPrice> listener : tickListeners) {
+            try {
+                listener.accept(price);
+            } catch (Exception e) {
+                log.error("Tick listener failed for {}", price.getSymbol(), e);
+            }
+        }
     }
     
     /**
-     * Generate a realistic price movement based on asset volatility
+     * Generate a realistic price movement based on asset volatility,
+     * correlated with other assets through the tick's type factors
      */
-    private double generatePriceMovement(Asset asset, double currentPrice) {
+    private double generatePriceMovement(Asset asset, double currentPrice, double[] factors,
+                                         SplittableRandom random) {
         // Base volatility from asset definition
         double baseVolatility = asset.getVolatility();
         
@@ -176,17 +669,94 @@ public class MarketSimulator {
         // Combine factors
         double effectiveVolatility = baseVolatility * marketFactor;
         
-        // Generate random movement using normal distribution
-        double randomFactor = random.nextGaussian();
+        // Generate random movement: the type's common factor plus the asset's own noise
+        double randomFactor = correlationModel.shock(asset.getType(), factors, 0, random.nextGaussian());
         
         // Scale movement by price and volatility
         return currentPrice * effectiveVolatility * randomFactor;
     }
     
+    /**
+     * Measure throughput since the previous report, log it and keep it as the latest stats
+     * 
+     * @return Throughput over the window that just ended
+     */
+    public synchronized SimulationStats reportThroughput() {
+        long now = System.nanoTime();
+        long ticks = simulatedTicks.sum();
+        long busyNanos = generationNanos.sum();
+        long skipped = skippedUpdates.sum();
+        
+        long windowNanos = Math.max(1, now - lastReportNanos);
+        long windowTicks = ticks - lastTicks;
+        long windowBusyNanos = busyNanos - lastGenerationNanos;
+        SimulationStats stats = new SimulationStats(
+            assetIds.length,
+            partitionCount,
+            windowTicks,
+            windowTicks * 1e9 / windowNanos,
+            windowBusyNanos > 0 ? windowTicks * 1e9 / windowBusyNanos : 0,
+            skipped - lastSkipped,
+            TimeUnit.NANOSECONDS.toMillis(windowNanos),
+            LocalDateTime.now()
+        );
+        
+        lastReportNanos = now;
+        lastTicks = ticks;
+        lastGenerationNanos = busyNanos;
+        lastSkipped = skipped;
+        latestStats = stats;
+        
+        if (windowTicks > 0) {
+            log.info("Simulated {} ticks/s over {} assets in {} partitions ({} ticks per busy second each, {} updates skipped)",
+                    Math.round(stats.getTicksPerSecond()), stats.getAssets(), stats.getPartitions(),
+                    Math.round(stats.getTicksPerBusySecond()), stats.getSkippedUpdates());
+        }
+        return stats;
+    }
+    
+    /**
+     * Throughput over the latest reporting window
+     * 
+     * @return Stats, or null before the first report
+     */
+    public SimulationStats getSimulationStats() {
+        return latestStats;
+    }
+    
+    /**
+     * Price net of the 1% fee
+     *
+     * @param price Price, fixed-point
+     * @return Net price, fixed-point
+     */
+    public static long netPrice(long price) {
+        return FixedPoint.multiply(price, NET_PRICE_FACTOR);
+    }
+    
+    /**
+     * Number of assets in the market
+     */
+    public int getAssetCount() {
+        return assetIds.length;
+    }
+    
+    /**
+     * Symbol ids of all available assets
+     */
+    public int[] getAssetIds() {
+        return assetIds.clone();
+    }
+    
     /**
      * Get all available assets in the market
      */
     public List<Asset> getAvailableAssets() {
-        return new ArrayList<>(availableAssets.values());
+        int[] ids = assetIds;
+        List<Asset> assets = new ArrayList<>(ids.length);
+        for (int symbolId : ids) {
+            assets.add(availableAssets.get(symbolId));
+        }
+        return assets;
     }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.riskengine.risksystem.market.simulation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.FixedPoint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Recent prices of one symbol in a fixed-capacity circular buffer.
+ * <p>
+ * Each point is stored across five primitive columns (time in epoch
+ * nanoseconds, price, low, high and volume) rather than as an object, and
+ * once the buffer is full each new point overwrites the oldest, so
+ * appending never shifts or allocates.
+ * <p>
+ * Points are appended only by the engine thread that owns the symbol and
+ * may be read from any thread through a {@link View}, which reads the
+ * columns in place. A writer announces which slot it is about to
+ * overwrite before touching it, so a reader can tell after reading a point
+ * whether it was overwritten in the meantime and drop it, as StampedLock
+ * readers validate optimistic reads.
+ */
+public class PriceHistory {
+    private final int capacity;
+    
+    private final long[] epochNanos;
+    
+    private final long[] prices;
+    
+    private final long[] lows;
+    
+    private final long[] highs;
+    
+    private final long[] volumes;
+    
+    /** Number of points ever appended; the newest is in slot (count - 1) % capacity */
+    private volatile long count;
+    
+    /** Number of points appended or being appended; only the slot of point claimed - 1 may be mid-write */
+    private volatile long claimed;
+    
+    /**
+     * Visits the points of a view, oldest first
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long epochNanos, long price, long low, long high, long volume);
+    }
+    
+    /**
+     * @param capacity Most points kept; older points are overwritten
+     */
+    public PriceHistory(int capacity) {
+        this.capacity = capacity;
+        epochNanos = new long[capacity];
+        prices = new long[capacity];
+        lows = new long[capacity];
+        highs = new long[capacity];
+        volumes = new long[capacity];
+    }
+    
+    /**
+     * Append a point, overwriting the oldest if the buffer is full.
+     * Must only be called by the thread that owns the symbol.
+     */
+    public void append(long timestamp, long price, long low, long high, long volume) {
+        long sequence = count;
+        claimed = sequence + 1;
+        // Keep the column writes below from being seen before the claim
+        VarHandle.storeStoreFence();
+        
+        int slot = (int) (sequence % capacity);
+        epochNanos[slot] = timestamp;
+        prices[slot] = price;
+        lows[slot] = low;
+        highs[slot] = high;
+        volumes[slot] = volume;
+        
+        count = sequence + 1;
+    }
+    
+    /**
+     * Append a price as a point
+     */
+    public void append(AssetPrice price) {
+        append(toEpochNanos(price.getTimestamp()), price.getPrice(), price.getLow(), price.getHigh(),
+                price.getVolume());
+    }
+    
+    /**
+     * Points currently held, read in place
+     */
+    public View view() {
+        long end = count;
+        return new View(Math.max(0, end - capacity), end);
+    }
+    
+    /**
+     * Epoch nanoseconds of a local time in the system time zone
+     */
+    public static long toEpochNanos(LocalDateTime timestamp) {
+        return toEpochNanos(timestamp.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    /**
+     * Epoch nanoseconds of an instant
+     */
+    public static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+    
+    /**
+     * Local time in the system time zone of epoch nanoseconds
+     */
+    public static LocalDateTime toLocalDateTime(long epochNanos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), ZoneId.systemDefault());
+    }
+    
+    /**
+     * The points that were held when the view was taken. Later appends are
+     * not visible, and points overwritten by them are skipped.
+     */
+    @JsonSerialize(using = ViewSerializer.class)
+    public final class View {
+        /** Sequence of the oldest point in the view */
+        private final long start;
+        
+        /** Sequence after the newest point in the view */
+        private final long end;
+        
+        private View(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        /**
+         * Number of points when the view was taken
+         */
+        public int size() {
+            return (int) (end - start);
+        }
+        
+        /**
+         * Visit every point that has not been overwritten, oldest first
+         */
+        public void forEach(Visitor visitor) {
+            for (long sequence = start; sequence < end; sequence++) {
+                int slot = (int) (sequence % capacity);
+                long timestamp = epochNanos[slot];
+                long price = prices[slot];
+                long low = lows[slot];
+                long high = highs[slot];
+                long volume = volumes[slot];
+                
+                // Validate after reading: a newer point may have claimed the slot
+                VarHandle.acquireFence();
+                if (claimed - capacity > sequence) {
+                    continue;
+                }
+                visitor.accept(timestamp, price, low, high, volume);
+            }
+        }
+    }
+    
+    /**
+     * Writes a view as a JSON array of points, straight from the columns
+     */
+    public static class ViewSerializer extends StdSerializer<View> {
+        private static final long serialVersionUID = 1L;
+        
+        public ViewSerializer() {
+            super(View.class);
+        }
+        
+        @Override
+        public void serialize(View view, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartArray();
+            try {
+                view.forEach((timestamp, price, low, high, volume) -> {
+                    try {
+                        generator.writeStartObject();
+                        provider.defaultSerializeField("timestamp", toLocalDateTime(timestamp), generator);
+                        writeFixedPoint(generator, "price", price);
+                        writeFixedPoint(generator, "low", low);
+                        writeFixedPoint(generator, "high", high);
+                        writeFixedPoint(generator, "volume", volume);
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+    
+    /**
+     * Write a fixed-point field as a plain decimal number
+     */
+    static void writeFixedPoint(JsonGenerator generator, String name, long value) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeNumber(FixedPoint.toBigDecimal(value).toPlainString());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.riskengine.risksystem.market.simulation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.riskengine.risksystem.market.model.AssetPrice;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Current prices of every symbol as of one sequence number, frozen.
+ * <p>
+ * Prices are held in an array indexed by symbol id, and since both the
+ * array and the prices in it never change, a snapshot can be shared by any
+ * number of readers without copying or locking. The snapshot's JSON form is
+ * rendered at most once and then reused for every request that asks for
+ * the same sequence.
+ */
+@JsonSerialize(using = PriceSnapshot.Serializer.class)
+public final class PriceSnapshot {
+    /** Snapshot of a market without prices */
+    static final PriceSnapshot EMPTY = new PriceSnapshot(0, new AssetPrice[0]);
+    
+    /** Sequence of the last price change included */
+    private final long sequence;
+    
+    /** Prices by symbol id; null for symbols without a price */
+    private final AssetPrice[] prices;
+    
+    /** JSON form, rendered on first request */
+    private volatile byte[] json;
+    
+    PriceSnapshot(long sequence, AssetPrice[] prices) {
+        this.sequence = sequence;
+        this.prices = prices;
+    }
+    
+    /**
+     * Sequence of the last price change included; increases with every change
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Price of a symbol
+     *
+     * @param symbolId Symbol id
+     * @return Price, or null if the symbol had no price when the snapshot was taken
+     */
+    public AssetPrice getPrice(int symbolId) {
+        return symbolId >= 0 && symbolId < prices.length ? prices[symbolId] : null;
+    }
+    
+    /**
+     * Visit every price, in symbol id order
+     */
+    public void forEach(Consumer<AssetPrice> visitor) {
+        for (AssetPrice price : prices) {
+            if (price != null) {
+                visitor.accept(price);
+            }
+        }
+    }
+    
+    /**
+     * The snapshot as a JSON object of prices keyed by symbol, rendered once
+     *
+     * @param mapper Mapper to render with on first request
+     * @return UTF-8 JSON; must not be modified
+     */
+    public byte[] toJson(ObjectMapper mapper) throws JsonProcessingException {
+        byte[] rendered = json;
+        if (rendered == null) {
+            // Concurrent first requests may each render; any result will do
+            rendered = mapper.writeValueAsBytes(this);
+            json = rendered;
+        }
+        return rendered;
+    }
+    
+    /**
+     * Writes a snapshot as a JSON object of prices keyed by symbol
+     */
+    public static class Serializer extends StdSerializer<PriceSnapshot> {
+        private static final long serialVersionUID = 1L;
+        
+        public Serializer() {
+            super(PriceSnapshot.class);
+        }
+        
+        @Override
+        public void serialize(PriceSnapshot snapshot, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            for (AssetPrice price : snapshot.prices) {
+                if (price != null) {
+                    provider.defaultSerializeField(price.getSymbol(), price, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
\ No newline at end of file
@@ -12,6 +12,8 @@ import org.springframework.stereotype.Service;
 
 import jakarta.persistence.EntityNotFoundException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class RiskScoringService {
@@ -50,6 +52,31 @@ public class RiskScoringService {
                 .build();
     }
     
+    /**
+     * Evaluates risk for several transactions of one user in a single pass.
+     * The caller looks the profile up once for the whole batch.
+     * 
+     * @param transactions The transactions to evaluate
+     * @param userProfile The user profile shared by every transaction
+     * @return One RiskScore per transaction, in the same order
+     */
+    public List<RiskScore> calculateRiskScores(List<Transaction> transactions, UserProfile userProfile) {
+        LocalDateTime now = LocalDateTime.now();
+        List<RiskScore> scores = new ArrayList<>(transactions.size());
+        
+        for (Transaction transaction : transactions) {
+            double score = calculateNumericScore(transaction, userProfile);
+            scores.add(RiskScore.builder()
+                    .transactionId(transaction.getId())
+                    .score(score)
+                    .level(determineRiskLevel(score))
+                    .createdAt(now)
+                    .build());
+        }
+        
+        return scores;
+    }
+    
     /**
      * Creates a RiskScore object for a given transaction
      * 
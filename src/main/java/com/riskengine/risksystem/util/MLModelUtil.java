@@ -29,6 +29,9 @@ public class MLModelUtil {
     private static final int HOUR_START = 7; // 7 AM
     private static final int HOUR_END = 23;  // 11 PM
     
+    // Transactions above this amount are considered large
+    private static final BigDecimal LARGE_AMOUNT_THRESHOLD = new BigDecimal("10000");
+    
     /**
      * Detects anomalies in a list of transactions using multiple detection methods
      * 
@@ -133,7 +136,7 @@ public class MLModelUtil {
         
         // Fix: Use compareTo instead of operator >
         // Factor 1: Large amount (>$10,000)
-        if (transaction.getAmount().compareTo(new BigDecimal("10000")) > 0) {
+        if (transaction.getAmount().compareTo(LARGE_AMOUNT_THRESHOLD) > 0) {
             score += 0.3;
         }
         
@@ -5,15 +5,50 @@ const currentUserId = "user123";
 let priceChart = null;
 let riskChart = null;
 
+// Server-pushed price and order updates
+let marketStream = null;
+
+// Shortest time between price chart reloads while its symbol keeps moving
+const CHART_REFRESH_MS = 5000;
+let lastChartRefresh = 0;
+
+// Shortest time between portfolio reloads while the user's orders keep filling
+const PORTFOLIO_REFRESH_MS = 5000;
+let lastPortfolioRefresh = 0;
+
+// Orders shown on the portfolio view
+const RECENT_ORDERS = 5;
+
 // Load the market view by default
 document.addEventListener('DOMContentLoaded', function() {
     setupNavHighlighting();
     loadMarketView();
     
-    // Set up auto-refresh for market data (every 5 seconds)
-    setInterval(refreshMarketData, 5000);
+    // Receive price and order changes as they happen instead of polling
+    connectMarketStream();
 });
 
+/**
+ * Open the server-sent event stream of prices and of the user's orders.
+ * The browser reconnects on its own if the connection drops, and the
+ * server starts every connection with the current prices.
+ */
+function connectMarketStream() {
+    marketStream = new EventSource(`/api/market/stream?userId=${encodeURIComponent(currentUserId)}`);
+    
+    marketStream.addEventListener('prices', event => {
+        applyPriceUpdate(JSON.parse(event.data));
+    });
+    
+    marketStream.addEventListener('orders', event => {
+        applyOrderUpdate(JSON.parse(event.data));
+    });
+    
+    marketStream.onerror = () => {
+        console.warn('Market stream interrupted, reconnecting');
+    };
+}
+
 /**
  * Set up navigation highlighting
  */
@@ -35,54 +70,172 @@ function setupNavHighlighting() {
 }
 
 /**
- * Refresh market data without full page reload
+ * Show pushed prices without full page reload
  */
-function refreshMarketData() {
-    // Only refresh if we're on the market view
+function applyPriceUpdate(prices) {
+    // Only update if we're on the market view
     if (!document.querySelector('.nav-link.active').textContent.includes('Market')) {
         return;
     }
     
-    axios.get('/api/market/prices')
-        .then(response => {
-            const prices = response.data;
+    // Update prices in the table
+    Object.entries(prices).forEach(([symbol, data]) => {
+        const priceCell = document.querySelector(`tr[data-symbol="${symbol}"] .price-value`);
+        if (priceCell) {
+            const oldPrice = parseFloat(priceCell.dataset.price);
+            const newPrice = data.price;
             
-            // Update prices in the table
-            Object.entries(prices).forEach(([symbol, data]) => {
-                const priceCell = document.querySelector(`tr[data-symbol="${symbol}"] .price-value`);
-                if (priceCell) {
-                    const oldPrice = parseFloat(priceCell.dataset.price);
-                    const newPrice = data.price;
-                    
-                    // Update price with color indication
-                    priceCell.textContent = `$${newPrice.toFixed(2)}`;
-                    priceCell.dataset.price = newPrice;
-                    
-                    // Add color flash effect based on price movement
-                    if (newPrice > oldPrice) {
-                        priceCell.classList.remove('price-down');
-                        priceCell.classList.add('price-up');
-                    } else if (newPrice < oldPrice) {
-                        priceCell.classList.remove('price-up');
-                        priceCell.classList.add('price-down');
-                    }
-                    
-                    // Remove classes after animation
-                    setTimeout(() => {
-                        priceCell.classList.remove('price-up', 'price-down');
-                    }, 1000);
-                }
-            });
+            // Update price with color indication
+            priceCell.textContent = `$${newPrice.toFixed(2)}`;
+            priceCell.dataset.price = newPrice;
             
-            // Update chart if it exists
-            if (priceChart) {
-                const activeSymbol = priceChart.data.datasets[0].label.split(' ')[0];
-                updatePriceChart(activeSymbol);
+            // Add color flash effect based on price movement
+            if (newPrice > oldPrice) {
+                priceCell.classList.remove('price-down');
+                priceCell.classList.add('price-up');
+            } else if (newPrice < oldPrice) {
+                priceCell.classList.remove('price-up');
+                priceCell.classList.add('price-down');
             }
-        })
-        .catch(error => {
-            console.error('Error refreshing market data:', error);
-        });
+            
+            // Remove classes after animation
+            setTimeout(() => {
+                priceCell.classList.remove('price-up', 'price-down');
+            }, 1000);
+        }
+    });
+    
+    const lastUpdateElement = document.getElementById('lastUpdate');
+    if (lastUpdateElement) {
+        lastUpdateElement.textContent = new Date().toLocaleTimeString();
+    }
+    
+    // Reload the chart if its symbol moved, at most every CHART_REFRESH_MS
+    if (priceChart) {
+        const activeSymbol = priceChart.data.datasets[0].label.split(' ')[0];
+        if (prices[activeSymbol] && Date.now() - lastChartRefresh >= CHART_REFRESH_MS) {
+            lastChartRefresh = Date.now();
+            updatePriceChart(activeSymbol);
+        }
+    }
+}
+
+/**
+ * Show pushed order changes in whichever order list is on screen.
+ * Each update carries the full state of its order, so rows are updated
+ * in place, and orders not listed yet are added at the top.
+ */
+function applyOrderUpdate(updates) {
+    const orders = updates.map(update => ({
+        id: update.orderId,
+        symbol: update.symbol,
+        type: update.type,
+        side: update.side,
+        status: update.status,
+        quantity: update.quantity,
+        price: update.price,
+        createdAt: update.updatedAt
+    }));
+    
+    const historyBody = document.querySelector('#ordersTable tbody');
+    if (historyBody) {
+        orders.forEach(order => upsertOrderRow(historyBody, order, orderHistoryRow));
+        return;
+    }
+    
+    const recentBody = document.getElementById('recentOrdersBody');
+    if (recentBody) {
+        orders.forEach(order => upsertOrderRow(recentBody, order, recentOrderRow));
+        const rows = recentBody.querySelectorAll('tr[data-order-id]');
+        for (let i = RECENT_ORDERS; i < rows.length; i++) {
+            rows[i].remove();
+        }
+        
+        // Fills change holdings and cash, which the updates do not carry
+        const filled = orders.some(order => order.status === 'FILLED' || order.status === 'PARTIALLY_FILLED');
+        if (filled && Date.now() - lastPortfolioRefresh >= PORTFOLIO_REFRESH_MS) {
+            lastPortfolioRefresh = Date.now();
+            loadPortfolioView();
+        }
+    }
+}
+
+/**
+ * Replace the row of an order, or add it at the top of the table
+ */
+function upsertOrderRow(tbody, order, renderRow) {
+    const template = document.createElement('template');
+    template.innerHTML = renderRow(order).trim();
+    const row = template.content.firstElementChild;
+    
+    const existing = tbody.querySelector(`tr[data-order-id="${order.id}"]`);
+    if (existing) {
+        // Keep the time the order was placed
+        if (existing.dataset.createdAt) {
+            row.dataset.createdAt = existing.dataset.createdAt;
+            row.cells[0].textContent = existing.cells[0].textContent;
+        }
+        existing.replaceWith(row);
+    } else {
+        // Drop the "no orders" placeholder
+        tbody.querySelectorAll('tr:not([data-order-id])').forEach(placeholder => placeholder.remove());
+        tbody.prepend(row);
+    }
+}
+
+/**
+ * Text colour of an order status
+ */
+function orderStatusClass(status) {
+    switch(status) {
+        case 'FILLED':
+            return 'text-success';
+        case 'REJECTED':
+            return 'text-danger';
+        case 'OPEN':
+            return 'text-primary';
+        case 'CANCELLED':
+            return 'text-secondary';
+        default:
+            return '';
+    }
+}
+
+/**
+ * Row of the recent orders card
+ */
+function recentOrderRow(order) {
+    return `
+        <tr data-order-id="${order.id}">
+            <td>${order.symbol}</td>
+            <td>${order.side} ${order.type}</td>
+            <td class="${orderStatusClass(order.status)}">${order.status}</td>
+        </tr>
+    `;
+}
+
+/**
+ * Row of the order history table
+ */
+function orderHistoryRow(order) {
+    const orderDate = new Date(order.createdAt);
+    
+    return `
+        <tr data-order-id="${order.id}" data-status="${order.status}" data-created-at="${order.createdAt}">
+            <td>${orderDate.toLocaleString()}</td>
+            <td>${order.symbol}</td>
+            <td>${order.type}</td>
+            <td>${order.side}</td>
+            <td>${order.quantity}</td>
+            <td>$${order.price.toFixed(2)}</td>
+            <td class="${orderStatusClass(order.status)}">${order.status}</td>
+            <td>
+                ${order.status === 'OPEN' ? 
+                    `<button class="btn btn-sm btn-outline-danger" onclick="cancelOrder('${order.id}')">Cancel</button>` : 
+                    ''}
+            </td>
+        </tr>
+    `;
 }
 
 /**
@@ -202,14 +355,6 @@ function loadMarketView() {
             
             // Initialize price chart with the first symbol
             updatePriceChart(sortedAssets[0][0]);
-            
-            // Update the last update time every 5 seconds
-            setInterval(() => {
-                const lastUpdateElement = document.getElementById('lastUpdate');
-                if (lastUpdateElement) {
-                    lastUpdateElement.textContent = new Date().toLocaleTimeString();
-                }
-            }, 5000);
         })
         .catch(error => {
             container.innerHTML = `
@@ -341,30 +486,31 @@ function changeTimeframe(timeframe) {
     updatePriceChart(symbol, timeframe);
 }
 
+/**
+ * Bar resolution and time span shown for each chart timeframe
+ */
+const CHART_TIMEFRAMES = {
+    '1H': { resolution: '1m', span: 60 * 60 * 1000 },
+    '1D': { resolution: '5m', span: 24 * 60 * 60 * 1000 },
+    '1W': { resolution: '1h', span: 7 * 24 * 60 * 60 * 1000 }
+};
+
 /**
  * Update or create price chart for a symbol
  */
 function updatePriceChart(symbol, timeframe = '1H') {
-    // Fetch historical data for the symbol
-    axios.get(`/api/market/history/${symbol}`)
+    // Bars sized so each timeframe is a few hundred points
+    const { resolution, span } = CHART_TIMEFRAMES[timeframe] || CHART_TIMEFRAMES['1H'];
+    const from = new Date(Date.now() - span).toISOString();
+    
+    // Fetch pre-aggregated bars for the symbol
+    axios.get(`/api/market/history/${symbol}`, { params: { resolution, from } })
         .then(response => {
-            const history = response.data;
-            
-            // Filter based on timeframe
-            let filteredHistory = history;
-            const now = new Date();
-            
-            if (timeframe === '1H') {
-                const oneHourAgo = new Date(now.getTime() - 60 * 60 * 1000);
-                filteredHistory = history.filter(item => new Date(item.timestamp) >= oneHourAgo);
-            } else if (timeframe === '1D') {
-                const oneDayAgo = new Date(now.getTime() - 24 * 60 * 60 * 1000);
-                filteredHistory = history.filter(item => new Date(item.timestamp) >= oneDayAgo);
-            }
+            const bars = response.data;
             
-            // Extract timestamps and prices
-            const timestamps = filteredHistory.map(item => new Date(item.timestamp).toLocaleTimeString());
-            const prices = filteredHistory.map(item => item.price);
+            // Extract timestamps and closing prices
+            const timestamps = bars.map(item => new Date(item.timestamp).toLocaleTimeString());
+            const prices = bars.map(item => item.close);
             
             const ctx = document.getElementById('priceChart').getContext('2d');
             
@@ -721,37 +867,8 @@ function loadRecentOrders() {
                 return;
             }
             
-            let ordersHtml = '';
-            
-            // Show up to 5 most recent orders
-            orders.slice(0, 5).forEach(order => {
-                let statusClass = '';
-                
-                switch(order.status) {
-                    case 'FILLED':
-                        statusClass = 'text-success';
-                        break;
-                    case 'REJECTED':
-                        statusClass = 'text-danger';
-                        break;
-                    case 'OPEN':
-                        statusClass = 'text-primary';
-                        break;
-                    case 'CANCELLED':
-                        statusClass = 'text-secondary';
-                        break;
-                }
-                
-                ordersHtml += `
-                    <tr>
-                        <td>${order.symbol}</td>
-                        <td>${order.side} ${order.type}</td>
-                        <td class="${statusClass}">${order.status}</td>
-                    </tr>
-                `;
-            });
-            
-            ordersContainer.innerHTML = ordersHtml;
+            // Show the most recent orders only
+            ordersContainer.innerHTML = orders.slice(0, RECENT_ORDERS).map(recentOrderRow).join('');
         })
         .catch(error => {
             ordersContainer.innerHTML = `<tr><td colspan="3" class="text-danger">Error loading orders</td></tr>`;
@@ -814,43 +931,7 @@ function loadOrderHistory() {
             if (orders.length === 0) {
                 content += `<tr><td colspan="8" class="text-center">No orders found</td></tr>`;
             } else {
-                orders.forEach(order => {
-                    let statusClass = '';
-                    
-                    switch(order.status) {
-                        case 'FILLED':
-                            statusClass = 'text-success';
-                            break;
-                        case 'REJECTED':
-                            statusClass = 'text-danger';
-                            break;
-                        case 'OPEN':
-                            statusClass = 'text-primary';
-                            break;
-                        case 'CANCELLED':
-                            statusClass = 'text-secondary';
-                            break;
-                    }
-                    
-                    const orderDate = new Date(order.createdAt);
-                    
-                    content += `
-                        <tr data-status="${order.status}">
-                            <td>${orderDate.toLocaleString()}</td>
-                            <td>${order.symbol}</td>
-                            <td>${order.type}</td>
-                            <td>${order.side}</td>
-                            <td>${order.quantity}</td>
-                            <td>$${order.price.toFixed(2)}</td>
-                            <td class="${statusClass}">${order.status}</td>
-                            <td>
-                                ${order.status === 'OPEN' ? 
-                                    `<button class="btn btn-sm btn-outline-danger" onclick="cancelOrder('${order.id}')">Cancel</button>` : 
-                                    ''}
-                            </td>
-                        </tr>
-                    `;
-                });
+                content += orders.map(orderHistoryRow).join('');
             }
             
             content += `
@@ -1025,6 +1106,10 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
                 <select class="form-select" id="orderType">
                     <option value="MARKET">Market Order</option>
                     <option value="LIMIT">Limit Order</option>
+                    <option value="STOP">Stop Order</option>
+                    <option value="STOP_LIMIT">Stop-Limit Order</option>
+                    <option value="IMMEDIATE_OR_CANCEL">Immediate-or-Cancel</option>
+                    <option value="FILL_OR_KILL">Fill-or-Kill</option>
                 </select>
             </div>
             <div class="mb-3">
@@ -1042,6 +1127,10 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
                 <label class="form-label">Limit Price</label>
                 <input type="number" class="form-control" id="limitPrice" value="${price.toFixed(2)}" min="0.01" step="0.01">
             </div>
+            <div class="mb-3" id="stopPriceGroup">
+                <label class="form-label">Stop Price</label>
+                <input type="number" class="form-control" id="stopPrice" value="${price.toFixed(2)}" min="0.01" step="0.01">
+            </div>
             
             <div class="d-flex justify-content-between">
                 <div>
@@ -1052,10 +1141,10 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
         </form>
     `;
     
-    // Show/hide limit price based on order type
+    // Show/hide limit and stop price based on order type
     document.getElementById('orderType').addEventListener('change', function() {
-        const limitPriceGroup = document.getElementById('limitPriceGroup');
-        limitPriceGroup.style.display = this.value === 'LIMIT' ? 'block' : 'none';
+        document.getElementById('limitPriceGroup').style.display = hasLimitPrice(this.value) ? 'block' : 'none';
+        document.getElementById('stopPriceGroup').style.display = hasStopPrice(this.value) ? 'block' : 'none';
         updateOrderEstimate(symbol, price);
     });
     
@@ -1069,6 +1158,11 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
         updateOrderEstimate(symbol, price);
     });
     
+    // Update estimate when stop price changes (for stop orders)
+    document.getElementById('stopPrice').addEventListener('input', function() {
+        updateOrderEstimate(symbol, price);
+    });
+    
     // Update estimate when side changes
     document.getElementById('orderSide').addEventListener('change', function() {
         updateOrderEstimate(symbol, price);
@@ -1076,6 +1170,7 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
     
     // Initialize visibility
     document.getElementById('limitPriceGroup').style.display = 'none';
+    document.getElementById('stopPriceGroup').style.display = 'none';
     
     // Show modal
     modal.show();
@@ -1084,6 +1179,20 @@ function showTradeModal(symbol, price, defaultSide = 'BUY') {
     setTimeout(() => updateOrderEstimate(symbol, price), 100);
 }
 
+/**
+ * Whether an order type needs a limit price
+ */
+function hasLimitPrice(orderType) {
+    return orderType !== 'MARKET' && orderType !== 'STOP';
+}
+
+/**
+ * Whether an order type needs a stop price
+ */
+function hasStopPrice(orderType) {
+    return orderType === 'STOP' || orderType === 'STOP_LIMIT';
+}
+
 /**
  * Update order estimate
  */
@@ -1094,8 +1203,11 @@ function updateOrderEstimate(symbol, currentPrice) {
     const quantity = parseFloat(quantityInput.value) || 0;
     const limitPriceInput = document.getElementById('limitPrice');
     const limitPrice = parseFloat(limitPriceInput.value) || currentPrice;
+    const stopPrice = parseFloat(document.getElementById('stopPrice').value) || currentPrice;
     
-    const effectivePrice = orderType === 'MARKET' ? currentPrice : limitPrice;
+    const effectivePrice = orderType === 'MARKET' ? currentPrice
+        : orderType === 'STOP' ? stopPrice
+        : limitPrice;
     const totalValue = quantity * effectivePrice;
     
     const estimateElement = document.getElementById('orderEstimate');
@@ -1114,26 +1226,35 @@ function submitOrder(symbol, currentPrice) {
     const orderType = document.getElementById('orderType').value;
     const side = document.getElementById('orderSide').value;
     const quantity = parseFloat(document.getElementById('quantity').value);
-    const limitPrice = orderType === 'LIMIT' ? 
+    const limitPrice = hasLimitPrice(orderType) ? 
         parseFloat(document.getElementById('limitPrice').value) : 
         currentPrice;
+    const stopPrice = hasStopPrice(orderType) ? 
+        parseFloat(document.getElementById('stopPrice').value) : 
+        0;
     
     if (isNaN(quantity) || quantity <= 0) {
         alert('Please enter a valid quantity');
         return;
     }
     
-    if (orderType === 'LIMIT' && (isNaN(limitPrice) || limitPrice <= 0)) {
+    if (hasLimitPrice(orderType) && (isNaN(limitPrice) || limitPrice <= 0)) {
         alert('Please enter a valid limit price');
         return;
     }
     
+    if (hasStopPrice(orderType) && (isNaN(stopPrice) || stopPrice <= 0)) {
+        alert('Please enter a valid stop price');
+        return;
+    }
+    
     const orderData = {
         userId: currentUserId,
         symbol: symbol,
         side: side,
         quantity: quantity,
         price: limitPrice,
+        stopPrice: stopPrice,
         type: orderType
     };
     
@@ -0,0 +1,183 @@
+package com.riskengine.risksystem.market.book;
+
+import com.riskengine.risksystem.market.model.DepthLevel;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Price-time priority, crossing with partial fills, and the stop trigger
+ * index of a single book.
+ */
+class OrderBookTest {
+    private OrderBook book;
+
+    /** Level changes reported to the depth listener: side, price, quantity */
+    private final List<String> depthChanges = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        book = new OrderBook("BTC", (changed, sequence, side, price, quantity, orderCount) ->
+                depthChanges.add(side + " " + plain(price) + " " + plain(quantity)));
+    }
+
+    @Test
+    void matchesBestPriceFirstAndOldestOrderFirstWithinALevel() {
+        Order far = rest(Order.OrderSide.SELL, 1.0, 101.0);
+        Order first = rest(Order.OrderSide.SELL, 1.0, 100.0);
+        Order second = rest(Order.OrderSide.SELL, 1.0, 100.0);
+
+        Order taker = limit(Order.OrderSide.BUY, 2.5, 101.0);
+        List<String> fills = new ArrayList<>();
+        book.match(taker, (incoming, maker, price, quantity) ->
+                fills.add(maker.getId() + "@" + plain(price) + "x" + plain(quantity)));
+
+        assertEquals(List.of(first.getId() + "@100x1", second.getId() + "@100x1", far.getId() + "@101x0.5"), fills);
+        assertEquals(0, taker.getRemainingQuantity());
+        assertEquals(Order.OrderStatus.FILLED, taker.getStatus());
+        assertEquals(Order.OrderStatus.FILLED, first.getStatus());
+        assertEquals(Order.OrderStatus.FILLED, second.getStatus());
+        assertEquals(Order.OrderStatus.PARTIALLY_FILLED, far.getStatus());
+        assertEquals(FixedPoint.of(0.5), far.getRemainingQuantity());
+
+        assertEquals(1, book.size());
+        assertEquals(FixedPoint.of(101.0), book.getBestAsk().getPrice());
+        assertEquals(FixedPoint.of(0.5), book.getBestAsk().getTotalQuantity());
+        assertEquals(List.of("SELL 100 0", "SELL 101 0.5"), depthChanges.subList(depthChanges.size() - 2, depthChanges.size()));
+    }
+
+    @Test
+    void stopsMatchingAtTheTakersLimit() {
+        rest(Order.OrderSide.SELL, 1.0, 100.0);
+        rest(Order.OrderSide.SELL, 1.0, 102.0);
+
+        Order taker = limit(Order.OrderSide.BUY, 3.0, 101.0);
+        List<Long> prices = new ArrayList<>();
+        book.match(taker, (incoming, maker, price, quantity) -> prices.add(price));
+
+        assertEquals(List.of(FixedPoint.of(100.0)), prices);
+        assertEquals(FixedPoint.of(2.0), taker.getRemainingQuantity());
+        assertEquals(Order.OrderStatus.PARTIALLY_FILLED, taker.getStatus());
+        assertEquals(FixedPoint.of(102.0), book.getBestAsk().getPrice());
+    }
+
+    @Test
+    void sellTakerCrossesHighestBidsFirst() {
+        Order low = rest(Order.OrderSide.BUY, 1.0, 99.0);
+        Order high = rest(Order.OrderSide.BUY, 1.0, 100.0);
+
+        Order taker = limit(Order.OrderSide.SELL, 1.5, 99.0);
+        List<Order> makers = new ArrayList<>();
+        book.match(taker, (incoming, maker, price, quantity) -> makers.add(maker));
+
+        assertEquals(List.of(high, low), makers);
+        assertEquals(FixedPoint.of(0.5), low.getRemainingQuantity());
+        assertEquals(FixedPoint.of(99.0), book.getBestBid().getPrice());
+    }
+
+    @Test
+    void countsAvailableQuantityWithinTheLimit() {
+        rest(Order.OrderSide.SELL, 1.0, 100.0);
+        rest(Order.OrderSide.SELL, 2.0, 101.0);
+        rest(Order.OrderSide.SELL, 4.0, 103.0);
+
+        assertEquals(FixedPoint.of(3.0), book.availableQuantity(limit(Order.OrderSide.BUY, 10.0, 102.0), FixedPoint.of(10.0)));
+        assertEquals(FixedPoint.of(1.0), book.availableQuantity(limit(Order.OrderSide.BUY, 1.0, 102.0), FixedPoint.of(1.0)));
+        assertEquals(0, book.availableQuantity(limit(Order.OrderSide.BUY, 1.0, 99.0), FixedPoint.of(1.0)));
+    }
+
+    @Test
+    void takesOnlyOrdersCrossedByTheMarketPrice() {
+        Order high = rest(Order.OrderSide.BUY, 1.0, 101.0);
+        Order atMarket = rest(Order.OrderSide.BUY, 1.0, 100.0);
+        Order below = rest(Order.OrderSide.BUY, 1.0, 99.0);
+        Order ask = rest(Order.OrderSide.SELL, 1.0, 105.0);
+
+        assertEquals(List.of(high, atMarket), book.takeCrossed(FixedPoint.of(100.0)));
+        assertEquals(2, book.size());
+        assertEquals(FixedPoint.of(99.0), book.getBestBid().getPrice());
+
+        assertEquals(List.of(ask), book.takeCrossed(FixedPoint.of(106.0)));
+        assertEquals(List.of(below), book.getOrders());
+        assertNull(book.getBestAsk());
+    }
+
+    @Test
+    void triggersOnlyStopsTheMarketHasReached() {
+        Order nearBuy = stop(Order.OrderSide.BUY, 105.0);
+        Order farBuy = stop(Order.OrderSide.BUY, 110.0);
+        Order sell = stop(Order.OrderSide.SELL, 90.0);
+        assertEquals(3, book.getStopCount());
+
+        assertTrue(book.takeTriggeredStops(FixedPoint.of(100.0)).isEmpty());
+        assertEquals(List.of(nearBuy), book.takeTriggeredStops(FixedPoint.of(106.0)));
+        assertEquals(List.of(sell), book.takeTriggeredStops(FixedPoint.of(89.0)));
+        assertEquals(List.of(farBuy), book.getStops());
+        assertEquals(1, book.getStopCount());
+    }
+
+    @Test
+    void removesRestingAndStopOrders() {
+        Order resting = rest(Order.OrderSide.BUY, 1.0, 100.0);
+        Order other = rest(Order.OrderSide.BUY, 2.0, 100.0);
+        Order pending = stop(Order.OrderSide.SELL, 90.0);
+
+        assertTrue(book.remove(resting));
+        assertFalse(book.remove(resting));
+        assertEquals(FixedPoint.of(2.0), book.getBestBid().getTotalQuantity());
+        assertEquals(1, book.getBestBid().getOrderCount());
+
+        assertTrue(book.remove(pending));
+        assertEquals(0, book.getStopCount());
+
+        assertTrue(book.remove(other));
+        assertNull(book.getBestBid());
+        assertEquals(0, book.size());
+        assertEquals("BUY 100 0", depthChanges.get(depthChanges.size() - 1));
+    }
+
+    @Test
+    void aggregatesDepthPerLevel() {
+        rest(Order.OrderSide.BUY, 1.0, 100.0);
+        rest(Order.OrderSide.BUY, 2.0, 100.0);
+        rest(Order.OrderSide.BUY, 1.0, 99.0);
+        rest(Order.OrderSide.BUY, 1.0, 98.0);
+
+        List<DepthLevel> depth = book.getDepth(Order.OrderSide.BUY, 2);
+        assertEquals(2, depth.size());
+        assertEquals(FixedPoint.of(100.0), depth.get(0).getPrice());
+        assertEquals(FixedPoint.of(3.0), depth.get(0).getQuantity());
+        assertEquals(2, depth.get(0).getOrderCount());
+        assertEquals(FixedPoint.of(99.0), depth.get(1).getPrice());
+    }
+
+    private static String plain(long value) {
+        return FixedPoint.toBigDecimal(value).toPlainString();
+    }
+
+    private static Order limit(Order.OrderSide side, double quantity, double price) {
+        return Order.create("user", "BTC", Order.OrderType.LIMIT, side, FixedPoint.of(quantity), FixedPoint.of(price));
+    }
+
+    private Order rest(Order.OrderSide side, double quantity, double price) {
+        Order order = limit(side, quantity, price);
+        book.add(order);
+        return order;
+    }
+
+    private Order stop(Order.OrderSide side, double stopPrice) {
+        Order order = Order.create("user", "BTC", Order.OrderType.STOP, side, FixedPoint.of(1.0), 0,
+                FixedPoint.of(stopPrice));
+        book.addStop(order);
+        return order;
+    }
+}
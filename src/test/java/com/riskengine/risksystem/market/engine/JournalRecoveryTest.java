@@ -0,0 +1,219 @@
+package com.riskengine.risksystem.market.engine;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Fill;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.Portfolio;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.persistence.SnapshotStore;
+import com.riskengine.risksystem.market.service.OrderBookService;
+import com.riskengine.risksystem.market.service.PortfolioService;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A journal written by one process is replayed by the next into
+ * portfolios, order books and prices, on its own or after a snapshot.
+ */
+class JournalRecoveryTest {
+    /** Cash balance of a portfolio created on first use */
+    private static final long STARTING_BALANCE = FixedPoint.of(10000.0);
+
+    @TempDir
+    Path directory;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private SymbolRegistry symbolRegistry;
+
+    private int btc;
+
+    private Journal journal;
+
+    private SnapshotStore snapshotStore;
+
+    private OrderBookService orderBookService;
+
+    private MarketSimulator marketSimulator;
+
+    private PortfolioService portfolioService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        symbolRegistry = new SymbolRegistry();
+        ReflectionTestUtils.setField(symbolRegistry, "capacity", 16);
+        symbolRegistry.init();
+        btc = symbolRegistry.register("BTC");
+
+        journal = openJournal();
+        snapshotStore = mock(SnapshotStore.class);
+        orderBookService = mock(OrderBookService.class);
+        marketSimulator = mock(MarketSimulator.class);
+        when(marketSimulator.restorePrice(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        portfolioService = new PortfolioService();
+        ReflectionTestUtils.setField(portfolioService, "marketSimulator", marketSimulator);
+        ReflectionTestUtils.setField(portfolioService, "journal", mock(Journal.class));
+        ReflectionTestUtils.setField(portfolioService, "symbolRegistry", symbolRegistry);
+        portfolioService.registerListeners();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void replaysFillsAndCashIntoPortfolios() throws IOException {
+        writeTrades();
+
+        assertEquals(4, recover());
+
+        assertPortfolio("alice", STARTING_BALANCE + FixedPoint.of(360.0), FixedPoint.of(1.5));
+        assertPortfolio("bob", STARTING_BALANCE - FixedPoint.of(100.0), FixedPoint.of(0.5));
+    }
+
+    @Test
+    void skipsRecordsAlreadyCapturedInASnapshot() throws IOException {
+        writeTrades();
+
+        // Alice was captured after the market fill (sequence 1), bob before anything happened
+        when(snapshotStore.loadLatest()).thenReturn(new SnapshotStore.Snapshot(1, now, List.of(), List.of(),
+                List.of(new SnapshotStore.PortfolioState("alice", 2, STARTING_BALANCE + FixedPoint.of(300.0),
+                        Map.of("BTC", FixedPoint.of(2.0))))));
+
+        assertEquals(3, recover());
+
+        assertPortfolio("alice", STARTING_BALANCE + FixedPoint.of(360.0), FixedPoint.of(1.5));
+        assertPortfolio("bob", STARTING_BALANCE - FixedPoint.of(100.0), FixedPoint.of(0.5));
+    }
+
+    @Test
+    void replaysOrderCommandsAndTicksIntoTheBooks() throws IOException {
+        Order order = Order.builder()
+                .id("o4")
+                .userId("alice")
+                .symbol("BTC")
+                .type(Order.OrderType.STOP_LIMIT)
+                .side(Order.OrderSide.SELL)
+                .quantity(FixedPoint.of(1.25))
+                .remainingQuantity(FixedPoint.of(1.25))
+                .price(FixedPoint.of(95.0))
+                .stopPrice(FixedPoint.of(96.0))
+                .status(Order.OrderStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        AssetPrice tick = new AssetPrice("BTC", btc, FixedPoint.of(101.0), FixedPoint.of(100.0),
+                FixedPoint.of(99.0), FixedPoint.of(102.0), FixedPoint.of(7.0), now);
+        journal.appendPlace(order, FixedPoint.of(100.0));
+        journal.appendTick(tick);
+        journal.appendCancel(order);
+
+        assertEquals(3, recover());
+
+        ArgumentCaptor<Order> placed = ArgumentCaptor.forClass(Order.class);
+        ArgumentCaptor<AssetPrice> placedAgainst = ArgumentCaptor.forClass(AssetPrice.class);
+        verify(orderBookService).addOrder(placed.capture(), placedAgainst.capture());
+        assertEquals(order.getId(), placed.getValue().getId());
+        assertEquals("alice", placed.getValue().getUserId());
+        assertEquals(Order.OrderType.STOP_LIMIT, placed.getValue().getType());
+        assertEquals(Order.OrderSide.SELL, placed.getValue().getSide());
+        assertEquals(FixedPoint.of(1.25), placed.getValue().getQuantity());
+        assertEquals(FixedPoint.of(1.25), placed.getValue().getRemainingQuantity());
+        assertEquals(FixedPoint.of(95.0), placed.getValue().getPrice());
+        assertEquals(FixedPoint.of(96.0), placed.getValue().getStopPrice());
+        assertEquals(now, placed.getValue().getCreatedAt());
+        assertEquals(FixedPoint.of(100.0), placedAgainst.getValue().getPrice());
+
+        ArgumentCaptor<AssetPrice> replayedTick = ArgumentCaptor.forClass(AssetPrice.class);
+        verify(orderBookService).processTick(replayedTick.capture());
+        assertEquals(tick.withSymbolId(SymbolRegistry.UNREGISTERED), replayedTick.getValue());
+
+        verify(orderBookService).cancelOrder(order.getId());
+    }
+
+    @Test
+    void continuesNumberingAfterTheLastRecord() throws IOException {
+        writeTrades();
+        journal.close();
+        journal = openJournal();
+
+        assertEquals(4, journal.getNextSequence());
+        assertEquals(4, journal.appendCash("carol", FixedPoint.of(1.0)));
+    }
+
+    @Test
+    void recoversNothingFromAnEmptyJournal() throws IOException {
+        assertEquals(0, recover());
+        assertTrue(portfolioService.getPortfolios().isEmpty());
+    }
+
+    /**
+     * Journal a deposit, a market fill, a fill between two users and a
+     * withdrawal, as sequences 0 to 3
+     */
+    private void writeTrades() {
+        journal.appendCash("alice", FixedPoint.of(500.0));
+        journal.appendFill(new Fill("BTC", "o1", "alice", Order.OrderSide.BUY, null, null,
+                FixedPoint.of(100.0), FixedPoint.of(2.0), now));
+        journal.appendFill(new Fill("BTC", "o2", "bob", Order.OrderSide.BUY, "o3", "alice",
+                FixedPoint.of(120.0), FixedPoint.of(0.5), now));
+        journal.appendCash("bob", FixedPoint.of(-40.0));
+    }
+
+    /**
+     * Reopen the journal as a restarted process would and recover from it
+     */
+    private long recover() throws IOException {
+        journal.close();
+        journal = openJournal();
+
+        JournalRecovery recovery = new JournalRecovery();
+        ReflectionTestUtils.setField(recovery, "journal", journal);
+        ReflectionTestUtils.setField(recovery, "snapshotStore", snapshotStore);
+        ReflectionTestUtils.setField(recovery, "orderBookService", orderBookService);
+        ReflectionTestUtils.setField(recovery, "portfolioService", portfolioService);
+        ReflectionTestUtils.setField(recovery, "marketSimulator", marketSimulator);
+        ReflectionTestUtils.setField(recovery, "symbolRegistry", symbolRegistry);
+        ReflectionTestUtils.setField(recovery, "replayOnStartup", true);
+        return recovery.recover();
+    }
+
+    private Journal openJournal() throws IOException {
+        Journal opened = new Journal();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "journalPath", directory.toString());
+        ReflectionTestUtils.setField(opened, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(opened, "flushIntervalMs", 1L);
+        opened.open();
+        return opened;
+    }
+
+    private void assertPortfolio(String userId, long cash, long btcQuantity) {
+        Portfolio portfolio = portfolioService.getPortfolio(userId);
+        assertEquals(FixedPoint.toBigDecimal(cash), FixedPoint.toBigDecimal(portfolio.getCashBalance()), userId);
+        assertEquals(FixedPoint.toBigDecimal(btcQuantity), FixedPoint.toBigDecimal(portfolio.getQuantity(btc)), userId);
+    }
+}
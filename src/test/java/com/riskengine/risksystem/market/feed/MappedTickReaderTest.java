@@ -0,0 +1,195 @@
+package com.riskengine.risksystem.market.feed;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.TickRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Decoding of CSV exports and binary tick recordings into batches.
+ */
+class MappedTickReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void groupsCsvTicksByTimestamp() throws IOException {
+        Path file = csv("timestamp,symbol,price,volume\n"
+                + "1000,BTC,100.5,2\n"
+                + "1000,ETH,10,1\r\n"
+                + "\n"
+                + "2000,BTC,101.25\n"
+                + "2000,ETH,11\n"
+                + "3000,BTC,99\n");
+
+        List<String> batches = read(file);
+
+        assertEquals(List.of(
+                "1000000000: BTC 100.5 vol 2 low 100.5 high 100.5, ETH 10 vol 1 low 10 high 10",
+                "2000000000: BTC 101.25 vol 0 low 100.5 high 101.25, ETH 11 vol 0 low 10 high 11",
+                "3000000000: BTC 99 vol 0 low 99 high 101.25"), batches);
+    }
+
+    @Test
+    void skipsUnknownSymbolsAndTicksThatGoBackInTime() throws IOException {
+        Path file = csv("1000,BTC,100\n"
+                + "1000,XRP,1\n"
+                + "2000,BTC,101\n"
+                + "1500,ETH,9\n"
+                + "2000,ETH,11\n");
+
+        List<String> batches = new ArrayList<>();
+        try (MappedTickReader reader = new MappedTickReader(file, MappedTickReaderTest::symbolId)) {
+            assertEquals(2, reader.read((epochNanos, prices) -> batches.add(describe(epochNanos, prices))));
+            assertEquals(1, reader.getSkipped());
+            assertEquals(1, reader.getOutOfOrder());
+        }
+
+        assertEquals(List.of(
+                "1000000000: BTC 100 vol 0 low 100 high 100",
+                "2000000000: BTC 101 vol 0 low 100 high 101, ETH 11 vol 0 low 11 high 11"), batches);
+    }
+
+    @Test
+    void acceptsTheLargestFixedPointPrice() throws IOException {
+        List<String> batches = read(csv("1000,BTC,92233720368.54775807\n"));
+
+        assertEquals(List.of("1000000000: BTC " + FixedPoint.toBigDecimal(Long.MAX_VALUE).toPlainString()
+                + " vol 0 low 92233720368.54775807 high 92233720368.54775807"), batches);
+    }
+
+    @Test
+    void rejectsNumbersOutOfRange() throws IOException {
+        for (String line : List.of(
+                "1000,BTC,92233720368.54775808\n",
+                "1000,BTC,92233720369\n",
+                "1000,BTC,1,99999999999999999999\n",
+                "99999999999999999999,BTC,1\n")) {
+            Path file = csv(line);
+            assertThrows(IOException.class, () -> read(file), line);
+        }
+    }
+
+    @Test
+    void rejectsMalformedLines() throws IOException {
+        for (String line : List.of("1000,BTC\n", "1000,,1\n", "1000,BTC,1x\n", "1000;BTC;1\n",
+                "1000,BTC,\n", "1000,BTC,.\n", "1000,BTC,0\n", "1000,BTC,1,\n")) {
+            Path file = csv(line);
+            assertThrows(IOException.class, () -> read(file), line);
+        }
+    }
+
+    @Test
+    void readsBackATickRecording() throws Exception {
+        Path file = directory.resolve("ticks.bin");
+        TickRecorder recorder = recorder(file);
+        recorder.record(1_000_000_000L, new AssetPrice[] {price("BTC", 100.5, 2), price("XRP", 1, 0)}, 2);
+        recorder.record(2_000_000_000L, new AssetPrice[] {price("ETH", 11, 3)}, 1);
+        recorder.close();
+
+        List<String> batches = new ArrayList<>();
+        try (MappedTickReader reader = new MappedTickReader(file, MappedTickReaderTest::symbolId)) {
+            assertEquals(MappedTickReader.Format.BINARY, reader.getFormat());
+            assertEquals(2, reader.read((epochNanos, prices) -> batches.add(describe(epochNanos, prices))));
+            assertEquals(1, reader.getSkipped());
+        }
+
+        assertEquals(List.of(
+                "1000000000: BTC 100.5 vol 2 low 100.5 high 100.5",
+                "2000000000: ETH 11 vol 3 low 11 high 11"), batches);
+    }
+
+    @Test
+    void endsARecordingAtAFrameCutShort() throws Exception {
+        Path file = directory.resolve("ticks.bin");
+        TickRecorder recorder = recorder(file);
+        recorder.record(1_000_000_000L, new AssetPrice[] {price("BTC", 100, 0)}, 1);
+        recorder.record(2_000_000_000L, new AssetPrice[] {price("BTC", 101, 0)}, 1);
+        recorder.close();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertEquals(List.of("1000000000: BTC 100 vol 0 low 100 high 100"), read(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotRecordings() throws IOException {
+        Path file = directory.resolve("ticks.bin");
+        Files.writeString(file, "not a recording");
+
+        assertThrows(IOException.class, () -> read(file));
+    }
+
+    private static int symbolId(String symbol) {
+        return switch (symbol) {
+            case "BTC" -> 0;
+            case "ETH" -> 1;
+            default -> SymbolRegistry.UNREGISTERED;
+        };
+    }
+
+    private Path csv(String content) throws IOException {
+        Path file = Files.createTempFile(directory, "ticks", ".csv");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        List<String> batches = new ArrayList<>();
+        try (MappedTickReader reader = new MappedTickReader(file, MappedTickReaderTest::symbolId)) {
+            reader.read((epochNanos, prices) -> batches.add(describe(epochNanos, prices)));
+        }
+        return batches;
+    }
+
+    /**
+     * One batch as text; the reader reuses its list, so batches are copied this way
+     */
+    private static String describe(long epochNanos, List<AssetPrice> prices) {
+        StringBuilder text = new StringBuilder().append(epochNanos).append(':');
+        for (int i = 0; i < prices.size(); i++) {
+            AssetPrice price = prices.get(i);
+            assertEquals(symbolId(price.getSymbol()), price.getSymbolId());
+            text.append(i == 0 ? " " : ", ").append(price.getSymbol())
+                .append(' ').append(plain(price.getPrice()))
+                .append(" vol ").append(plain(price.getVolume()))
+                .append(" low ").append(plain(price.getLow()))
+                .append(" high ").append(plain(price.getHigh()));
+        }
+        return text.toString();
+    }
+
+    private static String plain(long value) {
+        return FixedPoint.toBigDecimal(value).toPlainString();
+    }
+
+    private static AssetPrice price(String symbol, double price, double volume) {
+        long fixed = FixedPoint.of(price);
+        return new AssetPrice(symbol, symbolId(symbol), fixed, fixed, fixed, fixed, FixedPoint.of(volume),
+                LocalDateTime.now());
+    }
+
+    private static TickRecorder recorder(Path file) throws IOException {
+        TickRecorder recorder = new TickRecorder();
+        ReflectionTestUtils.setField(recorder, "recordPath", file.toString());
+        recorder.open();
+        return recorder;
+    }
+}
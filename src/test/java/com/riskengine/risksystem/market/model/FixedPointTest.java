@@ -0,0 +1,95 @@
+package com.riskengine.risksystem.market.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Conversions and arithmetic on scaled-integer amounts, including
+ * products that only fit through the 128-bit path.
+ */
+class FixedPointTest {
+    @Test
+    void convertsDecimalsRoundingHalfUp() {
+        assertEquals(150_000_000L, FixedPoint.of(new BigDecimal("1.5")));
+        assertEquals(100_000_001L, FixedPoint.of(new BigDecimal("1.000000005")));
+        assertEquals(100_000_000L, FixedPoint.of(new BigDecimal("1.000000004")));
+        assertEquals(0L, FixedPoint.of((BigDecimal) null));
+    }
+
+    @Test
+    void convertsDoublesToNearestUnit() {
+        assertEquals(250_000_000L, FixedPoint.of(2.5));
+        assertEquals(10_000L, FixedPoint.of(0.0001));
+        assertEquals(-1L, FixedPoint.of(-0.00000001));
+    }
+
+    @Test
+    void rejectsValuesOutOfRange() {
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(1e12));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(Double.POSITIVE_INFINITY));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(new BigDecimal("1e12")));
+    }
+
+    @Test
+    void convertsBackToPlainDecimals() {
+        assertEquals("1.5", FixedPoint.toBigDecimal(FixedPoint.of(1.5)).toPlainString());
+        assertEquals("0.00000001", FixedPoint.toBigDecimal(1).toPlainString());
+        assertEquals(2.5, FixedPoint.toDouble(FixedPoint.of(2.5)));
+    }
+
+    @Test
+    void multipliesSmallValues() {
+        assertEquals(FixedPoint.of(10.0), FixedPoint.multiply(FixedPoint.of(2.5), FixedPoint.of(4.0)));
+        assertEquals(FixedPoint.of(-10.0), FixedPoint.multiply(FixedPoint.of(-2.5), FixedPoint.of(4.0)));
+    }
+
+    @Test
+    void truncatesProductsTowardZero() {
+        assertEquals(0L, FixedPoint.multiply(1, FixedPoint.of(0.5)));
+        assertEquals(0L, FixedPoint.multiply(-1, FixedPoint.of(0.5)));
+        assertEquals(1L, FixedPoint.multiply(3, FixedPoint.of(0.5)));
+    }
+
+    @Test
+    void multipliesThroughIntermediateProductsBeyondLong() {
+        // 1e14 × 5e12 raw overflows a long, but the 5e10 result fits
+        long quantity = FixedPoint.of(1_000_000.0);
+        long price = FixedPoint.of(50_000.0);
+
+        assertEquals(FixedPoint.of(new BigDecimal("50000000000")), FixedPoint.multiply(quantity, price));
+        assertEquals(FixedPoint.of(new BigDecimal("-50000000000")), FixedPoint.multiply(-quantity, price));
+        assertEquals(FixedPoint.of(new BigDecimal("-50000000000")), FixedPoint.multiply(quantity, -price));
+        assertEquals(FixedPoint.of(new BigDecimal("50000000000")), FixedPoint.multiply(-quantity, -price));
+    }
+
+    @Test
+    void rejectsProductsOutOfRange() {
+        assertThrows(ArithmeticException.class,
+                () -> FixedPoint.multiply(FixedPoint.of(1_000_000.0), FixedPoint.of(1_000_000.0)));
+        assertThrows(ArithmeticException.class,
+                () -> FixedPoint.multiply(Long.MIN_VALUE, Long.MIN_VALUE));
+    }
+
+    @Test
+    void roundsToNearestIncrementWithHalvesAwayFromZero() {
+        assertEquals(100L, FixedPoint.round(123, 50));
+        assertEquals(150L, FixedPoint.round(125, 50));
+        assertEquals(-150L, FixedPoint.round(-125, 50));
+        assertEquals(-100L, FixedPoint.round(-124, 50));
+        assertEquals(FixedPoint.of(1.25), FixedPoint.round(FixedPoint.of(1.23), FixedPoint.of(0.05)));
+    }
+
+    @Test
+    void checksMultiplesOfAnIncrement() {
+        assertTrue(FixedPoint.isMultiple(FixedPoint.of(1.5), FixedPoint.of(0.5)));
+        assertFalse(FixedPoint.isMultiple(FixedPoint.of(1.55), FixedPoint.of(0.1)));
+        assertTrue(FixedPoint.isMultiple(12345, 0));
+    }
+}
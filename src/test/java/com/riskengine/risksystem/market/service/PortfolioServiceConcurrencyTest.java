@@ -0,0 +1,150 @@
+package com.riskengine.risksystem.market.service;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.Portfolio;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Many threads moving cash and trading against the same few portfolios at
+ * once must leave every balance and holding exactly where the successful
+ * operations put it.
+ */
+class PortfolioServiceConcurrencyTest {
+    private static final int THREADS = 8;
+    
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    
+    private static final String[] USERS = {"alice", "bob", "carol"};
+    
+    private static final long PRICE = FixedPoint.of(2.5);
+    
+    private static final long QUANTITY = FixedPoint.of(1.0);
+    
+    private static final long CASH = FixedPoint.of(10.0);
+    
+    /** Successful operation counters per user: deposits, withdrawals, buys, sells */
+    private static final int DEPOSITS = 0, WITHDRAWALS = 1, BUYS = 2, SELLS = 3;
+    
+    private PortfolioService portfolioService;
+    
+    private int symbolId;
+    
+    @BeforeEach
+    void setUp() {
+        SymbolRegistry symbolRegistry = new SymbolRegistry();
+        ReflectionTestUtils.setField(symbolRegistry, "capacity", 16);
+        symbolRegistry.init();
+        symbolId = symbolRegistry.register("BTC");
+        
+        MarketSimulator marketSimulator = mock(MarketSimulator.class);
+        when(marketSimulator.getCurrentPrice(symbolId)).thenReturn(
+                new AssetPrice("BTC", symbolId, PRICE, PRICE, PRICE, PRICE, 0, LocalDateTime.now()));
+        
+        portfolioService = new PortfolioService();
+        ReflectionTestUtils.setField(portfolioService, "marketSimulator", marketSimulator);
+        ReflectionTestUtils.setField(portfolioService, "journal", mock(Journal.class));
+        ReflectionTestUtils.setField(portfolioService, "symbolRegistry", symbolRegistry);
+        portfolioService.registerListeners();
+    }
+    
+    @Test
+    void concurrentCashMovementsAndTradesConserveBalances() throws Exception {
+        long[] startingCash = new long[USERS.length];
+        for (int u = 0; u < USERS.length; u++) {
+            startingCash[u] = portfolioService.getPortfolio(USERS[u]).getCashBalance();
+        }
+        
+        AtomicLongArray succeeded = new AtomicLongArray(USERS.length * 4);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        int u = random.nextInt(USERS.length);
+                        String userId = USERS[u];
+                        
+                        switch (random.nextInt(4)) {
+                            case DEPOSITS -> {
+                                portfolioService.depositFunds(userId, CASH);
+                                succeeded.incrementAndGet(u * 4 + DEPOSITS);
+                            }
+                            case WITHDRAWALS -> {
+                                if (portfolioService.withdrawFunds(userId, CASH)) {
+                                    succeeded.incrementAndGet(u * 4 + WITHDRAWALS);
+                                }
+                            }
+                            case BUYS -> {
+                                if (portfolioService.executeTrade(userId, symbolId, Order.OrderSide.BUY,
+                                        QUANTITY, PRICE)) {
+                                    succeeded.incrementAndGet(u * 4 + BUYS);
+                                }
+                            }
+                            default -> {
+                                if (portfolioService.executeTrade(userId, symbolId, Order.OrderSide.SELL,
+                                        QUANTITY, PRICE)) {
+                                    succeeded.incrementAndGet(u * 4 + SELLS);
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        long tradeValue = FixedPoint.multiply(QUANTITY, PRICE);
+        for (int u = 0; u < USERS.length; u++) {
+            long deposits = succeeded.get(u * 4 + DEPOSITS);
+            long withdrawals = succeeded.get(u * 4 + WITHDRAWALS);
+            long buys = succeeded.get(u * 4 + BUYS);
+            long sells = succeeded.get(u * 4 + SELLS);
+            assertTrue(buys > 0 && sells > 0, "both sides should have traded for " + USERS[u]);
+            
+            Portfolio portfolio = portfolioService.getPortfolio(USERS[u]);
+            long expectedCash = startingCash[u] + (deposits - withdrawals) * CASH + (sells - buys) * tradeValue;
+            long expectedQuantity = (buys - sells) * QUANTITY;
+            
+            assertEquals(expectedCash, portfolio.getCashBalance(), "cash of " + USERS[u]);
+            assertEquals(expectedQuantity, portfolio.getQuantity(symbolId), "holding of " + USERS[u]);
+            assertEquals(FixedPoint.multiply(expectedQuantity, PRICE), portfolio.getMarketValue(),
+                    "market value of " + USERS[u]);
+            assertTrue(portfolio.getCashBalance() >= 0, "cash of " + USERS[u] + " went negative");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.riskengine.risksystem.market.service;
+
+import com.riskengine.risksystem.market.model.AssetPrice;
+import com.riskengine.risksystem.market.model.Fill;
+import com.riskengine.risksystem.market.model.FixedPoint;
+import com.riskengine.risksystem.market.model.Order;
+import com.riskengine.risksystem.market.model.OrderUpdate;
+import com.riskengine.risksystem.market.model.Portfolio;
+import com.riskengine.risksystem.market.model.SymbolRegistry;
+import com.riskengine.risksystem.market.persistence.Journal;
+import com.riskengine.risksystem.market.simulation.MarketSimulator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Book orders reserve cash or holdings when placed, so every fill the
+ * books report settles on both sides, and cancelled orders give back what
+ * they did not use.
+ */
+class PortfolioServiceReservationTest {
+    private static final long PRICE = FixedPoint.of(100.0);
+
+    private PortfolioService portfolioService;
+
+    private Journal journal;
+
+    private int symbolId;
+
+    @BeforeEach
+    void setUp() {
+        SymbolRegistry symbolRegistry = new SymbolRegistry();
+        ReflectionTestUtils.setField(symbolRegistry, "capacity", 16);
+        symbolRegistry.init();
+        symbolId = symbolRegistry.register("BTC");
+
+        MarketSimulator marketSimulator = mock(MarketSimulator.class);
+        when(marketSimulator.getCurrentPrice(symbolId)).thenReturn(
+                new AssetPrice("BTC", symbolId, PRICE, PRICE, PRICE, PRICE, 0, LocalDateTime.now()));
+
+        journal = mock(Journal.class);
+        portfolioService = new PortfolioService();
+        ReflectionTestUtils.setField(portfolioService, "marketSimulator", marketSimulator);
+        ReflectionTestUtils.setField(portfolioService, "journal", journal);
+        ReflectionTestUtils.setField(portfolioService, "symbolRegistry", symbolRegistry);
+        portfolioService.registerListeners();
+    }
+
+    @Test
+    void reservedCashCannotBeWithdrawnOrSpentTwice() {
+        Order bid = order("alice", Order.OrderSide.BUY, 60.0, 110.0);
+        assertTrue(portfolioService.reserve(bid));
+
+        Portfolio alice = portfolioService.getPortfolio("alice");
+        assertEquals(FixedPoint.of(6600.0), alice.getReservedCash());
+        assertEquals(FixedPoint.of(3400.0), alice.getAvailableCash());
+
+        assertFalse(portfolioService.reserve(order("alice", Order.OrderSide.BUY, 40.0, 100.0)));
+        assertFalse(portfolioService.withdrawFunds("alice", FixedPoint.of(3500.0)));
+        assertFalse(portfolioService.executeMarketFill(marketFill("alice", Order.OrderSide.BUY, 35.0)));
+        verify(journal, never()).appendFill(any());
+
+        portfolioService.release(bid.getId());
+        assertEquals(0, alice.getReservedCash());
+        assertTrue(portfolioService.withdrawFunds("alice", FixedPoint.of(3500.0)));
+    }
+
+    @Test
+    void reservedHoldingsCannotBeSoldTwice() {
+        assertTrue(portfolioService.executeMarketFill(marketFill("bob", Order.OrderSide.BUY, 2.0)));
+
+        assertTrue(portfolioService.reserve(order("bob", Order.OrderSide.SELL, 1.5, 120.0)));
+        assertFalse(portfolioService.reserve(order("bob", Order.OrderSide.SELL, 1.0, 120.0)));
+        assertFalse(portfolioService.executeMarketFill(marketFill("bob", Order.OrderSide.SELL, 1.0)));
+        assertTrue(portfolioService.executeMarketFill(marketFill("bob", Order.OrderSide.SELL, 0.5)));
+    }
+
+    @Test
+    void settlesBothSidesOfABookFillOutOfTheirReservations() {
+        assertTrue(portfolioService.executeMarketFill(marketFill("bob", Order.OrderSide.BUY, 2.0)));
+        Order ask = order("bob", Order.OrderSide.SELL, 2.0, 100.0);
+        Order bid = order("alice", Order.OrderSide.BUY, 3.0, 110.0);
+        assertTrue(portfolioService.reserve(ask));
+        assertTrue(portfolioService.reserve(bid));
+
+        // Alice's bid crosses Bob's resting ask at the ask's price
+        portfolioService.applyFill(new Fill("BTC", bid.getId(), "alice", Order.OrderSide.BUY,
+                ask.getId(), "bob", PRICE, FixedPoint.of(2.0), LocalDateTime.now()));
+
+        Portfolio alice = portfolioService.getPortfolio("alice");
+        Portfolio bob = portfolioService.getPortfolio("bob");
+        assertEquals(FixedPoint.of(9800.0), alice.getCashBalance());
+        assertEquals(FixedPoint.of(2.0), alice.getQuantity(symbolId));
+        assertEquals(FixedPoint.of(110.0), alice.getReservedCash());
+        assertEquals(FixedPoint.of(10000.0), bob.getCashBalance());
+        assertEquals(0, bob.getQuantity(symbolId));
+        assertEquals(0, bob.getAvailableQuantity(symbolId));
+
+        // The rest of the bid is cancelled and its reservation returned
+        portfolioService.onOrderUpdate(new OrderUpdate(bid.getId(), "alice", "BTC", Order.OrderType.LIMIT,
+                Order.OrderSide.BUY, Order.OrderStatus.CANCELLED, bid.getQuantity(), FixedPoint.of(1.0),
+                bid.getPrice(), "Cancelled", LocalDateTime.now()));
+        assertEquals(0, alice.getReservedCash());
+        assertEquals(FixedPoint.of(9800.0), alice.getAvailableCash());
+    }
+
+    @Test
+    void reservesOpenOrdersLeftByRecovery() {
+        Order bid = order("carol", Order.OrderSide.BUY, 1.0, 90.0);
+
+        portfolioService.reserveOpenOrders(List.of(bid));
+
+        assertEquals(FixedPoint.of(90.0), portfolioService.getPortfolio("carol").getReservedCash());
+    }
+
+    private Order order(String userId, Order.OrderSide side, double quantity, double price) {
+        Order order = Order.create(userId, "BTC", Order.OrderType.LIMIT, side, FixedPoint.of(quantity),
+                FixedPoint.of(price));
+        order.setSymbolId(symbolId);
+        return order;
+    }
+
+    private static Fill marketFill(String userId, Order.OrderSide side, double quantity) {
+        return new Fill("BTC", "market-" + userId, userId, side, null, null, PRICE, FixedPoint.of(quantity),
+                LocalDateTime.now());
+    }
+}